@@ -1,6 +1,7 @@
 package com.client.controllers;
 
 import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.util.List;
 
 import com.client.events.PostEvent;
@@ -12,6 +13,7 @@ import com.client.views.FeedView;
 import com.client.views.PostView;
 
 import javafx.application.Platform;
+import javafx.scene.control.ScrollPane;
 import javafx.scene.input.MouseEvent;
 import javafx.stage.Stage;
 
@@ -41,6 +43,7 @@ public class FeedController extends BaseController {
         setupWindowControls();
         setupPostCreation();
         setupWindowDragging();
+        setupFeedPaging();
         loadSampleData(); // Load sample data initially
         loadInitialData();
     }
@@ -50,6 +53,7 @@ public class FeedController extends BaseController {
         eventBus.subscribe(PostEvent.CreateSuccess.class, this::handlePostCreated);
         eventBus.subscribe(PostEvent.CreateFailure.class, this::handlePostCreateFailure);
         eventBus.subscribe(PostEvent.FeedLoaded.class, this::handleFeedLoaded);
+        eventBus.subscribe(PostEvent.FeedPageLoaded.class, this::handleFeedPageLoaded);
         eventBus.subscribe(PostEvent.LikeToggled.class, this::handleLikeToggled);
     }
 
@@ -158,8 +162,10 @@ public class FeedController extends BaseController {
         post.setUserId((int) (Math.random() * 100));
         post.setUsername(ValidationUtils.sanitizeInput(username));
         post.setContent(ValidationUtils.sanitizeInput(content));
-        post.setCreatedAt(timestamp != null ? timestamp.toString() : LocalDateTime.now().toString());
-        post.setUpdatedAt(LocalDateTime.now().toString());
+        post.setCreatedAt(timestamp != null
+                ? timestamp.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli()
+                : System.currentTimeMillis());
+        post.setUpdatedAt(System.currentTimeMillis());
         post.setLikeCount(Math.max(0, likeCount)); // Ensure non-negative
         post.setLiked(false);
         post.setBookmarked(false);
@@ -169,6 +175,16 @@ public class FeedController extends BaseController {
         view.getPostsVBox().getChildren().add(postView);
     }
 
+    private void setupFeedPaging() {
+        // Reaching the bottom of the feed loads the next, older page
+        ScrollPane scrollPane = view.getFeedScrollPane();
+        scrollPane.vvalueProperty().addListener((obs, oldValue, newValue) -> {
+            if (newValue.doubleValue() >= scrollPane.getVmax()) {
+                postService.loadMoreFeed();
+            }
+        });
+    }
+
     private void loadInitialData() {
         postService.getFeed();
     }
@@ -205,8 +221,8 @@ public class FeedController extends BaseController {
             optimisticPost.setUserId(currentUser.getId());
             optimisticPost.setUsername(ValidationUtils.sanitizeInput(currentUser.getUsername()));
             optimisticPost.setContent(ValidationUtils.sanitizeInput(event.getContent()));
-            optimisticPost.setCreatedAt(LocalDateTime.now().toString());
-            optimisticPost.setUpdatedAt(LocalDateTime.now().toString());
+            optimisticPost.setCreatedAt(System.currentTimeMillis());
+            optimisticPost.setUpdatedAt(optimisticPost.getCreatedAt());
             optimisticPost.setLikeCount(0);
             optimisticPost.setLiked(false);
             optimisticPost.setBookmarked(false);
@@ -256,6 +272,10 @@ public class FeedController extends BaseController {
         });
     }
 
+    private void handleFeedPageLoaded(PostEvent.FeedPageLoaded event) {
+        Platform.runLater(() -> appendPosts(event.getPosts()));
+    }
+
     private void handleLikeToggled(PostEvent.LikeToggled event) {
         // The individual post controller handles the UI update
         // This could trigger a feed refresh if needed
@@ -263,7 +283,10 @@ public class FeedController extends BaseController {
 
     private void displayPosts(List<Post> posts) {
         view.getPostsVBox().getChildren().clear();
+        appendPosts(posts);
+    }
 
+    private void appendPosts(List<Post> posts) {
         for (Post post : posts) {
             // Validate post data before displaying
             if (post != null
@@ -338,7 +361,10 @@ public class FeedController extends BaseController {
     private void refreshFeed() {
         if (System.currentTimeMillis() - lastFeedUpdate >= FEED_REFRESH_INTERVAL) {
             Platform.runLater(() -> {
-                postService.getFeed();
+                // Reloading the first page would drop the older pages being read
+                if (view.getFeedScrollPane().getVvalue() <= view.getFeedScrollPane().getVmin()) {
+                    postService.getFeed();
+                }
             });
         }
     }
@@ -99,14 +99,9 @@ public class PostController extends BaseController {
         }
 
         // Set timestamp tooltip
-        if (post.getCreatedAt() != null && !post.getCreatedAt().isEmpty()) {
-            try {
-                LocalDateTime createdAt = LocalDateTime.parse(post.getCreatedAt());
-                String timeText = createdAt.format(TIME_FORMATTER);
-                view.getContentLabel().setTooltip(new javafx.scene.control.Tooltip(timeText));
-            } catch (Exception e) {
-                view.getContentLabel().setTooltip(new javafx.scene.control.Tooltip(post.getCreatedAt()));
-            }
+        LocalDateTime createdAt = post.getCreatedAtAsLocalDateTime();
+        if (createdAt != null) {
+            view.getContentLabel().setTooltip(new javafx.scene.control.Tooltip(createdAt.format(TIME_FORMATTER)));
         }
     }
 
@@ -144,12 +139,9 @@ public class PostController extends BaseController {
         } else {
             // For non-creators, show timestamp on click
             view.getMoreOptionsButton().setOnAction(e -> {
-                try {
-                    LocalDateTime createdAt = LocalDateTime.parse(post.getCreatedAt());
-                    String timeText = createdAt.format(TIME_FORMATTER);
-                    showInfo("Post Time", timeText);
-                } catch (Exception ex) {
-                    Logger.error("Error parsing post timestamp: " + ex.getMessage());
+                LocalDateTime createdAt = post.getCreatedAtAsLocalDateTime();
+                if (createdAt != null) {
+                    showInfo("Post Time", createdAt.format(TIME_FORMATTER));
                 }
             });
         }
@@ -141,6 +141,34 @@ public class PostEvent {
         }
     }
 
+    /**
+     * Event fired when an older page of the feed is loaded, to be appended
+     */
+    public static class FeedPageLoaded extends PostEventBase {
+
+        private final List<Post> posts;
+        private final boolean hasMore;
+
+        public FeedPageLoaded(List<Post> posts, boolean hasMore) {
+            super();
+            this.posts = posts;
+            this.hasMore = hasMore;
+        }
+
+        public List<Post> getPosts() {
+            return posts;
+        }
+
+        public boolean hasMore() {
+            return hasMore;
+        }
+
+        @Override
+        public String toString() {
+            return "FeedPageLoaded{postCount=" + (posts != null ? posts.size() : 0) + ", hasMore=" + hasMore + "}";
+        }
+    }
+
     /**
      * Event fired when feed loading fails
      */
@@ -0,0 +1,28 @@
+package com.client.models;
+
+import java.util.List;
+
+public class FeedPage {
+    private final List<Post> posts;
+    private final String nextCursor;
+    
+    public FeedPage(List<Post> posts, String nextCursor) {
+        this.posts = posts;
+        this.nextCursor = nextCursor;
+    }
+    
+    public List<Post> getPosts() {
+        return posts;
+    }
+    
+    /**
+     * Cursor to pass when loading the next page, or null if there are no older posts
+     */
+    public String getNextCursor() {
+        return nextCursor;
+    }
+    
+    public boolean hasMore() {
+        return nextCursor != null;
+    }
+}
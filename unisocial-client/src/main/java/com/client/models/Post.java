@@ -1,7 +1,9 @@
 package com.client.models;
 
 import javafx.beans.property.*;
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
 
 public class Post {
     private int id;
@@ -12,8 +14,8 @@ public class Post {
     private int likeCount;
     private boolean liked;
     private boolean bookmarked;
-    private String createdAt;
-    private String updatedAt;
+    private long createdAt; // Epoch milliseconds
+    private long updatedAt; // Epoch milliseconds
     
     public Post() {}
     
@@ -22,7 +24,7 @@ public class Post {
         setUserId(userId);
         setUsername(username);
         setContent(content);
-        setCreatedAt(LocalDateTime.now().toString());
+        setCreatedAt(System.currentTimeMillis());
     }
     
     // Getters and setters
@@ -58,11 +60,11 @@ public class Post {
     public void setBookmarked(boolean bookmarked) { this.bookmarked = bookmarked; }
     
     // Created At
-    public String getCreatedAt() { return createdAt; }
-    public void setCreatedAt(String createdAt) { this.createdAt = createdAt; }
+    public long getCreatedAt() { return createdAt; }
+    public void setCreatedAt(long createdAt) { this.createdAt = createdAt; }
     
-    public String getUpdatedAt() { return updatedAt; }
-    public void setUpdatedAt(String updatedAt) { this.updatedAt = updatedAt; }
+    public long getUpdatedAt() { return updatedAt; }
+    public void setUpdatedAt(long updatedAt) { this.updatedAt = updatedAt; }
     
     // Helper methods for JavaFX binding
     public StringProperty usernameProperty() {
@@ -85,13 +87,13 @@ public class Post {
         return new SimpleBooleanProperty(bookmarked);
     }
     
-    // Helper methods for LocalDateTime conversion
+    // Helper methods for LocalDateTime conversion, in the local time zone
     public LocalDateTime getCreatedAtAsLocalDateTime() {
-        return getCreatedAt() != null ? LocalDateTime.parse(getCreatedAt()) : null;
+        return createdAt > 0 ? LocalDateTime.ofInstant(Instant.ofEpochMilli(createdAt), ZoneId.systemDefault()) : null;
     }
     
     public LocalDateTime getUpdatedAtAsLocalDateTime() {
-        return getUpdatedAt() != null ? LocalDateTime.parse(getUpdatedAt()) : null;
+        return updatedAt > 0 ? LocalDateTime.ofInstant(Instant.ofEpochMilli(updatedAt), ZoneId.systemDefault()) : null;
     }
     
     @Override
@@ -10,8 +10,8 @@ public class User {
     private String avatarUrl;
     private int followingCount;
     private int followersCount;
-    private String createdAt;
-    private String updatedAt;
+    private long createdAt; // Epoch milliseconds
+    private long updatedAt; // Epoch milliseconds
 
     public User() {}
 
@@ -81,18 +81,18 @@ public class User {
     }
 
     // Created At
-    public String getCreatedAt() {
+    public long getCreatedAt() {
         return createdAt;
     }
-    public void setCreatedAt(String createdAt) {
+    public void setCreatedAt(long createdAt) {
         this.createdAt = createdAt;
     }
 
     // Updated At
-    public String getUpdatedAt() {
+    public long getUpdatedAt() {
         return updatedAt;
     }
-    public void setUpdatedAt(String updatedAt) {
+    public void setUpdatedAt(long updatedAt) {
         this.updatedAt = updatedAt;
     }
 
@@ -1,6 +1,7 @@
 /*
 package com.client.services;
 
+import com.client.models.FeedPage;
 import com.client.models.Post;
 import com.client.models.User;
 import com.client.utils.ValidationUtils;
@@ -128,7 +129,7 @@ public class MockNetworkService extends NetworkService {
         post.setUserId(userId);
         post.setUsername(author.getUsername());
         post.setContent(content);
-        post.setCreatedAt(LocalDateTime.now());
+        post.setCreatedAt(System.currentTimeMillis());
         post.setLikeCount(ThreadLocalRandom.current().nextInt(0, 15));
         post.setLiked(false);
         post.setBookmarked(false);
@@ -311,7 +312,7 @@ public class MockNetworkService extends NetworkService {
         newPost.setUserId(currentUser.getId());
         newPost.setUsername(currentUser.getUsername());
         newPost.setContent(content);
-        newPost.setCreatedAt(LocalDateTime.now());
+        newPost.setCreatedAt(System.currentTimeMillis());
         newPost.setLikeCount(0);
         newPost.setLiked(false);
         newPost.setBookmarked(false);
@@ -337,7 +338,7 @@ public class MockNetworkService extends NetworkService {
 
         List<Post> feed = posts.values().stream()
                 .filter(post -> relevantUsers.contains(post.getUserId()))
-                .sorted((p1, p2) -> p2.getCreatedAt().compareTo(p1.getCreatedAt()))
+                .sorted((p1, p2) -> Long.compare(p2.getCreatedAt(), p1.getCreatedAt()))
                 .limit(50) // Limit feed size
                 .collect(Collectors.toList());
 
@@ -351,6 +352,12 @@ public class MockNetworkService extends NetworkService {
         return feed;
     }
 
+    @Override
+    public FeedPage getFeedPage(String cursor) {
+        // The mock feed fits on one page
+        return new FeedPage(cursor == null ? getFeed() : new ArrayList<>(), null);
+    }
+
     @Override
     public boolean likePost(int postId) {
         simulateNetworkDelay();
@@ -1,17 +1,32 @@
 package com.client.services;
 
-import java.io.BufferedReader;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.PrintWriter;
 import java.net.Socket;
-import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Base64;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
 
 import com.client.core.AppState;
+import com.client.models.FeedPage;
 import com.client.models.Post;
 import com.client.models.User;
+import com.client.utils.CompressionUtils;
 import com.google.gson.Gson;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
@@ -25,12 +40,25 @@ public class NetworkService {
     private static final int CONNECTION_TIMEOUT = 5000; // 5 seconds
     private static final int READ_TIMEOUT = 10000; // 10 seconds
     private static final int MAX_RETRY_ATTEMPTS = 3;
-
-    private Socket socket;
-    private PrintWriter out;
-    private BufferedReader in;
+    private static final String FRAMING_LINE = "line";
+    private static final String FRAMING_LENGTH_PREFIXED = "length-prefixed";
+    private static final byte FLAG_ATTACHMENT = 0x01;
+    private static final byte FLAG_COMPRESSED = 0x02;
+    private static final int MAX_RESPONSE_SIZE = 16 * 1024 * 1024;
+    private static final int FEED_PAGE_SIZE = 20;
+
+    private volatile Socket socket;
+    private volatile DataOutputStream out;
+    private DataInputStream in;
+    private volatile boolean lengthPrefixed = false;
+    private volatile long busyUntil = 0;
+    private volatile long lastRequestTime = 0;
+    private ScheduledExecutorService heartbeat;
     private final Gson gson;
     private boolean isConnecting = false;
+    private final AtomicLong nextRequestId = new AtomicLong();
+    private final ConcurrentSkipListMap<Long, CompletableFuture<JsonObject>> pendingRequests =
+            new ConcurrentSkipListMap<>();
 
     public NetworkService() {
         this.gson = new Gson();
@@ -52,7 +80,7 @@ public class NetworkService {
      *
      * @return true if connection successful, false otherwise
      */
-    public boolean connect() {
+    public synchronized boolean connect() {
         if (isConnecting) {
             return false; // Prevent multiple simultaneous connection attempts
         }
@@ -70,20 +98,35 @@ public class NetworkService {
             // Create new socket connection
             socket = new Socket();
             socket.connect(new java.net.InetSocketAddress(SERVER_HOST, SERVER_PORT), CONNECTION_TIMEOUT);
-            socket.setSoTimeout(READ_TIMEOUT);
 
-            // Initialize streams
-            out = new PrintWriter(socket.getOutputStream(), true);
-            in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+            // Initialize streams; every connection starts in line mode
+            lengthPrefixed = false;
+            out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+
+            // Responses are matched to requests by id, so a single reader
+            // thread serves all callers; per-request timeouts replace SO_TIMEOUT
+            Socket connectionSocket = socket;
+            DataInputStream reader = in;
+            Thread readerThread = new Thread(() -> readResponses(connectionSocket, reader), "network-reader");
+            readerThread.setDaemon(true);
+            readerThread.start();
 
             // Send handshake
             JsonObject handshake = new JsonObject();
             handshake.addProperty("type", "HANDSHAKE");
             handshake.addProperty("version", "1.0");
             handshake.addProperty("clientId", generateClientId());
+            handshake.addProperty("pipelining", true);
+            JsonArray framings = new JsonArray();
+            framings.add(FRAMING_LENGTH_PREFIXED);
+            framings.add(FRAMING_LINE);
+            handshake.add("framing", framings);
+            JsonArray compressions = new JsonArray();
+            compressions.add(CompressionUtils.NAME);
+            handshake.add("compression", compressions);
 
-            sendRequest("HANDSHAKE", handshake);
-            JsonObject response = readResponse();
+            JsonObject response = sendRequest("HANDSHAKE", handshake);
 
             boolean success = response != null && response.get("success").getAsBoolean();
 
@@ -92,6 +135,11 @@ public class NetworkService {
                 return false;
             }
 
+            // The server closes connections that stay silent for too long
+            if (response.has("heartbeatIntervalMs")) {
+                startHeartbeat(response.get("heartbeatIntervalMs").getAsLong());
+            }
+
             return true;
 
         } catch (Exception e) {
@@ -108,14 +156,15 @@ public class NetworkService {
      *
      * @return true if disconnection was successful, false otherwise
      */
-    public boolean disconnect() {
+    public synchronized boolean disconnect() {
+        stopHeartbeat();
         try {
             // Send disconnect message if connected
             if (isConnected()) {
                 try {
                     JsonObject disconnectMsg = new JsonObject();
                     disconnectMsg.addProperty("userId", getCurrentUserId());
-                    sendRequest("DISCONNECT", disconnectMsg);
+                    sendRequestAsync("DISCONNECT", disconnectMsg);
                 } catch (Exception e) {
                     // Ignore errors when sending disconnect message
                     System.err.println("Warning: Could not send disconnect message: " + e.getMessage());
@@ -147,6 +196,34 @@ public class NetworkService {
         }
     }
 
+    /**
+     * Send a PING whenever the connection has been idle for the given interval
+     */
+    private void startHeartbeat(long intervalMs) {
+        stopHeartbeat();
+        heartbeat = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "network-heartbeat");
+            thread.setDaemon(true);
+            return thread;
+        });
+        heartbeat.scheduleAtFixedRate(() -> {
+            if (isConnected() && System.currentTimeMillis() - lastRequestTime >= intervalMs) {
+                try {
+                    sendRequestAsync("PING", new JsonObject());
+                } catch (IOException e) {
+                    System.err.println("Heartbeat failed: " + e.getMessage());
+                }
+            }
+        }, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    private void stopHeartbeat() {
+        if (heartbeat != null) {
+            heartbeat.shutdownNow();
+            heartbeat = null;
+        }
+    }
+
     /**
      * Reconnect to the server
      *
@@ -175,8 +252,7 @@ public class NetworkService {
             requestBody.addProperty("username", username);
             requestBody.addProperty("password", password);
 
-            sendRequest("LOGIN", requestBody);
-            JsonObject response = readResponse();
+            JsonObject response = sendRequest("LOGIN", requestBody);
 
             if (response != null && response.get("success").getAsBoolean()) {
                 JsonElement userElement = response.get("user");
@@ -210,8 +286,7 @@ public class NetworkService {
             requestBody.addProperty("username", username);
             requestBody.addProperty("password", password);
 
-            sendRequest("SIGNUP", requestBody);
-            JsonObject response = readResponse();
+            JsonObject response = sendRequest("SIGNUP", requestBody);
 
             if (response != null && response.get("success").getAsBoolean()) {
                 JsonElement userElement = response.get("user");
@@ -242,8 +317,7 @@ public class NetworkService {
             JsonObject requestBody = new JsonObject();
             requestBody.addProperty("userId", getCurrentUserId());
 
-            sendRequest("LOGOUT", requestBody);
-            JsonObject response = readResponse();
+            JsonObject response = sendRequest("LOGOUT", requestBody);
 
             // Disconnect after logout
             disconnect();
@@ -274,8 +348,7 @@ public class NetworkService {
             requestBody.addProperty("content", content);
             requestBody.addProperty("userId", getCurrentUserId());
 
-            sendRequest("CREATE_POST", requestBody);
-            JsonObject response = readResponse();
+            JsonObject response = sendRequest("CREATE_POST", requestBody);
 
             if (response != null && response.get("success").getAsBoolean()) {
                 return gson.fromJson(response.get("post"), Post.class);
@@ -292,19 +365,40 @@ public class NetworkService {
     /**
      * Get the user's feed
      *
-     * @return List of posts in the feed
+     * @return List of posts in the feed, or null if the server asked the
+     *         client to back off and the current feed should be kept
      */
     public List<Post> getFeed() {
+        FeedPage page = getFeedPage(null);
+        return page != null ? page.getPosts() : null;
+    }
+
+    /**
+     * Get one page of the user's feed, newest first
+     *
+     * @param cursor Cursor from the previous page, or null for the first page
+     * @return The page, or null if the server asked the client to back off
+     */
+    public FeedPage getFeedPage(String cursor) {
         try {
+            if (System.currentTimeMillis() < busyUntil) {
+                return null;
+            }
             if (!ensureConnection()) {
-                return new ArrayList<>();
+                return new FeedPage(new ArrayList<>(), null);
             }
 
             JsonObject requestBody = new JsonObject();
             requestBody.addProperty("userId", getCurrentUserId());
+            requestBody.addProperty("limit", FEED_PAGE_SIZE);
+            if (cursor != null) {
+                requestBody.addProperty("cursor", cursor);
+            }
 
-            sendRequest("GET_FEED", requestBody);
-            JsonObject response = readResponse();
+            JsonObject response = sendRequest("GET_FEED", requestBody);
+            if (response != null && response.has("busy")) {
+                return null;
+            }
 
             if (response != null && response.get("success").getAsBoolean()) {
                 JsonArray postsArray = response.getAsJsonArray("posts");
@@ -315,14 +409,15 @@ public class NetworkService {
                     posts.add(post);
                 }
 
-                return posts;
+                String nextCursor = response.has("nextCursor") ? response.get("nextCursor").getAsString() : null;
+                return new FeedPage(posts, nextCursor);
             }
 
-            return new ArrayList<>();
+            return new FeedPage(new ArrayList<>(), null);
 
         } catch (Exception e) {
             System.err.println("Error getting feed: " + e.getMessage());
-            return new ArrayList<>();
+            return new FeedPage(new ArrayList<>(), null);
         }
     }
 
@@ -330,32 +425,32 @@ public class NetworkService {
      * Like or unlike a post
      *
      * @param postId The post ID
-     * @return Object array containing [success, likeCount] where likeCount is
-     * -1 if not provided by server
+     * @return Object array containing [success, likeCount, liked] where likeCount is
+     * -1 and liked is null if not provided by server
      */
     public Object[] likePost(int postId) {
         try {
             if (!ensureConnection()) {
-                return new Object[]{false, -1};
+                return new Object[]{false, -1, null};
             }
 
             JsonObject requestBody = new JsonObject();
             requestBody.addProperty("postId", postId);
             requestBody.addProperty("userId", getCurrentUserId());
 
-            sendRequest("LIKE_POST", requestBody);
-            JsonObject response = readResponse();
+            JsonObject response = sendRequest("LIKE_POST", requestBody);
 
             if (response != null && response.get("success").getAsBoolean()) {
                 int likeCount = response.has("likeCount") ? response.get("likeCount").getAsInt() : -1;
-                return new Object[]{true, likeCount};
+                Boolean liked = response.has("liked") ? response.get("liked").getAsBoolean() : null;
+                return new Object[]{true, likeCount, liked};
             }
 
-            return new Object[]{false, -1};
+            return new Object[]{false, -1, null};
 
         } catch (Exception e) {
             System.err.println("Error liking post: " + e.getMessage());
-            return new Object[]{false, -1};
+            return new Object[]{false, -1, null};
         }
     }
 
@@ -375,8 +470,7 @@ public class NetworkService {
             requestBody.addProperty("postId", postId);
             requestBody.addProperty("userId", getCurrentUserId());
 
-            sendRequest("BOOKMARK_POST", requestBody);
-            JsonObject response = readResponse();
+            JsonObject response = sendRequest("BOOKMARK_POST", requestBody);
 
             return response != null && response.get("success").getAsBoolean();
 
@@ -402,8 +496,7 @@ public class NetworkService {
             requestBody.addProperty("postId", postId);
             requestBody.addProperty("userId", getCurrentUserId());
 
-            sendRequest("DELETE_POST", requestBody);
-            JsonObject response = readResponse();
+            JsonObject response = sendRequest("DELETE_POST", requestBody);
 
             return response != null && response.get("success").getAsBoolean();
 
@@ -429,8 +522,7 @@ public class NetworkService {
             JsonObject requestBody = new JsonObject();
             requestBody.addProperty("userId", userId);
 
-            sendRequest("GET_USER", requestBody);
-            JsonObject response = readResponse();
+            JsonObject response = sendRequest("GET_USER", requestBody);
 
             if (response != null && response.get("success").getAsBoolean()) {
                 JsonElement userElement = response.get("user");
@@ -467,8 +559,7 @@ public class NetworkService {
                 requestBody.addProperty("avatarUrl", user.getAvatarUrl());
             }
 
-            sendRequest("UPDATE_PROFILE", requestBody);
-            JsonObject response = readResponse();
+            JsonObject response = sendRequest("UPDATE_PROFILE", requestBody);
 
             return response != null && response.get("success").getAsBoolean();
 
@@ -494,8 +585,7 @@ public class NetworkService {
             requestBody.addProperty("query", query);
             requestBody.addProperty("limit", 20); // Limit results
 
-            sendRequest("SEARCH_USERS", requestBody);
-            JsonObject response = readResponse();
+            JsonObject response = sendRequest("SEARCH_USERS", requestBody);
 
             if (response != null && response.get("success").getAsBoolean()) {
                 JsonArray usersArray = response.getAsJsonArray("users");
@@ -533,8 +623,7 @@ public class NetworkService {
             requestBody.addProperty("targetUserId", targetUserId);
             requestBody.addProperty("userId", getCurrentUserId());
 
-            sendRequest("FOLLOW_USER", requestBody);
-            JsonObject response = readResponse();
+            JsonObject response = sendRequest("FOLLOW_USER", requestBody);
 
             return response != null && response.get("success").getAsBoolean();
 
@@ -544,6 +633,92 @@ public class NetworkService {
         }
     }
 
+    /**
+     * Upload a new avatar image. Sent as a raw attachment when the server
+     * negotiated length-prefixed framing, otherwise base64 encoded.
+     *
+     * @param userId The user ID
+     * @param imageData The image bytes
+     * @param contentType The image content type, e.g. image/png
+     * @return The new avatar URL if successful, null otherwise
+     */
+    public String updateAvatar(int userId, byte[] imageData, String contentType) {
+        try {
+            if (!ensureConnection()) {
+                return null;
+            }
+
+            JsonObject requestBody = new JsonObject();
+            requestBody.addProperty("userId", userId);
+            requestBody.addProperty("contentType", contentType);
+
+            JsonObject response;
+            if (lengthPrefixed) {
+                response = sendRequest("UPDATE_AVATAR", requestBody, imageData);
+            } else {
+                requestBody.addProperty("avatarData", Base64.getEncoder().encodeToString(imageData));
+                response = sendRequest("UPDATE_AVATAR", requestBody);
+            }
+
+            if (response != null && response.get("success").getAsBoolean()) {
+                return response.get("avatarUrl").getAsString();
+            }
+
+            return null;
+
+        } catch (Exception e) {
+            System.err.println("Error updating avatar: " + e.getMessage());
+            return null;
+        }
+    }
+
+    // ==================== BATCH OPERATIONS ====================
+    /**
+     * Send several requests in one round trip. Writes in the batch are applied
+     * together or not at all.
+     *
+     * @param requests Sub-requests built with {@link #batchRequest}
+     * @return One response per sub-request, in order, or null if the batch failed
+     */
+    public List<JsonObject> batch(List<JsonObject> requests) {
+        try {
+            if (!ensureConnection()) {
+                return null;
+            }
+
+            JsonArray requestArray = new JsonArray();
+            requests.forEach(requestArray::add);
+
+            JsonObject requestBody = new JsonObject();
+            requestBody.add("requests", requestArray);
+
+            JsonObject response = sendRequest("BATCH", requestBody);
+            if (response == null || !response.get("success").getAsBoolean()) {
+                return null;
+            }
+
+            List<JsonObject> results = new ArrayList<>();
+            for (JsonElement result : response.getAsJsonArray("results")) {
+                results.add(result.getAsJsonObject());
+            }
+            return results;
+
+        } catch (Exception e) {
+            System.err.println("Error sending batch: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Build a sub-request for {@link #batch}
+     */
+    public static JsonObject batchRequest(String command, JsonObject data) {
+        JsonObject request = new JsonObject();
+        request.addProperty("command", command);
+        request.add("data", data != null ? data : new JsonObject());
+        return request;
+    }
+
     // ==================== HELPER METHODS ====================
     /**
      * Ensure connection is established, attempt to reconnect if needed
@@ -576,49 +751,197 @@ public class NetworkService {
     }
 
     /**
-     * Send a request to the server
+     * Send a request to the server and wait for its response
      *
      * @param command The command to send
      * @param data The data to send
+     * @return JsonObject response
+     */
+    private JsonObject sendRequest(String command, JsonObject data) throws IOException {
+        return sendRequest(command, data, null);
+    }
+
+    /**
+     * Send a request with an optional binary attachment and wait for its
+     * response. Attachments require length-prefixed framing.
      */
-    private void sendRequest(String command, JsonObject data) throws IOException {
-        if (out == null) {
+    private JsonObject sendRequest(String command, JsonObject data, byte[] attachment) throws IOException {
+        CompletableFuture<JsonObject> future = sendRequestAsync(command, data, attachment);
+
+        try {
+            JsonObject response = future.get(READ_TIMEOUT, TimeUnit.MILLISECONDS);
+            if (response.has("busy") && response.get("busy").getAsBoolean()) {
+                // Overloaded server: hold off background requests for a while
+                busyUntil = System.currentTimeMillis() + response.get("retryAfterMs").getAsLong();
+            }
+            return response;
+        } catch (TimeoutException e) {
+            future.cancel(false);
+            throw new IOException("Server response timeout", e);
+        } catch (ExecutionException e) {
+            throw new IOException(e.getCause().getMessage(), e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for server response", e);
+        }
+    }
+
+    private CompletableFuture<JsonObject> sendRequestAsync(String command, JsonObject data) throws IOException {
+        return sendRequestAsync(command, data, null);
+    }
+
+    /**
+     * Send a request tagged with a correlation id without waiting for the
+     * response, so several requests can be in flight on one connection
+     *
+     * @param command The command to send
+     * @param data The data to send
+     * @param attachment Binary attachment, or null
+     * @return Future completed with the matching response
+     */
+    private CompletableFuture<JsonObject> sendRequestAsync(String command, JsonObject data, byte[] attachment)
+            throws IOException {
+        DataOutputStream writer = out;
+        if (writer == null) {
             throw new IOException("Output stream is not available");
         }
 
+        long requestId = nextRequestId.incrementAndGet();
+        lastRequestTime = System.currentTimeMillis();
+        CompletableFuture<JsonObject> future = new CompletableFuture<>();
+        pendingRequests.put(requestId, future);
+        future.whenComplete((response, error) -> pendingRequests.remove(requestId));
+
         JsonObject request = new JsonObject();
+        request.addProperty("id", requestId);
         request.addProperty("command", command);
         request.addProperty("timestamp", System.currentTimeMillis());
         request.add("data", data);
 
-        String requestJson = gson.toJson(request);
-        out.println(requestJson);
+        byte[] payload = gson.toJson(request).getBytes(StandardCharsets.UTF_8);
+        try {
+            synchronized (writer) {
+                writeFrame(writer, payload, attachment);
+                writer.flush();
+            }
+        } catch (IOException e) {
+            future.completeExceptionally(new IOException("Error sending request to server", e));
+        }
+        return future;
+    }
+
+    /**
+     * Write one frame in the negotiated framing
+     */
+    private void writeFrame(DataOutputStream writer, byte[] payload, byte[] attachment) throws IOException {
+        if (!lengthPrefixed) {
+            writer.write(payload);
+            writer.write('\n');
+            return;
+        }
 
-        if (out.checkError()) {
-            throw new IOException("Error sending request to server");
+        int attachmentLength = attachment != null ? attachment.length : 0;
+        writer.writeInt(1 + 4 + payload.length + attachmentLength);
+        writer.writeByte(attachment != null ? FLAG_ATTACHMENT : 0);
+        writer.writeInt(payload.length);
+        writer.write(payload);
+        if (attachment != null) {
+            writer.write(attachment);
         }
     }
 
     /**
-     * Read response from the server
+     * Read one frame payload in the negotiated framing
      *
-     * @return JsonObject response or null if error
+     * @return The JSON payload, or null at end of stream
      */
-    private JsonObject readResponse() throws IOException {
-        if (in == null) {
-            throw new IOException("Input stream is not available");
+    private byte[] readFrame(DataInputStream reader) throws IOException {
+        if (lengthPrefixed) {
+            int length;
+            try {
+                length = reader.readInt();
+            } catch (EOFException e) {
+                return null;
+            }
+            if (length < 5 || length > MAX_RESPONSE_SIZE) {
+                throw new IOException("Invalid frame length: " + length);
+            }
+            byte flags = reader.readByte(); // responses carry no attachments
+            int payloadLength = reader.readInt();
+            if (payloadLength < 0 || payloadLength > length - 5) {
+                throw new IOException("Invalid payload length: " + payloadLength);
+            }
+
+            byte[] payload = new byte[payloadLength];
+            reader.readFully(payload);
+            reader.skipNBytes(length - 5 - payloadLength);
+
+            if ((flags & FLAG_COMPRESSED) != 0) {
+                payload = CompressionUtils.decompress(payload, MAX_RESPONSE_SIZE);
+            }
+            return payload;
+        }
+
+        ByteArrayOutputStream line = new ByteArrayOutputStream(256);
+        int b;
+        while ((b = reader.read()) != '\n') {
+            if (b < 0) {
+                return null;
+            }
+            line.write(b);
         }
+        return line.toByteArray();
+    }
 
+    /**
+     * Read responses from the server and complete the matching requests.
+     * Runs on a dedicated thread for the lifetime of the connection.
+     */
+    private void readResponses(Socket connectionSocket, DataInputStream reader) {
+        IOException failure = new IOException("Server closed connection");
         try {
-            String response = in.readLine();
-            if (response == null) {
-                throw new IOException("Server closed connection");
+            byte[] payload;
+            while ((payload = readFrame(reader)) != null) {
+                JsonObject response = JsonParser.parseString(new String(payload, StandardCharsets.UTF_8))
+                        .getAsJsonObject();
+
+                // The server switches framing right after the HANDSHAKE
+                // response, so switch before reading anything else
+                if (response.has("framing")) {
+                    lengthPrefixed = FRAMING_LENGTH_PREFIXED.equals(response.get("framing").getAsString());
+                }
+
+                CompletableFuture<JsonObject> future;
+                if (response.has("id")) {
+                    future = pendingRequests.get(response.get("id").getAsLong());
+                } else {
+                    // Server without pipelining support answers in order
+                    Map.Entry<Long, CompletableFuture<JsonObject>> oldest = pendingRequests.firstEntry();
+                    future = oldest != null ? oldest.getValue() : null;
+                }
+
+                if (future != null) {
+                    future.complete(response);
+                }
             }
+        } catch (Exception e) {
+            failure = new IOException("Connection lost: " + e.getMessage(), e);
+        }
 
-            return JsonParser.parseString(response).getAsJsonObject();
+        // Mark the connection dead so the next call reconnects
+        try {
+            connectionSocket.close();
+        } catch (IOException e) {
+            // Ignore
+        }
+        if (socket == connectionSocket || socket == null) {
+            failPendingRequests(failure);
+        }
+    }
 
-        } catch (SocketTimeoutException e) {
-            throw new IOException("Server response timeout", e);
+    private void failPendingRequests(IOException cause) {
+        for (CompletableFuture<JsonObject> future : pendingRequests.values()) {
+            future.completeExceptionally(cause);
         }
     }
 
@@ -678,8 +1001,7 @@ public class NetworkService {
             JsonObject pingData = new JsonObject();
             pingData.addProperty("timestamp", System.currentTimeMillis());
 
-            sendRequest("PING", pingData);
-            JsonObject response = readResponse();
+            JsonObject response = sendRequest("PING", pingData);
 
             return response != null && response.get("success").getAsBoolean();
 
@@ -2,10 +2,12 @@ package com.client.services;
 
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.stream.Collectors;
 
 import com.client.core.EventBus;
 import com.client.events.PostEvent;
+import com.client.models.FeedPage;
 import com.client.models.Post;
 import com.client.utils.ValidationUtils;
 
@@ -13,6 +15,8 @@ public class PostService {
 
     private final NetworkService networkService;
     private final EventBus eventBus;
+    private final AtomicBoolean loadingMoreFeed = new AtomicBoolean();
+    private volatile String nextFeedCursor;
 
     public PostService(NetworkService networkService, EventBus eventBus) {
         this.networkService = networkService;
@@ -69,8 +73,14 @@ public class PostService {
                     throw new RuntimeException("Unable to connect to server");
                 }
 
-                // Get feed from server
-                List<Post> posts = networkService.getFeed();
+                // Get the newest page from server
+                FeedPage page = networkService.getFeedPage(null);
+                if (page == null) {
+                    // Server is shedding load; keep showing the current feed
+                    return List.of();
+                }
+                nextFeedCursor = page.getNextCursor();
+                List<Post> posts = page.getPosts();
 
                 // Validate and sanitize posts
                 List<Post> validPosts = posts.stream()
@@ -89,6 +99,46 @@ public class PostService {
         });
     }
 
+    /**
+     * Load the page of the feed after the last one loaded. Does nothing if
+     * every page has been loaded or a page is already on its way.
+     */
+    public CompletableFuture<List<Post>> loadMoreFeed() {
+        String cursor = nextFeedCursor;
+        if (cursor == null || !loadingMoreFeed.compareAndSet(false, true)) {
+            return CompletableFuture.completedFuture(List.of());
+        }
+
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                FeedPage page = networkService.getFeedPage(cursor);
+                if (page == null) {
+                    return List.<Post>of();
+                }
+                // A refresh in the meantime started paging over from the top
+                if (!cursor.equals(nextFeedCursor)) {
+                    return List.<Post>of();
+                }
+                nextFeedCursor = page.getNextCursor();
+
+                List<Post> validPosts = page.getPosts().stream()
+                        .filter(this::isValidPost)
+                        .map(this::sanitizePost)
+                        .collect(Collectors.toList());
+
+                eventBus.publish(new PostEvent.FeedPageLoaded(validPosts, page.hasMore()));
+                return validPosts;
+
+            } catch (Exception e) {
+                String errorMessage = "Failed to load feed: " + ValidationUtils.sanitizeInput(e.getMessage());
+                eventBus.publish(new PostEvent.FeedLoadFailure(errorMessage));
+                return List.<Post>of();
+            } finally {
+                loadingMoreFeed.set(false);
+            }
+        });
+    }
+
     public CompletableFuture<Boolean> likePost(int postId) {
         return CompletableFuture.supplyAsync(() -> {
             try {
@@ -106,11 +156,12 @@ public class PostService {
                 Object[] result = networkService.likePost(postId);
                 boolean success = (boolean) result[0];
                 int likeCount = (int) result[1];
+                Boolean liked = (Boolean) result[2];
 
                 if (success) {
-                    // Publish the like toggled event with the updated like count
+                    // Publish the like toggled event with the state and count the server returned
                     // If likeCount is -1, it means the server didn't provide an updated count
-                    eventBus.publish(new PostEvent.LikeToggled(postId, true, likeCount));
+                    eventBus.publish(new PostEvent.LikeToggled(postId, liked == null || liked, likeCount));
                 } else {
                     eventBus.publish(new PostEvent.LikeFailure(postId, "Failed to toggle like"));
                 }
@@ -0,0 +1,64 @@
+package com.client.utils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Decompression for server responses sent with the negotiated
+ * "deflate-dict-v2" compression. The preset dictionary must match the
+ * server's byte for byte.
+ */
+public class CompressionUtils {
+
+    public static final String NAME = "deflate-dict-v2";
+
+    private static final byte[] DICTIONARY = ("""
+            {"success":true,"message":"","users":[],"user":{"id":,"username":"","fullName":"","bio":"",\
+            "avatarUrl":"/avatars/avatar_","followingCount":0,"followersCount":0,"createdAt":17,"updatedAt":17},\
+            "posts":[{"id":,"userId":,"username":"","content":"","imageUrl":null,"likeCount":0,"liked":false,\
+            "bookmarked":false,"createdAt":17,"updatedAt":17},{"id":,"userId":,"username":"",\
+            "content":"","likeCount":1,"liked":true,"bookmarked":true,"createdAt":1,"updatedAt":1}],\
+            "success":false,"message":"Not authenticated"}""").getBytes(StandardCharsets.UTF_8);
+
+    private CompressionUtils() {}
+
+    /**
+     * Decompress a response payload
+     *
+     * @param compressed The compressed bytes
+     * @param maxSize Upper bound on the decompressed size
+     * @return The original payload
+     */
+    public static byte[] decompress(byte[] compressed, int maxSize) throws IOException {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(compressed);
+            ByteArrayOutputStream output = new ByteArrayOutputStream(compressed.length * 4);
+            byte[] chunk = new byte[8192];
+
+            while (!inflater.finished()) {
+                int count = inflater.inflate(chunk);
+                if (count == 0) {
+                    if (inflater.needsDictionary()) {
+                        inflater.setDictionary(DICTIONARY);
+                    } else if (inflater.needsInput()) {
+                        throw new IOException("Truncated compressed response");
+                    }
+                }
+                output.write(chunk, 0, count);
+                if (output.size() > maxSize) {
+                    throw new IOException("Compressed response exceeds " + maxSize + " bytes");
+                }
+            }
+            return output.toByteArray();
+
+        } catch (DataFormatException e) {
+            throw new IOException("Invalid compressed response: " + e.getMessage(), e);
+        } finally {
+            inflater.end();
+        }
+    }
+}
@@ -1,20 +1,27 @@
 package com.server;
 
-import java.io.BufferedReader;
+import java.io.BufferedOutputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.PrintWriter;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.Socket;
-import java.net.SocketTimeoutException;
-
-import com.google.gson.Gson;
-import com.google.gson.JsonObject;
-import com.google.gson.JsonParser;
-import com.server.models.Post;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.server.commands.ClientSession;
+import com.server.commands.CommandRegistry;
 import com.server.models.User;
-import com.server.services.AuthService;
-import com.server.services.PostService;
-import com.server.services.UserService;
+import com.server.protocol.Frame;
+import com.server.protocol.FrameCodec;
+import com.server.protocol.FrameCodecs;
+import com.server.protocol.InboundBuffer;
+import com.server.protocol.ProtocolException;
+import com.server.protocol.Request;
 import com.server.utils.Logger;
 
 /**
@@ -22,34 +29,59 @@ import com.server.utils.Logger;
  */
 public class ClientHandler implements Runnable {
 
+    private static final long DRAIN_TIMEOUT_MS = 5000;
+
     private final Socket clientSocket;
-    private final AuthService authService;
-    private final PostService postService;
-    private final UserService userService;
-    private final Gson gson;
+    private final ClientSession session;
+    private final CommandRegistry commands;
+    private final ConnectionReaper.Handle reaperHandle;
+    private final Semaphore pipelineSlots = new Semaphore(ClientSession.MAX_PIPELINED_REQUESTS);
+    private final InboundBuffer inbound = new InboundBuffer();
+    // Not synchronized: a virtual thread blocked writing would pin its carrier
+    private final ReentrantLock sendLock = new ReentrantLock();
+
+    private InputStream in;
+    private OutputStream out;
+    private volatile FrameCodec codec;
 
-    private BufferedReader in;
-    private PrintWriter out;
-    private User currentUser;
-    private boolean running = true;
+    /**
+     * Create a handler that owns a blocking socket. Commands run in the
+     * bulkheads they were registered with; the connection thread only reads
+     * frames and waits for lock-step responses.
+     */
+    public ClientHandler(Socket clientSocket, ServerConfig config, CommandRegistry commands,
+            ConnectionReaper reaper) {
+        this(clientSocket, clientSocket.getRemoteSocketAddress(), config, commands, reaper);
+    }
 
-    public ClientHandler(Socket clientSocket, AuthService authService,
-            PostService postService, UserService userService) {
+    /**
+     * Create a handler that only processes requests; the caller owns the
+     * connection (used by the NIO transport)
+     */
+    ClientHandler(SocketAddress remoteAddress, ServerConfig config, CommandRegistry commands) {
+        this(null, remoteAddress, config, commands, null);
+    }
+
+    private ClientHandler(Socket clientSocket, SocketAddress remoteAddress, ServerConfig config,
+            CommandRegistry commands, ConnectionReaper reaper) {
         this.clientSocket = clientSocket;
-        this.authService = authService;
-        this.postService = postService;
-        this.userService = userService;
-        this.gson = new Gson();
+        this.commands = commands;
+        this.codec = FrameCodecs.create(FrameCodecs.LINE, config.getMaxMessageSize());
+        this.session = new ClientSession(remoteAddress, codec.name());
+
+        // Closing the socket unblocks the connection thread's read
+        this.reaperHandle = reaper == null ? null : reaper.register(config.getConnectionTimeout(),
+                config.getReadTimeout(), String.valueOf(remoteAddress), this::closeSocket);
     }
 
     @Override
     public void run() {
         try {
             // Initialize streams
-            in = new BufferedReader(new InputStreamReader(clientSocket.getInputStream()));
-            out = new PrintWriter(clientSocket.getOutputStream(), true);
+            in = clientSocket.getInputStream();
+            out = new BufferedOutputStream(clientSocket.getOutputStream());
 
-            Logger.info("Client handler started for " + clientSocket.getRemoteSocketAddress());
+            Logger.info("Client handler started for " + session.getRemoteAddress());
 
             // Handle client requests
             handleClientRequests();
@@ -65,383 +97,164 @@ public class ClientHandler implements Runnable {
      * Handle incoming client requests
      */
     private void handleClientRequests() {
-        while (running && !clientSocket.isClosed()) {
+        while (session.isOpen() && !clientSocket.isClosed()) {
             try {
-                String requestLine = in.readLine();
-                if (requestLine == null) {
+                Frame frame = readFrame();
+                if (frame == null) {
                     // Client disconnected
                     break;
                 }
+                if (reaperHandle != null) {
+                    reaperHandle.touch();
+                }
 
-                // Parse request
-                JsonObject request = JsonParser.parseString(requestLine).getAsJsonObject();
-                String command = request.get("command").getAsString();
-                JsonObject data = request.getAsJsonObject("data");
-
-                // Process command
-                JsonObject response = processCommand(command, data);
-
-                // Send response
-                out.println(gson.toJson(response));
+                Request request = parseRequest(frame.payload());
+                if (request != null && request.isPipelined()) {
+                    // Runs concurrently; the response carries the request id
+                    pipelineSlots.acquire();
+                    dispatch(request, frame.attachment()).whenComplete((response, error) -> {
+                        try {
+                            send(response);
+                        } catch (IOException e) {
+                            Logger.error("Error writing to client: " + e.getMessage());
+                        } finally {
+                            pipelineSlots.release();
+                        }
+                    });
+                } else {
+                    // Wait for the response before reading the next request
+                    send(dispatch(request, frame.attachment()).get());
+                    switchCodecIfNegotiated();
+                }
 
-            } catch (SocketTimeoutException e) {
-                // Client timeout - continue waiting
-                continue;
             } catch (IOException e) {
-                Logger.error("Error reading from client: " + e.getMessage());
+                if (clientSocket.isClosed()) {
+                    // Closed by the idle reaper
+                    Logger.debug("Client socket closed: " + session.getRemoteAddress());
+                } else {
+                    Logger.error("Error reading from client: " + e.getMessage());
+                }
+                break;
+            } catch (ExecutionException e) {
+                Logger.error("Error processing client request: " + e.getCause().getMessage());
+                break;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
                 break;
-            } catch (Exception e) {
-                Logger.error("Error processing client request: " + e.getMessage());
-
-                // Send error response
-                JsonObject errorResponse = createErrorResponse("Internal server error");
-                out.println(gson.toJson(errorResponse));
             }
         }
+
+        awaitPipelinedRequests();
     }
 
     /**
-     * Process individual commands
+     * Read the next frame with the current codec
+     *
+     * @return The frame, or null at end of stream
      */
-    private JsonObject processCommand(String command, JsonObject data) {
-        try {
-            switch (command) {
-                case "HANDSHAKE":
-                    return handleHandshake(data);
-                case "LOGIN":
-                    return handleLogin(data);
-                case "SIGNUP":
-                    return handleSignup(data);
-                case "LOGOUT":
-                    return handleLogout(data);
-                case "CREATE_POST":
-                    return handleCreatePost(data);
-                case "GET_FEED":
-                    return handleGetFeed(data);
-                case "LIKE_POST":
-                    return handleLikePost(data);
-                case "BOOKMARK_POST":
-                    return handleBookmarkPost(data);
-                case "DELETE_POST":
-                    return handleDeletePost(data);
-                case "GET_USER":
-                    return handleGetUser(data);
-                case "UPDATE_PROFILE":
-                    return handleUpdateProfile(data);
-                case "SEARCH_USERS":
-                    return handleSearchUsers(data);
-                case "FOLLOW_USER":
-                    return handleFollowUser(data);
-                case "GET_AVATAR_URL":
-                    return handleGetAvatarUrl(data);
-                case "UPDATE_AVATAR":
-                    return handleUpdateAvatar(data);
-                case "DELETE_AVATAR":
-                    return handleDeleteAvatar(data);
-                case "PING":
-                    return handlePing(data);
-                case "DISCONNECT":
-                    return handleDisconnect(data);
-                default:
-                    return createErrorResponse("Unknown command: " + command);
+    private Frame readFrame() throws IOException {
+        while (true) {
+            Frame frame = codec.decode(inbound.buffer());
+            if (frame != null) {
+                inbound.trim();
+                return frame;
+            }
+            if (!inbound.fill(in, codec.expectedFrameSize(inbound.buffer()))) {
+                return null;
             }
-        } catch (Exception e) {
-            Logger.error("Error processing command " + command + ": " + e.getMessage());
-            return createErrorResponse("Error processing command: " + e.getMessage());
-        }
-    }
-
-    // ==================== COMMAND HANDLERS ====================
-    private JsonObject handleHandshake(JsonObject data) {
-        JsonObject response = new JsonObject();
-        response.addProperty("success", true);
-        response.addProperty("message", "Handshake successful");
-        response.addProperty("serverVersion", "1.0");
-        return response;
-    }
-
-    private JsonObject handleLogin(JsonObject data) {
-        String username = data.get("username").getAsString();
-        String password = data.get("password").getAsString();
-
-        User user = authService.authenticate(username, password);
-
-        JsonObject response = new JsonObject();
-        if (user != null) {
-            currentUser = user;
-            response.addProperty("success", true);
-            response.addProperty("message", "Login successful");
-            response.add("user", gson.toJsonTree(user));
-
-            Logger.info("User logged in: " + username);
-        } else {
-            response.addProperty("success", false);
-            response.addProperty("message", "Invalid credentials");
-        }
-
-        return response;
-    }
-
-    private JsonObject handleSignup(JsonObject data) {
-        String username = data.get("username").getAsString();
-        String password = data.get("password").getAsString();
-
-        User user = authService.createUser(username, password);
-
-        JsonObject response = new JsonObject();
-        if (user != null) {
-            currentUser = user;
-            response.addProperty("success", true);
-            response.addProperty("message", "Signup successful");
-            response.add("user", gson.toJsonTree(user));
-
-            Logger.info("User signed up: " + username);
-        } else {
-            response.addProperty("success", false);
-            response.addProperty("message", "Username already exists");
-        }
-
-        return response;
-    }
-
-    private JsonObject handleLogout(JsonObject data) {
-        if (currentUser != null) {
-            Logger.info("User logged out: " + currentUser.getUsername());
-            currentUser = null;
-        }
-
-        JsonObject response = new JsonObject();
-        response.addProperty("success", true);
-        response.addProperty("message", "Logout successful");
-        return response;
-    }
-
-    private JsonObject handleCreatePost(JsonObject data) {
-        if (currentUser == null) {
-            return createErrorResponse("Not authenticated");
-        }
-
-        String content = data.get("content").getAsString();
-        Post createdPost = postService.createPost(currentUser.getId(), content);
-
-        JsonObject response = new JsonObject();
-        if (createdPost != null) {
-            response.addProperty("success", true);
-            response.add("post", gson.toJsonTree(createdPost));
-        } else {
-            response.addProperty("success", false);
-            response.addProperty("message", "Failed to create post");
-        }
-        return response;
-    }
-
-    private JsonObject handleGetFeed(JsonObject data) {
-        if (currentUser == null) {
-            return createErrorResponse("Not authenticated");
-        }
-
-        var posts = postService.getFeed(currentUser.getId());
-
-        JsonObject response = new JsonObject();
-        response.addProperty("success", true);
-        response.add("posts", gson.toJsonTree(posts));
-        return response;
-    }
-
-    private JsonObject handleLikePost(JsonObject data) {
-        if (currentUser == null) {
-            return createErrorResponse("Not authenticated");
         }
-
-        int postId = data.get("postId").getAsInt();
-        boolean success = postService.toggleLike(currentUser.getId(), postId);
-        int likeCount = postService.getLikeCount(postId);
-
-        JsonObject response = new JsonObject();
-        response.addProperty("success", success);
-        response.addProperty("likeCount", likeCount);
-        response.addProperty("message", success ? "Like toggled" : "Failed to toggle like");
-        return response;
     }
 
-    private JsonObject handleBookmarkPost(JsonObject data) {
-        if (currentUser == null) {
-            return createErrorResponse("Not authenticated");
+    /**
+     * Give in-flight pipelined requests a chance to write their responses
+     * before the connection is closed
+     */
+    private void awaitPipelinedRequests() {
+        int slots = ClientSession.MAX_PIPELINED_REQUESTS;
+        try {
+            if (pipelineSlots.tryAcquire(slots, DRAIN_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                pipelineSlots.release(slots);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         }
-
-        int postId = data.get("postId").getAsInt();
-        boolean success = postService.toggleBookmark(currentUser.getId(), postId);
-
-        JsonObject response = new JsonObject();
-        response.addProperty("success", success);
-        response.addProperty("message", success ? "Bookmark toggled" : "Failed to toggle bookmark");
-        return response;
     }
 
-    private JsonObject handleDeletePost(JsonObject data) {
-        if (currentUser == null) {
-            return createErrorResponse("Not authenticated");
+    /**
+     * Write a response; pipelined responses may be sent from several threads
+     */
+    private void send(byte[] response) throws IOException {
+        ByteBuffer encoded = codec.encode(new Frame(response, null));
+        sendLock.lock();
+        try {
+            out.write(encoded.array(), encoded.arrayOffset() + encoded.position(), encoded.remaining());
+            out.flush();
+        } finally {
+            sendLock.unlock();
         }
-
-        int postId = data.get("postId").getAsInt();
-        boolean success = postService.deletePost(currentUser.getId(), postId);
-
-        JsonObject response = new JsonObject();
-        response.addProperty("success", success);
-        response.addProperty("message", success ? "Post deleted" : "Failed to delete post");
-        return response;
     }
 
-    private JsonObject handleGetUser(JsonObject data) {
-        int userId = data.get("userId").getAsInt();
-        User user = userService.getUserById(userId);
-
-        JsonObject response = new JsonObject();
-        if (user != null) {
-            response.addProperty("success", true);
-            response.add("user", gson.toJsonTree(user));
-        } else {
-            response.addProperty("success", false);
-            response.addProperty("message", "User not found");
+    /**
+     * Switch codecs once a HANDSHAKE response has gone out in the old framing
+     */
+    private void switchCodecIfNegotiated() {
+        FrameCodec next = session.takeNegotiatedCodec();
+        if (next != null) {
+            codec = next;
+            Logger.debug("Switched " + session.getRemoteAddress() + " to " + next.name() + " framing");
         }
-
-        return response;
     }
 
-    private JsonObject handleUpdateProfile(JsonObject data) {
-        if (currentUser == null) {
-            return createErrorResponse("Not authenticated");
-        }
-
-        int userId = data.get("userId").getAsInt();
-        if (userId != currentUser.getId()) {
-            return createErrorResponse("Unauthorized");
+    /**
+     * Parse a request frame payload
+     *
+     * @return The request, or null if the payload is not a JSON object
+     */
+    static Request parseRequest(byte[] payload) {
+        try {
+            return Request.parse(payload);
+        } catch (ProtocolException e) {
+            Logger.error("Malformed client request: " + e.getMessage());
+            return null;
         }
-
-        String fullName = data.has("fullName") ? data.get("fullName").getAsString() : null;
-        String bio = data.has("bio") ? data.get("bio").getAsString() : null;
-        String avatarUrl = data.has("avatarUrl") ? data.get("avatarUrl").getAsString() : null;
-
-        boolean success = userService.updateProfile(userId, fullName, bio, avatarUrl);
-
-        JsonObject response = new JsonObject();
-        response.addProperty("success", success);
-        response.addProperty("message", success ? "Profile updated" : "Failed to update profile");
-        return response;
     }
 
-    private JsonObject handleSearchUsers(JsonObject data) {
-        String query = data.get("query").getAsString();
-        int limit = data.has("limit") ? data.get("limit").getAsInt() : 20;
-
-        var users = userService.searchUsers(query, limit);
-
-        JsonObject response = new JsonObject();
-        response.addProperty("success", true);
-        response.add("users", gson.toJsonTree(users));
-        return response;
-    }
-
-    private JsonObject handleFollowUser(JsonObject data) {
-        if (currentUser == null) {
-            return createErrorResponse("Not authenticated");
-        }
-
-        int targetUserId = data.get("targetUserId").getAsInt();
-        boolean success = userService.toggleFollow(currentUser.getId(), targetUserId);
-
-        JsonObject response = new JsonObject();
-        response.addProperty("success", success);
-        response.addProperty("message", success ? "Follow toggled" : "Failed to toggle follow");
-        return response;
+    /**
+     * Run a request in its command's bulkhead
+     *
+     * @param request The request, or null if it could not be parsed
+     * @param attachment Binary attachment sent with the request, may be null
+     * @return Future completed with the UTF-8 JSON response
+     */
+    CompletableFuture<byte[]> dispatch(Request request, byte[] attachment) {
+        return commands.dispatch(session, request, attachment);
     }
 
-    private JsonObject handleGetAvatarUrl(JsonObject data) {
-        int userId = data.get("userId").getAsInt();
-        String avatarUrl = userService.getAvatarUrl(userId);
-
-        JsonObject response = new JsonObject();
-        response.addProperty("success", true);
-        response.addProperty("avatarUrl", avatarUrl);
-        return response;
+    /**
+     * Get the session state shared with the command handlers
+     */
+    ClientSession getSession() {
+        return session;
     }
 
-    private JsonObject handleUpdateAvatar(JsonObject data) {
-        if (currentUser == null) {
-            return createErrorResponse("Not authenticated");
-        }
-
-        int userId = data.get("userId").getAsInt();
-        if (userId != currentUser.getId()) {
-            return createErrorResponse("Unauthorized");
-        }
-
-        String avatarData = data.get("avatarData").getAsString();
-        String contentType = data.get("contentType").getAsString();
-
-        String avatarUrl = userService.updateAvatar(userId, avatarData, contentType);
-
-        JsonObject response = new JsonObject();
-        if (avatarUrl != null) {
-            response.addProperty("success", true);
-            response.addProperty("avatarUrl", avatarUrl);
-        } else {
-            response.addProperty("success", false);
-            response.addProperty("message", "Failed to update avatar");
+    private void closeSocket() {
+        try {
+            clientSocket.close();
+        } catch (IOException e) {
+            Logger.error("Error closing idle client socket: " + e.getMessage());
         }
-
-        return response;
     }
 
-    private JsonObject handleDeleteAvatar(JsonObject data) {
-        if (currentUser == null) {
-            return createErrorResponse("Not authenticated");
-        }
-
-        int userId = data.get("userId").getAsInt();
-        if (userId != currentUser.getId()) {
-            return createErrorResponse("Unauthorized");
+    void cleanup() {
+        if (reaperHandle != null) {
+            reaperHandle.cancel();
         }
-
-        boolean success = userService.deleteAvatar(userId);
-
-        JsonObject response = new JsonObject();
-        response.addProperty("success", success);
-        response.addProperty("message", success ? "Avatar deleted" : "Failed to delete avatar");
-        return response;
-    }
-
-    private JsonObject handlePing(JsonObject data) {
-        JsonObject response = new JsonObject();
-        response.addProperty("success", true);
-        response.addProperty("message", "pong");
-        response.addProperty("timestamp", System.currentTimeMillis());
-        return response;
-    }
-
-    private JsonObject handleDisconnect(JsonObject data) {
-        running = false;
-
-        JsonObject response = new JsonObject();
-        response.addProperty("success", true);
-        response.addProperty("message", "Disconnect acknowledged");
-        return response;
-    }
-
-    // ==================== UTILITY METHODS ====================
-    private JsonObject createErrorResponse(String message) {
-        JsonObject response = new JsonObject();
-        response.addProperty("success", false);
-        response.addProperty("message", message);
-        return response;
-    }
-
-    private void cleanup() {
         try {
+            User currentUser = session.getCurrentUser();
             if (currentUser != null) {
                 Logger.info("Client disconnected: " + currentUser.getUsername());
             } else {
-                Logger.info("Client disconnected: " + clientSocket.getRemoteSocketAddress());
+                Logger.info("Client disconnected: " + session.getRemoteAddress());
             }
 
             if (in != null) {
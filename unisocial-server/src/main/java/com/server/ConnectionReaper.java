@@ -0,0 +1,166 @@
+package com.server;
+
+import com.server.utils.Logger;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Closes idle and half-open connections using a hashed timing wheel.
+ *
+ * Each connection has a single entry on the wheel. Recording activity is
+ * just a volatile write; the entry is only looked at when its bucket comes
+ * round, at which point it is either expired or moved to the bucket of its
+ * new deadline. One thread serves every connection, with no per-socket
+ * timers and no per-request scheduling.
+ */
+public class ConnectionReaper {
+    private static final int WHEEL_SIZE = 128;
+
+    private final long tickNanos;
+    private final Queue<Handle>[] wheel;
+    private final AtomicLong reclaimed = new AtomicLong();
+    private final Thread timerThread;
+
+    private volatile long tick;
+    private volatile boolean running = true;
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public ConnectionReaper(long tickMillis) {
+        this.tickNanos = TimeUnit.MILLISECONDS.toNanos(tickMillis);
+        this.wheel = new Queue[WHEEL_SIZE];
+        for (int i = 0; i < WHEEL_SIZE; i++) {
+            wheel[i] = new ConcurrentLinkedQueue<>();
+        }
+
+        this.timerThread = new Thread(this::run, "connection-reaper");
+        this.timerThread.setDaemon(true);
+    }
+
+    public void start() {
+        timerThread.start();
+    }
+
+    public void stop() {
+        running = false;
+        timerThread.interrupt();
+    }
+
+    /**
+     * Start tracking a connection
+     *
+     * @param connectTimeoutMs Time allowed before the first request
+     * @param idleTimeoutMs Time allowed between requests afterwards
+     * @param description Shown in the log when the connection is reaped
+     * @param onExpire Closes the connection; called on the reaper thread
+     */
+    public Handle register(long connectTimeoutMs, long idleTimeoutMs, String description, Runnable onExpire) {
+        Handle handle = new Handle(TimeUnit.MILLISECONDS.toNanos(connectTimeoutMs),
+                TimeUnit.MILLISECONDS.toNanos(idleTimeoutMs), description, onExpire);
+        schedule(handle, System.nanoTime());
+        return handle;
+    }
+
+    /**
+     * Get the number of connections closed for inactivity
+     */
+    public long getReclaimed() {
+        return reclaimed.get();
+    }
+
+    private void schedule(Handle handle, long now) {
+        long ticks = Math.max(1, (handle.deadline() - now + tickNanos - 1) / tickNanos);
+        // Deadlines beyond one rotation are simply checked again on the way
+        int bucket = (int) ((tick + Math.min(ticks, WHEEL_SIZE - 1)) % WHEEL_SIZE);
+        wheel[bucket].add(handle);
+    }
+
+    private void run() {
+        long nextTick = System.nanoTime() + tickNanos;
+        while (running) {
+            try {
+                long sleep = nextTick - System.nanoTime();
+                if (sleep > 0) {
+                    TimeUnit.NANOSECONDS.sleep(sleep);
+                }
+            } catch (InterruptedException e) {
+                break;
+            }
+
+            Queue<Handle> bucket = wheel[(int) (tick % WHEEL_SIZE)];
+            tick++;
+            nextTick += tickNanos;
+            expire(bucket, System.nanoTime());
+        }
+    }
+
+    private void expire(Queue<Handle> bucket, long now) {
+        // Only look at what was queued before this pass started
+        for (int i = bucket.size(); i > 0; i--) {
+            Handle handle = bucket.poll();
+            if (handle == null) {
+                break;
+            }
+            if (handle.cancelled) {
+                continue;
+            }
+
+            if (handle.deadline() - now > 0) {
+                schedule(handle, now);
+                continue;
+            }
+
+            handle.cancelled = true;
+            reclaimed.incrementAndGet();
+            Logger.info("Reaping idle connection " + handle.description + " (idle "
+                    + TimeUnit.NANOSECONDS.toMillis(now - handle.lastActivity) + " ms)");
+            try {
+                handle.onExpire.run();
+            } catch (RuntimeException e) {
+                Logger.error("Error reaping connection " + handle.description + ": " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * A tracked connection
+     */
+    public static final class Handle {
+        private final long idleTimeoutNanos;
+        private final String description;
+        private final Runnable onExpire;
+
+        private volatile long lastActivity = System.nanoTime();
+        private volatile long timeoutNanos;
+        private volatile boolean cancelled;
+
+        private Handle(long connectTimeoutNanos, long idleTimeoutNanos, String description, Runnable onExpire) {
+            this.timeoutNanos = connectTimeoutNanos;
+            this.idleTimeoutNanos = idleTimeoutNanos;
+            this.description = description;
+            this.onExpire = onExpire;
+        }
+
+        /**
+         * Record activity on the connection; switches from the connect
+         * timeout to the idle timeout
+         */
+        public void touch() {
+            lastActivity = System.nanoTime();
+            timeoutNanos = idleTimeoutNanos;
+        }
+
+        /**
+         * Stop tracking; the entry is dropped the next time its bucket comes round
+         */
+        public void cancel() {
+            cancelled = true;
+        }
+
+        private long deadline() {
+            return lastActivity + timeoutNanos;
+        }
+    }
+}
@@ -1,23 +1,124 @@
 package com.server;
 
+import com.server.db.ConnectionPool;
+import com.server.db.GroupCommitWriter;
+import com.server.db.Migration;
+import com.server.db.MigrationRunner;
+import com.server.db.PoolStats;
+import com.server.db.PostArchiver;
+import com.server.db.ShardRouter;
+import com.server.db.SqliteProfile;
+import com.server.db.WriterStats;
 import com.server.utils.Logger;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.sql.*;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 
 /**
- * Database connection and management
+ * Database connection and management.
+ *
+ * The data is split over one or more shard files (see {@link ShardRouter}).
+ * Each shard has its own pool of read-only connections and its own
+ * group-commit writer thread, through which all of its writes go via
+ * {@link #write} or {@link #executeTransaction}. Methods without a shard
+ * argument use the main database, shard 0.
+ *
+ * When archiving is enabled, or was before, each shard's archive file is
+ * attached to all of its connections (see {@link PostArchiver}).
  */
 public class DatabaseManager {
-    private final String databaseUrl;
-    private final ConcurrentHashMap<Thread, Connection> connections = new ConcurrentHashMap<>();
+    // Column default for the current time in epoch milliseconds
+    private static final String NOW_MILLIS = "(CAST((julianday('now') - 2440587.5) * 86400000 AS INTEGER))";
 
-    public DatabaseManager(String databaseUrl) {
-        this.databaseUrl = databaseUrl;
+    private final ShardRouter router;
+    private final String[] urls;
+    private final String[] archiveUrls;
+    private final ConnectionPool[] pools;
+    private final GroupCommitWriter[] writers;
+    private final SqliteProfile profile;
+    private final int counterRepairIntervalMs;
+    private final int fanOutThreshold;
+    private final long archiveAfterMs;
+    private final int archiveIntervalMs;
+    private final int archiveBatchSize;
+    private final ExecutorService shardReads;
+    private ScheduledExecutorService counterRepair;
+    private ScheduledExecutorService archival;
+
+    public DatabaseManager(ServerConfig config) {
+        this.profile = sqliteProfile(config);
+        this.router = new ShardRouter(config.getShardCount());
+
+        int shards = router.shardCount();
+        this.urls = new String[shards];
+        this.archiveUrls = new String[shards];
+        this.pools = new ConnectionPool[shards];
+        this.writers = new GroupCommitWriter[shards];
+        boolean archived = usesArchive(config);
+        for (int shard = 0; shard < shards; shard++) {
+            urls[shard] = ShardRouter.shardUrl(config.getDatabaseUrl(), shard);
+            archiveUrls[shard] = archived ? ShardRouter.archiveUrl(urls[shard]) : null;
+            pools[shard] = new ConnectionPool(urls[shard], config.getDbPoolSize(),
+                    config.getDbAcquireTimeoutMs(), config.getDbIdleTimeoutMs(), config.getDbValidationIntervalMs(),
+                    config.getDbStatementCacheSize(), profile, true, archiveUrls[shard]);
+            writers[shard] = new GroupCommitWriter(shard == ShardRouter.MAIN ? "db-writer" : "db-writer-" + shard,
+                    urls[shard], archiveUrls[shard], profile, config.getGroupCommitMaxWrites(),
+                    config.getGroupCommitWindowMs(), config.getWriteQueueSize(), config.getDbStatementCacheSize());
+        }
+        this.counterRepairIntervalMs = config.getCounterRepairIntervalMs();
+        this.fanOutThreshold = config.getFanOutThreshold();
+        this.archiveAfterMs = TimeUnit.DAYS.toMillis(config.getArchiveAfterDays());
+        this.archiveIntervalMs = config.getArchiveIntervalMs();
+        this.archiveBatchSize = config.getArchiveBatchSize();
+
+        // Reads of other shards, and reads that feed a write without holding up the caller
+        this.shardReads = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "db-shard-reader");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Get the SQLite pragmas configured for new connections
+     */
+    public static SqliteProfile sqliteProfile(ServerConfig config) {
+        return new SqliteProfile(config.getSqliteJournalMode(), config.getSqliteSynchronous(),
+                config.getSqliteMmapSize(), config.getSqliteCacheSizeKb(), config.getSqliteTempStore(),
+                config.getSqliteBusyTimeoutMs());
+    }
+
+    /**
+     * Whether the archive files are attached: archiving is enabled, or the
+     * main database already has an archive from when it was
+     */
+    private static boolean usesArchive(ServerConfig config) {
+        Path mainFile = ShardRouter.databaseFile(config.getDatabaseUrl());
+        if (mainFile == null) {
+            return false;
+        }
+        return config.getArchiveAfterDays() > 0
+                || Files.exists(ShardRouter.databaseFile(ShardRouter.archiveUrl(config.getDatabaseUrl())));
     }
 
     /**
-     * Initialize database and create tables
+     * Initialize database and bring its schema up to date
      */
     public boolean initialize() {
         try {
@@ -30,10 +131,32 @@ public class DatabaseManager {
                 return false;
             }
 
-            // Create tables
-            createTables();
+            // A new main database is created with the configured number of shards
+            boolean created = isMissing(urls[ShardRouter.MAIN]);
+            for (int shard = 0; shard < router.shardCount(); shard++) {
+                boolean shardCreated = isMissing(urls[shard]);
+                if (shardCreated && !created) {
+                    Logger.error("Shard file " + urls[shard] + " is missing");
+                    return false;
+                }
 
-            Logger.info("Database initialized successfully");
+                writers[shard].start();
+                if (hasArchive() && !executeTransaction(shard, conn -> {
+                    PostArchiver.createTables(conn);
+                    return true;
+                })) {
+                    return false;
+                }
+                if (!new MigrationRunner(this, shard, migrations()).migrate() || !checkLayout(shard, shardCreated)) {
+                    return false;
+                }
+            }
+            Logger.info("SQLite profile: " + profile);
+            scheduleCounterRepair();
+            scheduleArchival();
+
+            Logger.info("Database initialized successfully with " + router.shardCount()
+                    + (router.shardCount() == 1 ? " shard" : " shards"));
             return true;
 
         } catch (Exception e) {
@@ -44,29 +167,660 @@ public class DatabaseManager {
     }
 
     /**
-     * Get database connection for current thread
+     * Whether a database file does not exist yet, or is empty
+     */
+    private static boolean isMissing(String url) throws IOException {
+        Path file = ShardRouter.databaseFile(url);
+        return file == null || !Files.exists(file) || Files.size(file) == 0;
+    }
+
+    /**
+     * Check that a shard file belongs at its position in the configured
+     * layout, recording the layout in files that do not have one yet. Files
+     * from before sharding hold the whole database as shard 0 of 1.
+     *
+     * @param created Whether the file was created by this start
+     */
+    private boolean checkLayout(int shard, boolean created) {
+        Integer shardCount = readSetting(shard, "shard_count");
+        Integer shardIndex = readSetting(shard, "shard_index");
+        if (shardCount == null || shardIndex == null) {
+            shardCount = created ? router.shardCount() : 1;
+            shardIndex = created ? shard : ShardRouter.MAIN;
+            if (!writeSetting(shard, "shard_count", shardCount) || !writeSetting(shard, "shard_index", shardIndex)) {
+                return false;
+            }
+        }
+
+        if (shardCount != router.shardCount() || shardIndex != shard) {
+            Logger.error(urls[shard] + " is shard " + shardIndex + " of " + shardCount + ", but " + router.shardCount()
+                    + " shards are configured; run com.server.db.ReshardTool to change the shard count");
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Read a value from a shard's settings table
+     *
+     * @return The value, or null if it is not set or could not be read
+     */
+    public Integer readSetting(int shard, String name) {
+        try (Connection conn = getConnection(shard);
+             PreparedStatement stmt = conn.prepareStatement("SELECT value FROM settings WHERE name = ?")) {
+            stmt.setString(1, name);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() ? rs.getInt(1) : null;
+            }
+        } catch (SQLException e) {
+            Logger.error("Error reading setting " + name + " of shard " + shard + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Store a value in a shard's settings table
+     *
+     * @return true if successful
+     */
+    public boolean writeSetting(int shard, String name, int value) {
+        return executeTransaction(shard, conn -> {
+            String sql = "INSERT INTO settings (name, value) VALUES (?, ?) ON CONFLICT (name) DO UPDATE SET value = excluded.value";
+            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                stmt.setString(1, name);
+                stmt.setInt(2, value);
+                return stmt.executeUpdate() > 0;
+            }
+        });
+    }
+
+    /**
+     * Get the mapping of users and posts to shards
+     */
+    public ShardRouter getRouter() {
+        return router;
+    }
+
+    /**
+     * Whether each shard's archive file is attached as the
+     * {@value PostArchiver#SCHEMA} schema
+     */
+    public boolean hasArchive() {
+        return archiveUrls[ShardRouter.MAIN] != null;
+    }
+
+    /**
+     * Get the JDBC URL of every database file: each shard, main first, then
+     * each shard's archive if there is one
+     */
+    public List<String> getFileUrls() {
+        List<String> files = new ArrayList<>(List.of(urls));
+        if (hasArchive()) {
+            files.addAll(List.of(archiveUrls));
+        }
+        return files;
+    }
+
+    /**
+     * Borrow a read-only pooled connection to the main database; see
+     * {@link #getConnection(int)}
      */
     public Connection getConnection() throws SQLException {
-        Thread currentThread = Thread.currentThread();
-        Connection connection = connections.get(currentThread);
+        return getConnection(ShardRouter.MAIN);
+    }
+
+    /**
+     * Borrow a read-only pooled connection to a shard; closing it returns it
+     * to the pool. Inside a write to that shard this is the writer's
+     * connection instead, and closing it is a no-op so services can keep
+     * using try-with-resources.
+     */
+    public Connection getConnection(int shard) throws SQLException {
+        if (writers[shard].isWriterThread()) {
+            return writers[shard].connection();
+        }
+        return pools[shard].acquire();
+    }
 
-        if (connection == null || connection.isClosed()) {
-            connection = DriverManager.getConnection(databaseUrl);
-            connection.setAutoCommit(true);
-            connections.put(currentThread, connection);
+    /**
+     * Run a write on the main database's writer thread and wait until it is committed
+     *
+     * @param mutation Performs the write using {@link #getConnection()}
+     * @param failed Result meaning the write failed; it is then rolled back
+     * @return The mutation's result, or {@code failed}
+     */
+    public <T> T write(Supplier<T> mutation, T failed) {
+        return write(ShardRouter.MAIN, mutation, failed);
+    }
+
+    /**
+     * Run a write on a shard's writer thread and wait until it is committed.
+     * Writes to other shards made from inside it commit separately; use
+     * {@link #writeAsync} for them so writers never wait on each other.
+     *
+     * @param mutation Performs the write using {@link #getConnection(int)}
+     * @param failed Result meaning the write failed; it is then rolled back
+     * @return The mutation's result, or {@code failed}
+     */
+    public <T> T write(int shard, Supplier<T> mutation, T failed) {
+        try {
+            return writers[shard].submit(mutation, failed).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return failed;
+        } catch (ExecutionException e) {
+            Logger.error("Write failed: " + e.getCause().getMessage());
+            return failed;
         }
+    }
 
-        return connection;
+    /**
+     * Queue a write for the main database's writer thread
+     *
+     * @param mutation Performs the write using {@link #getConnection()}
+     * @param failed Result meaning the write failed; it is then rolled back
+     * @return Completed with the mutation's result once committed, or with {@code failed}
+     */
+    public <T> CompletableFuture<T> writeAsync(Supplier<T> mutation, T failed) {
+        return writeAsync(ShardRouter.MAIN, mutation, failed);
     }
 
     /**
-     * Create database tables
+     * Queue a write for a shard's writer thread. From inside a write to the
+     * same shard it runs at once, as part of that write; from inside a write
+     * to another shard it is queued once that write commits, and dropped if
+     * it is rolled back.
+     *
+     * @param mutation Performs the write using {@link #getConnection(int)}
+     * @param failed Result meaning the write failed; it is then rolled back
+     * @return Completed with the mutation's result once committed, or with {@code failed}
+     */
+    public <T> CompletableFuture<T> writeAsync(int shard, Supplier<T> mutation, T failed) {
+        for (GroupCommitWriter writer : writers) {
+            if (writer != writers[shard] && writer.isWriterThread()) {
+                return writer.submitAfterCommit(writers[shard], mutation, failed);
+            }
+        }
+        return writers[shard].submit(mutation, failed);
+    }
+
+    /**
+     * A read against one shard
+     */
+    @FunctionalInterface
+    public interface ShardRead<T> {
+        T read(int shard, Connection connection) throws SQLException;
+    }
+
+    /**
+     * Run a read on several shards in parallel and collect the results. The
+     * first shard is read on the calling thread; so is every shard when
+     * called from a writer thread, so a write sees its own changes.
+     *
+     * @return The results, in the order the shards were given
+     */
+    public <T> List<T> readShards(Collection<Integer> shards, ShardRead<T> read) throws SQLException {
+        List<Integer> order = new ArrayList<>(shards);
+        List<T> results = new ArrayList<>(order.size());
+        if (order.size() <= 1 || isWriterThread()) {
+            for (int shard : order) {
+                results.add(readShard(shard, read));
+            }
+            return results;
+        }
+
+        List<CompletableFuture<T>> others = new ArrayList<>(order.size() - 1);
+        for (int shard : order.subList(1, order.size())) {
+            others.add(readAsync(shard, read));
+        }
+        results.add(readShard(order.get(0), read));
+        for (CompletableFuture<T> other : others) {
+            results.add(join(other));
+        }
+        return results;
+    }
+
+    /**
+     * Run a read on a shard in the background
+     *
+     * @return Completed with the result, or exceptionally with the SQLException
+     */
+    public <T> CompletableFuture<T> readAsync(int shard, ShardRead<T> read) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return readShard(shard, read);
+            } catch (SQLException e) {
+                throw new CompletionException(e);
+            }
+        }, shardReads);
+    }
+
+    private <T> T readShard(int shard, ShardRead<T> read) throws SQLException {
+        try (Connection conn = getConnection(shard)) {
+            return read.read(shard, conn);
+        }
+    }
+
+    private static <T> T join(CompletableFuture<T> future) throws SQLException {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof SQLException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private boolean isWriterThread() {
+        for (GroupCommitWriter writer : writers) {
+            if (writer.isWriterThread()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Bind a list of IDs as one parameter, for {@code IN (SELECT value FROM json_each(?))}
+     */
+    public static String jsonArray(Collection<Integer> ids) {
+        StringJoiner json = new StringJoiner(",", "[", "]");
+        for (int id : ids) {
+            json.add(Integer.toString(id));
+        }
+        return json.toString();
+    }
+
+    /**
+     * Get the main database's group-commit writer metrics
+     */
+    public WriterStats getWriterStats() {
+        return getWriterStats(ShardRouter.MAIN);
+    }
+
+    /**
+     * Get a shard's group-commit writer metrics
+     */
+    public WriterStats getWriterStats(int shard) {
+        return writers[shard].stats();
+    }
+
+    /**
+     * Get the main database's connection pool metrics
+     */
+    public PoolStats getPoolStats() {
+        return getPoolStats(ShardRouter.MAIN);
+    }
+
+    /**
+     * Get a shard's connection pool metrics
+     */
+    public PoolStats getPoolStats(int shard) {
+        return pools[shard].stats();
+    }
+
+    /**
+     * Recompute the denormalized like, follower, following and post counters
+     * from the rows they count
+     *
+     * @return Number of counters that were wrong, or -1 on error
+     */
+    public int repairCounters() {
+        if (router.shardCount() == 1) {
+            return write(() -> {
+                try {
+                    return repairCounters(writers[ShardRouter.MAIN].connection());
+                } catch (SQLException e) {
+                    Logger.error("Error repairing counters: " + e.getMessage());
+                    return -1;
+                }
+            }, -1);
+        }
+
+        int repaired = 0;
+        for (int shard = 0; shard < router.shardCount(); shard++) {
+            GroupCommitWriter writer = writers[shard];
+            int likeCounts = write(shard, () -> {
+                try (Statement stmt = writer.connection().createStatement()) {
+                    return stmt.executeUpdate(REPAIR_LIKE_COUNTS)
+                            + (hasArchive() ? stmt.executeUpdate(REPAIR_ARCHIVED_LIKE_COUNTS) : 0);
+                } catch (SQLException e) {
+                    Logger.error("Error repairing like counters: " + e.getMessage());
+                    return -1;
+                }
+            }, -1);
+            if (likeCounts < 0) {
+                return -1;
+            }
+            repaired += likeCounts;
+        }
+
+        // A user's posts all live on the user's shard, which queues every
+        // change to their post_count in main. Counting on the shard's writer
+        // and queueing the correction from there lands it in main after
+        // exactly the changes it counted, so it cannot clobber one in flight.
+        List<CompletableFuture<Integer>> postCounts = new ArrayList<>();
+        for (int shard : router.allShards()) {
+            GroupCommitWriter writer = writers[shard];
+            boolean counted = write(shard, () -> {
+                Map<Integer, Integer> counts = new HashMap<>();
+                try (Statement stmt = writer.connection().createStatement();
+                     ResultSet rs = stmt.executeQuery(
+                             "SELECT user_id, COUNT(*) FROM " + postsWithArchive() + " GROUP BY user_id")) {
+                    while (rs.next()) {
+                        counts.put(rs.getInt(1), rs.getInt(2));
+                    }
+                } catch (SQLException e) {
+                    Logger.error("Error counting posts: " + e.getMessage());
+                    return false;
+                }
+                postCounts.add(writeAsync(() -> repairPostCounts(shard, counts), -1));
+                return true;
+            }, false);
+            if (!counted) {
+                return -1;
+            }
+        }
+        for (CompletableFuture<Integer> fixed : postCounts) {
+            int count = fixed.join();
+            if (count < 0) {
+                return -1;
+            }
+            repaired += count;
+        }
+
+        int userCounts = write(() -> {
+            try (Statement stmt = writers[ShardRouter.MAIN].connection().createStatement()) {
+                return stmt.executeUpdate(REPAIR_FOLLOWERS_COUNTS) + stmt.executeUpdate(REPAIR_FOLLOWING_COUNTS);
+            } catch (SQLException e) {
+                Logger.error("Error repairing user counters: " + e.getMessage());
+                return -1;
+            }
+        }, -1);
+        return userCounts < 0 ? -1 : repaired + userCounts;
+    }
+
+    /**
+     * Set the post counters of a shard's users to their counted posts, on
+     * the main writer
+     *
+     * @param counts Posts per user ID, counted on the shard
+     * @return Number of counters that were wrong, or -1 on error
+     */
+    private int repairPostCounts(int shard, Map<Integer, Integer> counts) {
+        Connection conn = writers[ShardRouter.MAIN].connection();
+        try (Statement stmt = conn.createStatement();
+             PreparedStatement update = conn.prepareStatement("UPDATE users SET post_count = ? WHERE id = ?")) {
+            List<int[]> wrong = new ArrayList<>();
+            try (ResultSet rs = stmt.executeQuery("SELECT id, post_count FROM users")) {
+                while (rs.next()) {
+                    int actual = counts.getOrDefault(rs.getInt(1), 0);
+                    if (router.shardForUser(rs.getInt(1)) == shard && rs.getInt(2) != actual) {
+                        wrong.add(new int[] { rs.getInt(1), actual });
+                    }
+                }
+            }
+            for (int[] user : wrong) {
+                update.setInt(1, user[1]);
+                update.setInt(2, user[0]);
+                update.executeUpdate();
+            }
+            return wrong.size();
+
+        } catch (SQLException e) {
+            Logger.error("Error repairing post counters: " + e.getMessage());
+            return -1;
+        }
+    }
+
+    private static final String REPAIR_LIKE_COUNTS = """
+        UPDATE posts SET like_count = (SELECT COUNT(*) FROM likes l WHERE l.post_id = posts.id)
+        WHERE like_count != (SELECT COUNT(*) FROM likes l WHERE l.post_id = posts.id)
+    """;
+    private static final String REPAIR_ARCHIVED_LIKE_COUNTS = """
+        UPDATE archive.posts SET like_count = (SELECT COUNT(*) FROM archive.likes l WHERE l.post_id = posts.id)
+        WHERE like_count != (SELECT COUNT(*) FROM archive.likes l WHERE l.post_id = posts.id)
+    """;
+    private static final String REPAIR_FOLLOWERS_COUNTS = """
+        UPDATE users SET followers_count = (SELECT COUNT(*) FROM follows f WHERE f.followee_id = users.id)
+        WHERE followers_count != (SELECT COUNT(*) FROM follows f WHERE f.followee_id = users.id)
+    """;
+    private static final String REPAIR_FOLLOWING_COUNTS = """
+        UPDATE users SET following_count = (SELECT COUNT(*) FROM follows f WHERE f.follower_id = users.id)
+        WHERE following_count != (SELECT COUNT(*) FROM follows f WHERE f.follower_id = users.id)
+    """;
+
+    /**
+     * Repair the counters of a database that is a single shard
+     */
+    private int repairCounters(Connection conn) throws SQLException {
+        String[] repairs = {
+            REPAIR_LIKE_COUNTS,
+            REPAIR_FOLLOWERS_COUNTS,
+            REPAIR_FOLLOWING_COUNTS,
+            """
+                UPDATE users SET post_count = (SELECT COUNT(*) FROM %1$s p WHERE p.user_id = users.id)
+                WHERE post_count != (SELECT COUNT(*) FROM %1$s p WHERE p.user_id = users.id)
+            """.formatted(postsWithArchive())
+        };
+
+        int repaired = 0;
+        try (Statement stmt = conn.createStatement()) {
+            for (String sql : repairs) {
+                repaired += stmt.executeUpdate(sql);
+            }
+            if (hasArchive()) {
+                repaired += stmt.executeUpdate(REPAIR_ARCHIVED_LIKE_COUNTS);
+            }
+        }
+        return repaired;
+    }
+
+    /**
+     * The posts table for counting a user's posts: archived posts still
+     * count, and a post caught mid-archive in both places counts once
+     */
+    private String postsWithArchive() {
+        return hasArchive() ? "(SELECT id, user_id FROM posts UNION SELECT id, user_id FROM archive.posts)" : "posts";
+    }
+
+    /**
+     * Periodically correct counters that drifted, e.g. after rows were
+     * removed outside the services
+     */
+    private void scheduleCounterRepair() {
+        if (counterRepairIntervalMs <= 0) {
+            return;
+        }
+        counterRepair = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "db-counter-repair");
+            thread.setDaemon(true);
+            return thread;
+        });
+        counterRepair.scheduleWithFixedDelay(() -> {
+            int repaired = repairCounters();
+            if (repaired > 0) {
+                Logger.warn("Repaired " + repaired + " drifted counters");
+            }
+        }, counterRepairIntervalMs, counterRepairIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Periodically move old posts to the archive files
      */
-    private void createTables() throws SQLException {
+    private void scheduleArchival() {
+        if (archiveAfterMs <= 0 || archiveIntervalMs <= 0) {
+            return;
+        }
+        PostArchiver archiver = new PostArchiver(this, archiveAfterMs, archiveBatchSize);
+        archival = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "db-archiver");
+            thread.setDaemon(true);
+            return thread;
+        });
+        archival.scheduleWithFixedDelay(() -> {
+            int archived = archiver.archive();
+            if (archived > 0) {
+                Logger.info("Archived " + archived + " posts older than " + TimeUnit.MILLISECONDS.toDays(archiveAfterMs) + " days");
+            }
+        }, 0, archiveIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Rebuild every home timeline from the posts and follows tables. Posts of
+     * authors above the fan-out threshold are left out; feeds pull them.
+     *
+     * @return true if successful
+     */
+    public boolean rebuildTimeline() {
+        if (router.shardCount() == 1) {
+            return executeTransaction(conn -> {
+                int entries = rebuildTimeline(conn);
+                Logger.info("Rebuilt timeline with " + entries + " entries");
+                return true;
+            });
+        }
+
+        // Followers of each fanned-out author, from main
+        Map<Integer, List<Integer>> followers = new HashMap<>();
+        String followsSql = """
+            SELECT f.followee_id, f.follower_id
+            FROM follows f
+            JOIN users a ON a.id = f.followee_id
+            WHERE ? <= 0 OR a.followers_count <= ?
+        """;
         try (Connection conn = getConnection();
-             Statement stmt = conn.createStatement()) {
+             PreparedStatement stmt = conn.prepareStatement(followsSql)) {
+            stmt.setInt(1, fanOutThreshold);
+            stmt.setInt(2, fanOutThreshold);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    followers.computeIfAbsent(rs.getInt(1), author -> new ArrayList<>()).add(rs.getInt(2));
+                }
+            }
+        } catch (SQLException e) {
+            Logger.error("Error reading follows for timeline rebuild: " + e.getMessage());
+            return false;
+        }
 
+        // Each post goes to its author's timeline and to each follower's, on the follower's shard
+        List<List<long[]>> entries = new ArrayList<>();
+        router.allShards().forEach(shard -> entries.add(new ArrayList<>()));
+        try {
+            for (List<long[]> posts : readShards(router.allShards(), (shard, conn) -> {
+                List<long[]> shardPosts = new ArrayList<>();
+                try (Statement stmt = conn.createStatement();
+                     ResultSet rs = stmt.executeQuery("SELECT user_id, id, created_at FROM posts")) {
+                    while (rs.next()) {
+                        shardPosts.add(new long[] { rs.getInt(1), rs.getInt(2), rs.getLong(3) });
+                    }
+                }
+                return shardPosts;
+            })) {
+                for (long[] post : posts) {
+                    int authorId = (int) post[0];
+                    entries.get(router.shardForUser(authorId)).add(post);
+                    for (int followerId : followers.getOrDefault(authorId, List.of())) {
+                        entries.get(router.shardForUser(followerId)).add(new long[] { followerId, post[1], post[2] });
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            Logger.error("Error reading posts for timeline rebuild: " + e.getMessage());
+            return false;
+        }
+
+        for (int shard = 0; shard < router.shardCount(); shard++) {
+            List<long[]> shardEntries = entries.get(shard);
+            boolean rebuilt = executeTransaction(shard, conn -> {
+                try (Statement stmt = conn.createStatement()) {
+                    stmt.execute("DELETE FROM timeline");
+                }
+                String sql = "INSERT OR IGNORE INTO timeline (user_id, post_id, created_at) VALUES (?, ?, ?)";
+                try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                    for (long[] entry : shardEntries) {
+                        stmt.setLong(1, entry[0]);
+                        stmt.setLong(2, entry[1]);
+                        stmt.setLong(3, entry[2]);
+                        stmt.addBatch();
+                    }
+                    stmt.executeBatch();
+                }
+                return true;
+            });
+            if (!rebuilt) {
+                return false;
+            }
+            Logger.info("Rebuilt timeline of shard " + shard + " with " + shardEntries.size() + " entries");
+        }
+        return true;
+    }
 
+    /**
+     * Rebuild the timeline of a database that is a single shard
+     */
+    private int rebuildTimeline(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("DELETE FROM timeline");
+        }
+
+        String sql = """
+            INSERT OR IGNORE INTO timeline (user_id, post_id, created_at)
+            SELECT p.user_id, p.id, p.created_at FROM posts p
+            UNION ALL
+            SELECT f.follower_id, p.id, p.created_at
+            FROM follows f
+            JOIN users a ON a.id = f.followee_id
+            JOIN posts p ON p.user_id = f.followee_id
+            WHERE ? <= 0 OR a.followers_count <= ?
+        """;
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setInt(1, fanOutThreshold);
+            stmt.setInt(2, fanOutThreshold);
+            return stmt.executeUpdate();
+        }
+    }
+
+    /**
+     * Add a column to an existing table unless it is already there
+     */
+    private static void addColumnIfMissing(Connection conn, String table, String column, String definition)
+            throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("PRAGMA table_info(" + table + ")")) {
+            while (rs.next()) {
+                if (rs.getString("name").equalsIgnoreCase(column)) {
+                    return;
+                }
+            }
+        }
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("ALTER TABLE " + table + " ADD COLUMN " + column + " " + definition);
+        }
+    }
+
+    /**
+     * Every schema change, oldest first. Databases created before versioning
+     * are at version 0 and may already contain some of these objects, so the
+     * early migrations only create what is missing.
+     */
+    private List<Migration> migrations() {
+        return List.of(
+                new Migration(1, "Base tables and indexes", this::createTables),
+                new Migration(2, "Denormalized counters", this::addCounters),
+                new Migration(3, "Home timelines", this::createTimeline),
+                new Migration(4, "User search index", this::createUserSearch),
+                new Migration(5, "Composite indexes for hot queries", this::addCompositeIndexes),
+                new Migration(6, "Epoch millisecond timestamps", this::useEpochMillis),
+                new Migration(7, "Shard settings", this::createSettings));
+    }
+
+    /**
+     * Create database tables
+     */
+    private void createTables(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
             // Users table
             String createUsersTable = """
             CREATE TABLE IF NOT EXISTS users (
@@ -139,23 +893,294 @@ public class DatabaseManager {
             stmt.execute(createFollowsTable);
 
             // Create indexes for better performance
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_posts_user_id ON posts (user_id)");
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_posts_created_at ON posts (created_at)");
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_likes_user_id ON likes (user_id)");
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_likes_post_id ON likes (post_id)");
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_bookmarks_user_id ON bookmarks (user_id)");
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_bookmarks_post_id ON bookmarks (post_id)");
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_follows_follower_id ON follows (follower_id)");
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_follows_followee_id ON follows (followee_id)");
+        }
+    }
 
-            try {
-                stmt.execute("CREATE INDEX IF NOT EXISTS idx_posts_user_id ON posts (user_id)");
-                stmt.execute("CREATE INDEX IF NOT EXISTS idx_posts_created_at ON posts (created_at)");
-                stmt.execute("CREATE INDEX IF NOT EXISTS idx_likes_user_id ON likes (user_id)");
-                stmt.execute("CREATE INDEX IF NOT EXISTS idx_likes_post_id ON likes (post_id)");
-                stmt.execute("CREATE INDEX IF NOT EXISTS idx_bookmarks_user_id ON bookmarks (user_id)");
-                stmt.execute("CREATE INDEX IF NOT EXISTS idx_bookmarks_post_id ON bookmarks (post_id)");
-                stmt.execute("CREATE INDEX IF NOT EXISTS idx_follows_follower_id ON follows (follower_id)");
-                stmt.execute("CREATE INDEX IF NOT EXISTS idx_follows_followee_id ON follows (followee_id)");
-
-                Logger.info("Database indexes created/verified successfully");
-            } catch (SQLException e) {
-                Logger.warn("Some indexes may not have been created: " + e.getMessage());
+    /**
+     * Add the denormalized counters, kept up to date by the services that
+     * write the counted rows, and fill them in
+     */
+    private void addCounters(Connection conn) throws SQLException {
+        addColumnIfMissing(conn, "posts", "like_count", "INTEGER NOT NULL DEFAULT 0");
+        addColumnIfMissing(conn, "users", "followers_count", "INTEGER NOT NULL DEFAULT 0");
+        addColumnIfMissing(conn, "users", "following_count", "INTEGER NOT NULL DEFAULT 0");
+        addColumnIfMissing(conn, "users", "post_count", "INTEGER NOT NULL DEFAULT 0");
+        Logger.info("Backfilled " + repairCounters(conn) + " counters");
+    }
+
+    /**
+     * Create the home timelines: one row per post in each follower's feed,
+     * filled on write
+     */
+    private void createTimeline(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            String createTimelineTable = """
+            CREATE TABLE IF NOT EXISTS timeline (
+                user_id INTEGER NOT NULL,
+                post_id INTEGER NOT NULL,
+                created_at TIMESTAMP NOT NULL,
+                PRIMARY KEY (user_id, created_at, post_id)
+            ) WITHOUT ROWID
+        """;
+            stmt.execute(createTimelineTable);
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_timeline_post_id ON timeline (post_id)");
+        }
+        Logger.info("Backfilled " + rebuildTimeline(conn) + " timeline entries");
+    }
+
+    /**
+     * Create the full-text index over the searchable user fields, kept in
+     * sync by triggers
+     */
+    private void createUserSearch(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            String createUsersFtsTable = """
+            CREATE VIRTUAL TABLE IF NOT EXISTS users_fts USING fts5(
+                username, full_name, bio,
+                content = 'users', content_rowid = 'id',
+                prefix = '2 3'
+            )
+        """;
+            stmt.execute(createUsersFtsTable);
+            createUserSearchTriggers(conn);
+            stmt.execute("INSERT INTO users_fts (users_fts) VALUES ('rebuild')");
+        }
+    }
+
+    /**
+     * Create the triggers that keep users_fts in sync with users
+     */
+    private static void createUserSearchTriggers(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("""
+            CREATE TRIGGER IF NOT EXISTS users_fts_insert AFTER INSERT ON users BEGIN
+                INSERT INTO users_fts (rowid, username, full_name, bio)
+                VALUES (new.id, new.username, new.full_name, new.bio);
+            END
+        """);
+            // Only the indexed columns, so counter updates do not re-index the row
+            stmt.execute("""
+            CREATE TRIGGER IF NOT EXISTS users_fts_update AFTER UPDATE OF username, full_name, bio ON users BEGIN
+                INSERT INTO users_fts (users_fts, rowid, username, full_name, bio)
+                VALUES ('delete', old.id, old.username, old.full_name, old.bio);
+                INSERT INTO users_fts (rowid, username, full_name, bio)
+                VALUES (new.id, new.username, new.full_name, new.bio);
+            END
+        """);
+            stmt.execute("""
+            CREATE TRIGGER IF NOT EXISTS users_fts_delete AFTER DELETE ON users BEGIN
+                INSERT INTO users_fts (users_fts, rowid, username, full_name, bio)
+                VALUES ('delete', old.id, old.username, old.full_name, old.bio);
+            END
+        """);
+        }
+    }
+
+    /**
+     * Replace single-column indexes with composite ones that serve the hot
+     * queries on their own. follows(follower_id, followee_id) already exists
+     * as the table's UNIQUE constraint.
+     */
+    private void addCompositeIndexes(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            // An author's posts newest first, in feed cursor order
+            stmt.execute("DROP INDEX IF EXISTS idx_posts_user_id");
+            stmt.execute("DROP INDEX IF EXISTS idx_posts_user_created_at");
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_posts_user_recent ON posts (user_id, created_at DESC, id DESC)");
+
+            // Likes per post, and whether a given user liked it
+            stmt.execute("DROP INDEX IF EXISTS idx_likes_post_id");
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_likes_post_user ON likes (post_id, user_id)");
+
+            // Followers of a user, for follower lists and fan-out
+            stmt.execute("DROP INDEX IF EXISTS idx_follows_follower_id");
+            stmt.execute("DROP INDEX IF EXISTS idx_follows_followee_id");
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_follows_followee_follower ON follows (followee_id, follower_id)");
+
+            stmt.execute("ANALYZE");
+        }
+    }
+
+    /**
+     * Store created_at and updated_at as INTEGER milliseconds since the epoch
+     * instead of 'YYYY-MM-DD HH:MM:SS' text. SQLite cannot change a column's
+     * type or default in place, so each table is rebuilt and its indexes and
+     * triggers created again.
+     */
+    private void useEpochMillis(Connection conn) throws SQLException {
+        rebuildTable(conn, "users", """
+            CREATE TABLE users_new (
+                id INTEGER PRIMARY KEY AUTOINCREMENT,
+                username TEXT UNIQUE NOT NULL,
+                password_hash TEXT NOT NULL,
+                full_name TEXT,
+                bio TEXT,
+                avatar_url TEXT,
+                created_at INTEGER NOT NULL DEFAULT %1$s,
+                updated_at INTEGER NOT NULL DEFAULT %1$s,
+                followers_count INTEGER NOT NULL DEFAULT 0,
+                following_count INTEGER NOT NULL DEFAULT 0,
+                post_count INTEGER NOT NULL DEFAULT 0
+            )
+        """.formatted(NOW_MILLIS), """
+            INSERT INTO users_new
+            SELECT id, username, password_hash, full_name, bio, avatar_url, %s, %s,
+                   followers_count, following_count, post_count
+            FROM users
+        """.formatted(epochMillis("created_at"), epochMillis("updated_at")));
+
+        rebuildTable(conn, "posts", """
+            CREATE TABLE posts_new (
+                id INTEGER PRIMARY KEY AUTOINCREMENT,
+                user_id INTEGER NOT NULL,
+                content TEXT NOT NULL,
+                image_url TEXT,
+                created_at INTEGER NOT NULL DEFAULT %1$s,
+                updated_at INTEGER NOT NULL DEFAULT %1$s,
+                like_count INTEGER NOT NULL DEFAULT 0,
+                FOREIGN KEY (user_id) REFERENCES users (id) ON DELETE CASCADE
+            )
+        """.formatted(NOW_MILLIS), """
+            INSERT INTO posts_new
+            SELECT id, user_id, content, image_url, %s, %s, like_count
+            FROM posts
+        """.formatted(epochMillis("created_at"), epochMillis("updated_at")));
+
+        for (String table : new String[] { "likes", "bookmarks" }) {
+            rebuildTable(conn, table, """
+                CREATE TABLE %1$s_new (
+                    id INTEGER PRIMARY KEY AUTOINCREMENT,
+                    user_id INTEGER NOT NULL,
+                    post_id INTEGER NOT NULL,
+                    created_at INTEGER NOT NULL DEFAULT %2$s,
+                    UNIQUE(user_id, post_id),
+                    FOREIGN KEY (user_id) REFERENCES users (id) ON DELETE CASCADE,
+                    FOREIGN KEY (post_id) REFERENCES posts (id) ON DELETE CASCADE
+                )
+            """.formatted(table, NOW_MILLIS), """
+                INSERT INTO %1$s_new
+                SELECT id, user_id, post_id, %2$s
+                FROM %1$s
+            """.formatted(table, epochMillis("created_at")));
+        }
+
+        rebuildTable(conn, "follows", """
+            CREATE TABLE follows_new (
+                id INTEGER PRIMARY KEY AUTOINCREMENT,
+                follower_id INTEGER NOT NULL,
+                followee_id INTEGER NOT NULL,
+                created_at INTEGER NOT NULL DEFAULT %s,
+                UNIQUE(follower_id, followee_id),
+                FOREIGN KEY (follower_id) REFERENCES users (id) ON DELETE CASCADE,
+                FOREIGN KEY (followee_id) REFERENCES users (id) ON DELETE CASCADE
+            )
+        """.formatted(NOW_MILLIS), """
+            INSERT INTO follows_new
+            SELECT id, follower_id, followee_id, %s
+            FROM follows
+        """.formatted(epochMillis("created_at")));
+
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("DROP TABLE timeline");
+            stmt.execute("""
+            CREATE TABLE timeline (
+                user_id INTEGER NOT NULL,
+                post_id INTEGER NOT NULL,
+                created_at INTEGER NOT NULL,
+                PRIMARY KEY (user_id, created_at, post_id)
+            ) WITHOUT ROWID
+        """);
+            stmt.execute("CREATE INDEX idx_timeline_post_id ON timeline (post_id)");
+
+            // Dropping the old tables dropped their indexes and triggers
+            stmt.execute("CREATE INDEX idx_posts_created_at ON posts (created_at)");
+            stmt.execute("CREATE INDEX idx_posts_user_recent ON posts (user_id, created_at DESC, id DESC)");
+            stmt.execute("CREATE INDEX idx_likes_user_id ON likes (user_id)");
+            stmt.execute("CREATE INDEX idx_likes_post_user ON likes (post_id, user_id)");
+            stmt.execute("CREATE INDEX idx_bookmarks_user_id ON bookmarks (user_id)");
+            stmt.execute("CREATE INDEX idx_bookmarks_post_id ON bookmarks (post_id)");
+            stmt.execute("CREATE INDEX idx_follows_followee_follower ON follows (followee_id, follower_id)");
+        }
+        // Row IDs are unchanged, so users_fts only needs its triggers back
+        createUserSearchTriggers(conn);
+        Logger.info("Backfilled " + rebuildTimeline(conn) + " timeline entries");
+
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("ANALYZE");
+        }
+    }
+
+    /**
+     * Replace a table with one created by {@code createSql} as
+     * {@code <table>_new} and filled by {@code copySql}, keeping its
+     * AUTOINCREMENT sequence so IDs of deleted rows are not reused
+     */
+    private static void rebuildTable(Connection conn, String table, String createSql, String copySql)
+            throws SQLException {
+        long sequence = 0;
+        try (PreparedStatement stmt = conn.prepareStatement("SELECT seq FROM sqlite_sequence WHERE name = ?")) {
+            stmt.setString(1, table);
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (rs.next()) {
+                    sequence = rs.getLong(1);
+                }
             }
+        }
+
+        int rows;
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute(createSql);
+            rows = stmt.executeUpdate(copySql);
+            stmt.execute("DROP TABLE " + table);
+            stmt.execute("ALTER TABLE " + table + "_new RENAME TO " + table);
+        }
+
+        try (PreparedStatement stmt = conn.prepareStatement(
+                "UPDATE sqlite_sequence SET seq = max(seq, ?) WHERE name = ?")) {
+            stmt.setLong(1, sequence);
+            stmt.setString(2, table);
+            if (stmt.executeUpdate() == 0 && sequence > 0) {
+                try (PreparedStatement insert = conn.prepareStatement(
+                        "INSERT INTO sqlite_sequence (name, seq) VALUES (?, ?)")) {
+                    insert.setString(1, table);
+                    insert.setLong(2, sequence);
+                    insert.executeUpdate();
+                }
+            }
+        }
+        Logger.info("Rebuilt " + table + " with " + rows + " rows");
+    }
+
+    /**
+     * SQL converting a 'YYYY-MM-DD HH:MM:SS' UTC text column to epoch
+     * milliseconds. Values already stored as numbers are kept.
+     */
+    private static String epochMillis(String column) {
+        return ("CASE WHEN typeof(%1$s) = 'text' "
+                + "THEN coalesce(CAST(round((julianday(%1$s) - 2440587.5) * 86400000) AS INTEGER), %2$s) "
+                + "ELSE coalesce(%1$s, %2$s) END").formatted(column, NOW_MILLIS);
+    }
 
-            Logger.info("Database schema setup completed successfully");
+    /**
+     * Create the table of per-file settings, such as which shard a file is
+     */
+    private void createSettings(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            String createSettingsTable = """
+            CREATE TABLE IF NOT EXISTS settings (
+                name TEXT PRIMARY KEY,
+                value INTEGER NOT NULL
+            )
+        """;
+            stmt.execute(createSettingsTable);
         }
     }
 
@@ -163,45 +1188,46 @@ public class DatabaseManager {
      * Close all database connections
      */
     public void close() {
-        for (Connection connection : connections.values()) {
-            try {
-                if (connection != null && !connection.isClosed()) {
-                    connection.close();
-                }
-            } catch (SQLException e) {
-                Logger.error("Error closing database connection: " + e.getMessage());
-            }
+        if (counterRepair != null) {
+            counterRepair.shutdownNow();
+        }
+        if (archival != null) {
+            archival.shutdownNow();
+        }
+        shardReads.shutdownNow();
+        for (int shard = 0; shard < router.shardCount(); shard++) {
+            String name = shard == ShardRouter.MAIN ? "Database" : "Shard " + shard;
+            writers[shard].stop();
+            Logger.info(name + " writer: " + writers[shard].stats());
+            Logger.info(name + " pool: " + pools[shard].stats());
+            pools[shard].close();
         }
-        connections.clear();
         Logger.info("Database connections closed");
     }
 
     /**
-     * Execute a transaction
+     * Execute a transaction on the main database's writer thread. It is
+     * rolled back unless it returns true. Service writes to the main database
+     * made by the transaction join it.
      */
     public boolean executeTransaction(DatabaseTransaction transaction) {
-        try (Connection conn = getConnection()) {
-            conn.setAutoCommit(false);
+        return executeTransaction(ShardRouter.MAIN, transaction);
+    }
 
+    /**
+     * Execute a transaction on a shard's writer thread. It is rolled back
+     * unless it returns true. Service writes to the same shard made by the
+     * transaction join it.
+     */
+    public boolean executeTransaction(int shard, DatabaseTransaction transaction) {
+        return write(shard, () -> {
             try {
-                boolean result = transaction.execute(conn);
-                if (result) {
-                    conn.commit();
-                } else {
-                    conn.rollback();
-                }
-                return result;
-            } catch (Exception e) {
-                conn.rollback();
-                throw e;
-            } finally {
-                conn.setAutoCommit(true);
+                return transaction.execute(writers[shard].connection());
+            } catch (SQLException e) {
+                Logger.error("Transaction failed: " + e.getMessage());
+                return false;
             }
-
-        } catch (SQLException e) {
-            Logger.error("Transaction failed: " + e.getMessage());
-            return false;
-        }
+        }, false);
     }
 
     /**
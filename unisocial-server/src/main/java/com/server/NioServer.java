@@ -0,0 +1,393 @@
+package com.server;
+
+import com.server.commands.ClientSession;
+import com.server.protocol.Frame;
+import com.server.protocol.FrameCodec;
+import com.server.protocol.FrameCodecs;
+import com.server.protocol.InboundBuffer;
+import com.server.protocol.ProtocolException;
+import com.server.protocol.Request;
+import com.server.utils.Logger;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Non-blocking transport built on a single selector thread.
+ *
+ * The selector thread owns all socket I/O: it frames incoming bytes with the
+ * connection's negotiated codec and writes queued responses. Complete requests
+ * are processed on the worker pool: plain requests one at a time per
+ * connection so the lock-step protocol keeps its ordering, and requests
+ * carrying a correlation id concurrently.
+ */
+public class NioServer {
+    private static final int READ_BUFFER_SIZE = 16 * 1024;
+
+    private final ServerConfig config;
+    private final ExecutorService workerPool;
+    private final Function<SocketAddress, ClientHandler> handlerFactory;
+    private final AtomicBoolean running = new AtomicBoolean(false);
+    private final AtomicInteger connectionCount;
+    private final Queue<Connection> pendingWrites = new ConcurrentLinkedQueue<>();
+    private final Queue<Connection> pendingCloses = new ConcurrentLinkedQueue<>();
+    private final ConnectionReaper reaper;
+
+    // Only touched by the selector thread
+    private final ByteBuffer readBuffer = ByteBuffer.allocateDirect(READ_BUFFER_SIZE);
+
+    private Selector selector;
+    private ServerSocketChannel serverChannel;
+
+    public NioServer(ServerConfig config, ExecutorService workerPool, AtomicInteger connectionCount,
+                     ConnectionReaper reaper, Function<SocketAddress, ClientHandler> handlerFactory) {
+        this.config = config;
+        this.reaper = reaper;
+        this.workerPool = workerPool;
+        this.connectionCount = connectionCount;
+        this.handlerFactory = handlerFactory;
+    }
+
+    /**
+     * Bind the listening channel
+     */
+    public void open() throws IOException {
+        selector = Selector.open();
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.configureBlocking(false);
+        serverChannel.bind(new InetSocketAddress(config.getPort()));
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+        running.set(true);
+    }
+
+    /**
+     * Run the selector loop until {@link #stop()} is called
+     */
+    public void run() {
+        try {
+            while (running.get()) {
+                selector.select();
+                registerPendingWrites();
+                closeReapedConnections();
+
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    handleKey(key);
+                }
+            }
+        } catch (ClosedSelectorException e) {
+            // Selector closed by stop()
+        } catch (IOException e) {
+            if (running.get()) {
+                Logger.error("Selector loop failed: " + e.getMessage());
+            }
+        } finally {
+            closeAll();
+        }
+    }
+
+    /**
+     * Stop the selector loop and close all connections
+     */
+    public void stop() {
+        if (running.compareAndSet(true, false) && selector != null) {
+            selector.wakeup();
+        }
+    }
+
+    /**
+     * Get the number of open connections
+     */
+    public int getConnectionCount() {
+        return connectionCount.get();
+    }
+
+    private void handleKey(SelectionKey key) {
+        if (!key.isValid()) {
+            return;
+        }
+
+        if (key.isAcceptable()) {
+            accept();
+            return;
+        }
+
+        Connection connection = (Connection) key.attachment();
+        try {
+            if (key.isReadable()) {
+                read(connection);
+            }
+            if (key.isValid() && key.isWritable()) {
+                write(connection);
+            }
+        } catch (IOException e) {
+            Logger.debug("Connection error for " + connection.remoteAddress + ": " + e.getMessage());
+            close(connection);
+        }
+    }
+
+    private void accept() {
+        try {
+            SocketChannel channel = serverChannel.accept();
+            if (channel == null) {
+                return;
+            }
+
+            if (connectionCount.get() >= config.getMaxClients()) {
+                Logger.warn("Max clients reached, rejecting connection from " + channel.getRemoteAddress());
+                channel.close();
+                return;
+            }
+
+            channel.configureBlocking(false);
+            channel.socket().setTcpNoDelay(true);
+
+            SocketAddress remoteAddress = channel.getRemoteAddress();
+            Connection connection = new Connection(channel, remoteAddress, handlerFactory.apply(remoteAddress),
+                    FrameCodecs.create(FrameCodecs.LINE, config.getMaxMessageSize()));
+            connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+            connectionCount.incrementAndGet();
+
+            // The reaper runs on its own thread; the close is handed back to the selector
+            connection.reaperHandle = reaper.register(config.getConnectionTimeout(), config.getReadTimeout(),
+                    String.valueOf(remoteAddress), () -> {
+                        pendingCloses.add(connection);
+                        selector.wakeup();
+                    });
+
+            Logger.info("New client connected: " + remoteAddress);
+
+        } catch (IOException e) {
+            if (running.get()) {
+                Logger.error("Error accepting client connection: " + e.getMessage());
+            }
+        }
+    }
+
+    private void read(Connection connection) throws IOException {
+        readBuffer.clear();
+        int bytesRead = connection.channel.read(readBuffer);
+        if (bytesRead < 0) {
+            close(connection);
+            return;
+        }
+
+        readBuffer.flip();
+        connection.inbound.append(readBuffer);
+
+        boolean received = false;
+        Frame frame;
+        try {
+            while ((frame = connection.codec.decode(connection.inbound.buffer())) != null) {
+                connection.requests.add(frame);
+                connection.outstanding.incrementAndGet();
+                received = true;
+            }
+        } catch (ProtocolException e) {
+            Logger.warn("Closing connection from " + connection.remoteAddress + ": " + e.getMessage());
+            close(connection);
+            return;
+        }
+        connection.inbound.trim();
+
+        if (received) {
+            connection.reaperHandle.touch();
+            schedule(connection);
+        }
+        if (!connection.canRead()) {
+            // Too many requests in flight; stop reading until responses drain
+            connection.key.interestOps(connection.key.interestOps() & ~SelectionKey.OP_READ);
+        }
+    }
+
+    private void write(Connection connection) throws IOException {
+        ByteBuffer buffer;
+        while ((buffer = connection.responses.peek()) != null) {
+            connection.channel.write(buffer);
+            if (buffer.hasRemaining()) {
+                return; // Socket buffer full, wait for the next OP_WRITE
+            }
+            connection.responses.poll();
+        }
+
+        connection.key.interestOps(connection.canRead() ? SelectionKey.OP_READ : 0);
+        if (connection.closeAfterWrite) {
+            close(connection);
+        }
+    }
+
+    private void registerPendingWrites() {
+        Connection connection;
+        while ((connection = pendingWrites.poll()) != null) {
+            if (connection.key.isValid()) {
+                int ops = SelectionKey.OP_WRITE;
+                if (connection.canRead()) {
+                    ops |= SelectionKey.OP_READ;
+                }
+                connection.key.interestOps(ops);
+            }
+        }
+    }
+
+    private void closeReapedConnections() {
+        Connection connection;
+        while ((connection = pendingCloses.poll()) != null) {
+            close(connection);
+        }
+    }
+
+    private void schedule(Connection connection) {
+        if (connection.processing.compareAndSet(false, true)) {
+            workerPool.execute(() -> drain(connection));
+        }
+    }
+
+    /**
+     * Process queued requests for a connection on a worker thread. Requests
+     * without an id run in arrival order: draining pauses until each one has
+     * been answered. Requests with an id are dispatched without waiting and
+     * may complete out of order.
+     */
+    private void drain(Connection connection) {
+        do {
+            Frame frame;
+            while (!connection.closed && (frame = connection.requests.poll()) != null) {
+                Request request = ClientHandler.parseRequest(frame.payload());
+                CompletableFuture<byte[]> response = connection.handler.dispatch(request, frame.attachment());
+
+                if (request != null && request.isPipelined()) {
+                    response.thenAccept(bytes -> respond(connection, bytes, false));
+                } else if (response.isDone()) {
+                    respond(connection, response.join(), true);
+                } else {
+                    // Resume draining once the response is queued; processing stays set meanwhile
+                    response.thenAccept(bytes -> {
+                        respond(connection, bytes, true);
+                        workerPool.execute(() -> drain(connection));
+                    });
+                    return;
+                }
+            }
+            connection.processing.set(false);
+        } while (!connection.requests.isEmpty() && connection.processing.compareAndSet(false, true));
+    }
+
+    /**
+     * A HANDSHAKE may have negotiated a new framing
+     */
+    private void switchCodecIfNegotiated(Connection connection) {
+        FrameCodec negotiated = connection.handler.getSession().takeNegotiatedCodec();
+        if (negotiated != null) {
+            connection.codec = negotiated;
+        }
+    }
+
+    /**
+     * Queue a response for the selector thread to write
+     *
+     * @param lockStep Whether the response is to a request without an id,
+     *                 which may have negotiated a new framing. The response
+     *                 goes out in the old framing, and the new one is in
+     *                 place before the client can see it and send more.
+     */
+    private void respond(Connection connection, byte[] response, boolean lockStep) {
+        ByteBuffer encoded = connection.codec.encode(new Frame(response, null));
+        if (lockStep) {
+            switchCodecIfNegotiated(connection);
+        }
+        connection.responses.add(encoded);
+        connection.outstanding.decrementAndGet();
+
+        if (!connection.handler.getSession().isOpen()) {
+            connection.closeAfterWrite = true;
+            connection.requests.clear();
+        }
+
+        pendingWrites.add(connection);
+        selector.wakeup();
+    }
+
+    private void close(Connection connection) {
+        if (connection.closed) {
+            return;
+        }
+        connection.closed = true;
+        connectionCount.decrementAndGet();
+        connection.reaperHandle.cancel();
+
+        connection.key.cancel();
+        try {
+            connection.channel.close();
+        } catch (IOException e) {
+            Logger.error("Error closing client channel: " + e.getMessage());
+        }
+        connection.handler.cleanup();
+    }
+
+    private void closeAll() {
+        if (selector.isOpen()) {
+            for (SelectionKey key : selector.keys()) {
+                if (key.attachment() instanceof Connection connection) {
+                    close(connection);
+                }
+            }
+        }
+
+        try {
+            selector.close();
+            serverChannel.close();
+        } catch (IOException e) {
+            Logger.error("Error closing selector: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Per-connection state shared between the selector and worker threads
+     */
+    private static final class Connection {
+        private final SocketChannel channel;
+        private final SocketAddress remoteAddress;
+        private final ClientHandler handler;
+        private final Queue<Frame> requests = new ConcurrentLinkedQueue<>();
+        private final Queue<ByteBuffer> responses = new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean processing = new AtomicBoolean(false);
+        private final AtomicInteger outstanding = new AtomicInteger();
+
+        // Partial frames, selector thread only
+        private final InboundBuffer inbound = new InboundBuffer();
+
+        private SelectionKey key;
+        private ConnectionReaper.Handle reaperHandle;
+        private volatile FrameCodec codec;
+        private volatile boolean closed;
+        private volatile boolean closeAfterWrite;
+
+        Connection(SocketChannel channel, SocketAddress remoteAddress, ClientHandler handler, FrameCodec codec) {
+            this.channel = channel;
+            this.remoteAddress = remoteAddress;
+            this.handler = handler;
+            this.codec = codec;
+        }
+
+        boolean canRead() {
+            return outstanding.get() < ClientSession.MAX_PIPELINED_REQUESTS;
+        }
+    }
+}
@@ -13,6 +13,45 @@ public class ServerConfig {
     private String logLevel = "INFO";
     private String uploadDirectory = "uploads/";
     private long maxFileSize = 10 * 1024 * 1024; // 10MB
+    private String transportMode = "blocking"; // "blocking" or "nio"
+    private boolean virtualThreads = false; // Blocking transport only
+    private int workerThreads = Runtime.getRuntime().availableProcessors() * 2;
+    private int maxMessageSize = 16 * 1024 * 1024; // 16MB
+    private int compressionThreshold = 1024; // Bytes; 0 disables compression
+    private int authThreads = Math.max(2, Runtime.getRuntime().availableProcessors() / 2); // bcrypt
+    private int readThreads = Runtime.getRuntime().availableProcessors() * 2;
+    private int writeThreads = 32; // Mostly waiting on the group-commit writer
+    private int batchThreads = 4; // BATCH coordinators, which wait on the read and write bulkheads
+    private int maxBatchSize = 32; // Sub-requests per BATCH
+    private int bulkheadQueueSize = 256; // Running plus queued commands per bulkhead
+    private int admissionInitialLimit = 64; // Concurrent commands before load shedding
+    private int admissionMaxLimit = 512;
+    private int admissionLatencyTargetMs = 50; // Queueing delay that shrinks the limit
+    private int reaperTickMs = 1000; // Idle timeout resolution
+    private int dbPoolSize = 16; // Open database connections
+    private int dbAcquireTimeoutMs = 5000; // Wait for a free connection before failing
+    private int dbIdleTimeoutMs = 300000; // Close connections idle for 5 minutes
+    private int dbValidationIntervalMs = 30000; // Check connections idle this long before reuse
+    private int dbStatementCacheSize = 64; // Prepared statements cached per connection; 0 disables
+    private int groupCommitMaxWrites = 64; // Writes committed together at most
+    private int groupCommitWindowMs = 0; // Wait for more writes before committing; 0 commits once the queue is drained
+    private int writeQueueSize = 1024; // Writes waiting for the writer thread
+    private int counterRepairIntervalMs = 3600000; // How often denormalized counters are recomputed; 0 disables
+    private int fanOutThreshold = 5000; // Authors with more followers are merged into feeds at read time; 0 always fans out
+    private int shardCount = 1; // Database files that users' posts are spread over; changed with ReshardTool
+    private int archiveAfterDays = 0; // Posts older than this move to the archive files; 0 disables archiving
+    private int archiveIntervalMs = 3600000; // How often old posts are archived
+    private int archiveBatchSize = 500; // Posts moved per archive transaction
+    private String adminUsers = ""; // Comma-separated usernames allowed to run BACKUP; empty disables it
+    private String backupDirectory = "backups/";
+    private int backupPagesPerStep = 256; // Pages copied per online backup step
+    private int backupStepSleepMs = 10; // Pause between backup steps so live traffic is not held up
+    private String sqliteJournalMode = "WAL"; // Readers no longer wait on the writer
+    private String sqliteSynchronous = "NORMAL"; // fsync at checkpoints, not on every commit; safe with WAL
+    private long sqliteMmapSize = 256L * 1024 * 1024; // 256MB of memory-mapped reads
+    private int sqliteCacheSizeKb = 16 * 1024; // Page cache per connection
+    private String sqliteTempStore = "MEMORY"; // Temporary tables and sort spills
+    private int sqliteBusyTimeoutMs = 5000; // Wait on a locked database before SQLITE_BUSY
 
     // Getters and setters
     public int getPort() { return port; }
@@ -41,4 +80,123 @@ public class ServerConfig {
 
     public long getMaxFileSize() { return maxFileSize; }
     public void setMaxFileSize(long maxFileSize) { this.maxFileSize = maxFileSize; }
+
+    public String getTransportMode() { return transportMode; }
+    public void setTransportMode(String transportMode) { this.transportMode = transportMode; }
+
+    public boolean isNioTransport() { return "nio".equalsIgnoreCase(transportMode); }
+
+    public boolean isVirtualThreads() { return virtualThreads; }
+    public void setVirtualThreads(boolean virtualThreads) { this.virtualThreads = virtualThreads; }
+
+    public int getWorkerThreads() { return workerThreads; }
+    public void setWorkerThreads(int workerThreads) { this.workerThreads = workerThreads; }
+
+    public int getMaxMessageSize() { return maxMessageSize; }
+    public void setMaxMessageSize(int maxMessageSize) { this.maxMessageSize = maxMessageSize; }
+
+    public int getCompressionThreshold() { return compressionThreshold; }
+    public void setCompressionThreshold(int compressionThreshold) { this.compressionThreshold = compressionThreshold; }
+
+    public int getAuthThreads() { return authThreads; }
+    public void setAuthThreads(int authThreads) { this.authThreads = authThreads; }
+
+    public int getReadThreads() { return readThreads; }
+    public void setReadThreads(int readThreads) { this.readThreads = readThreads; }
+
+    public int getWriteThreads() { return writeThreads; }
+    public void setWriteThreads(int writeThreads) { this.writeThreads = writeThreads; }
+
+    public int getBatchThreads() { return batchThreads; }
+    public void setBatchThreads(int batchThreads) { this.batchThreads = batchThreads; }
+
+    public int getMaxBatchSize() { return maxBatchSize; }
+    public void setMaxBatchSize(int maxBatchSize) { this.maxBatchSize = maxBatchSize; }
+
+    public int getBulkheadQueueSize() { return bulkheadQueueSize; }
+    public void setBulkheadQueueSize(int bulkheadQueueSize) { this.bulkheadQueueSize = bulkheadQueueSize; }
+
+    public int getAdmissionInitialLimit() { return admissionInitialLimit; }
+    public void setAdmissionInitialLimit(int admissionInitialLimit) { this.admissionInitialLimit = admissionInitialLimit; }
+
+    public int getAdmissionMaxLimit() { return admissionMaxLimit; }
+    public void setAdmissionMaxLimit(int admissionMaxLimit) { this.admissionMaxLimit = admissionMaxLimit; }
+
+    public int getAdmissionLatencyTargetMs() { return admissionLatencyTargetMs; }
+    public void setAdmissionLatencyTargetMs(int admissionLatencyTargetMs) { this.admissionLatencyTargetMs = admissionLatencyTargetMs; }
+
+    public int getReaperTickMs() { return reaperTickMs; }
+    public void setReaperTickMs(int reaperTickMs) { this.reaperTickMs = reaperTickMs; }
+
+    public int getDbPoolSize() { return dbPoolSize; }
+    public void setDbPoolSize(int dbPoolSize) { this.dbPoolSize = dbPoolSize; }
+
+    public int getDbAcquireTimeoutMs() { return dbAcquireTimeoutMs; }
+    public void setDbAcquireTimeoutMs(int dbAcquireTimeoutMs) { this.dbAcquireTimeoutMs = dbAcquireTimeoutMs; }
+
+    public int getDbIdleTimeoutMs() { return dbIdleTimeoutMs; }
+    public void setDbIdleTimeoutMs(int dbIdleTimeoutMs) { this.dbIdleTimeoutMs = dbIdleTimeoutMs; }
+
+    public int getDbValidationIntervalMs() { return dbValidationIntervalMs; }
+    public void setDbValidationIntervalMs(int dbValidationIntervalMs) { this.dbValidationIntervalMs = dbValidationIntervalMs; }
+
+    public int getDbStatementCacheSize() { return dbStatementCacheSize; }
+    public void setDbStatementCacheSize(int dbStatementCacheSize) { this.dbStatementCacheSize = dbStatementCacheSize; }
+
+    public int getGroupCommitMaxWrites() { return groupCommitMaxWrites; }
+    public void setGroupCommitMaxWrites(int groupCommitMaxWrites) { this.groupCommitMaxWrites = groupCommitMaxWrites; }
+
+    public int getGroupCommitWindowMs() { return groupCommitWindowMs; }
+    public void setGroupCommitWindowMs(int groupCommitWindowMs) { this.groupCommitWindowMs = groupCommitWindowMs; }
+
+    public int getWriteQueueSize() { return writeQueueSize; }
+    public void setWriteQueueSize(int writeQueueSize) { this.writeQueueSize = writeQueueSize; }
+
+    public int getCounterRepairIntervalMs() { return counterRepairIntervalMs; }
+    public void setCounterRepairIntervalMs(int counterRepairIntervalMs) { this.counterRepairIntervalMs = counterRepairIntervalMs; }
+
+    public int getFanOutThreshold() { return fanOutThreshold; }
+    public void setFanOutThreshold(int fanOutThreshold) { this.fanOutThreshold = fanOutThreshold; }
+
+    public int getShardCount() { return shardCount; }
+    public void setShardCount(int shardCount) { this.shardCount = shardCount; }
+
+    public int getArchiveAfterDays() { return archiveAfterDays; }
+    public void setArchiveAfterDays(int archiveAfterDays) { this.archiveAfterDays = archiveAfterDays; }
+
+    public int getArchiveIntervalMs() { return archiveIntervalMs; }
+    public void setArchiveIntervalMs(int archiveIntervalMs) { this.archiveIntervalMs = archiveIntervalMs; }
+
+    public int getArchiveBatchSize() { return archiveBatchSize; }
+    public void setArchiveBatchSize(int archiveBatchSize) { this.archiveBatchSize = archiveBatchSize; }
+
+    public String getAdminUsers() { return adminUsers; }
+    public void setAdminUsers(String adminUsers) { this.adminUsers = adminUsers; }
+
+    public String getBackupDirectory() { return backupDirectory; }
+    public void setBackupDirectory(String backupDirectory) { this.backupDirectory = backupDirectory; }
+
+    public int getBackupPagesPerStep() { return backupPagesPerStep; }
+    public void setBackupPagesPerStep(int backupPagesPerStep) { this.backupPagesPerStep = backupPagesPerStep; }
+
+    public int getBackupStepSleepMs() { return backupStepSleepMs; }
+    public void setBackupStepSleepMs(int backupStepSleepMs) { this.backupStepSleepMs = backupStepSleepMs; }
+
+    public String getSqliteJournalMode() { return sqliteJournalMode; }
+    public void setSqliteJournalMode(String sqliteJournalMode) { this.sqliteJournalMode = sqliteJournalMode; }
+
+    public String getSqliteSynchronous() { return sqliteSynchronous; }
+    public void setSqliteSynchronous(String sqliteSynchronous) { this.sqliteSynchronous = sqliteSynchronous; }
+
+    public long getSqliteMmapSize() { return sqliteMmapSize; }
+    public void setSqliteMmapSize(long sqliteMmapSize) { this.sqliteMmapSize = sqliteMmapSize; }
+
+    public int getSqliteCacheSizeKb() { return sqliteCacheSizeKb; }
+    public void setSqliteCacheSizeKb(int sqliteCacheSizeKb) { this.sqliteCacheSizeKb = sqliteCacheSizeKb; }
+
+    public String getSqliteTempStore() { return sqliteTempStore; }
+    public void setSqliteTempStore(String sqliteTempStore) { this.sqliteTempStore = sqliteTempStore; }
+
+    public int getSqliteBusyTimeoutMs() { return sqliteBusyTimeoutMs; }
+    public void setSqliteBusyTimeoutMs(int sqliteBusyTimeoutMs) { this.sqliteBusyTimeoutMs = sqliteBusyTimeoutMs; }
 }
@@ -1,7 +1,13 @@
 package com.server;
 
+import com.google.gson.JsonObject;
+import com.server.commands.CommandRegistry;
+import com.server.db.PoolStats;
+import com.server.db.WriterStats;
+import com.server.protocol.PayloadCompression;
 import com.server.services.AuthService;
 import com.server.services.PostService;
+import com.server.services.TimelineService;
 import com.server.services.UserService;
 import com.server.utils.Logger;
 
@@ -12,6 +18,7 @@ import java.net.Socket;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Main server class for UniSocial application
@@ -20,33 +27,45 @@ public class UnisocialServer {
     private final ServerConfig config;
     private final ExecutorService clientThreadPool;
     private final AtomicBoolean running = new AtomicBoolean(false);
+    private final AtomicInteger activeClients = new AtomicInteger();
 
     private ServerSocket serverSocket;
+    private NioServer nioServer;
+    private ExecutorService workerPool;
+    private CommandRegistry commands;
+    private ConnectionReaper reaper;
     private final DatabaseManager databaseManager;
     private AuthService authService;
     private PostService postService;
     private UserService userService;
 
     public UnisocialServer() {
-        this.config = new ServerConfig();
-        this.databaseManager = new DatabaseManager(config.getDatabaseUrl());
-        this.clientThreadPool = Executors.newCachedThreadPool();
-
-        initializeServices();
+        this(new ServerConfig());
     }
 
     public UnisocialServer(ServerConfig config) {
         this.config = config;
-        this.databaseManager = new DatabaseManager(config.getDatabaseUrl());
-        this.clientThreadPool = Executors.newCachedThreadPool();
+        this.databaseManager = new DatabaseManager(config);
+        this.clientThreadPool = createClientExecutor(config);
 
         initializeServices();
     }
 
+    /**
+     * Create the executor that runs blocking client handlers
+     */
+    private static ExecutorService createClientExecutor(ServerConfig config) {
+        if (config.isVirtualThreads()) {
+            return Executors.newVirtualThreadPerTaskExecutor();
+        }
+        return Executors.newCachedThreadPool();
+    }
+
     private void initializeServices() {
+        TimelineService timelineService = new TimelineService(databaseManager, config.getFanOutThreshold());
         this.authService = new AuthService(databaseManager);
-        this.postService = new PostService(databaseManager);
-        this.userService = new UserService(databaseManager);
+        this.postService = new PostService(databaseManager, timelineService);
+        this.userService = new UserService(databaseManager, timelineService);
     }
 
     /**
@@ -67,6 +86,77 @@ public class UnisocialServer {
                 return;
             }
 
+            // Commands run in per-class bulkheads (auth, reads, writes)
+            commands = CommandRegistry.create(config, databaseManager, authService, postService, userService);
+
+            // Enforce connectionTimeout/readTimeout; clients send PING as a heartbeat
+            reaper = new ConnectionReaper(config.getReaperTickMs());
+            reaper.start();
+            commands.registerStats("connections", () -> {
+                JsonObject stats = new JsonObject();
+                stats.addProperty("active", activeClients.get());
+                stats.addProperty("reaped", reaper.getReclaimed());
+                return stats;
+            });
+            commands.registerStats("database", () -> {
+                PoolStats pool = databaseManager.getPoolStats();
+                JsonObject stats = new JsonObject();
+                stats.addProperty("poolSize", pool.maxSize());
+                stats.addProperty("active", pool.active());
+                stats.addProperty("idle", pool.idle());
+                stats.addProperty("waiting", pool.waiting());
+                stats.addProperty("acquired", pool.acquired());
+                stats.addProperty("timeouts", pool.timeouts());
+                stats.addProperty("created", pool.created());
+                stats.addProperty("evicted", pool.evicted());
+                stats.addProperty("creationsPerSecond", pool.creationsPerSecond());
+                stats.addProperty("averageWaitMicros", pool.getAverageWaitMicros());
+                stats.addProperty("maxWaitMillis", pool.getMaxWaitMillis());
+                stats.addProperty("statementHits", pool.statementHits());
+                stats.addProperty("statementMisses", pool.statementMisses());
+                stats.addProperty("statementEvictions", pool.statementEvictions());
+                stats.addProperty("statementHitRate", pool.getStatementHitRate());
+                return stats;
+            });
+            commands.registerStats("writer", () -> {
+                WriterStats writer = databaseManager.getWriterStats();
+                JsonObject stats = new JsonObject();
+                stats.addProperty("writes", writer.writes());
+                stats.addProperty("commits", writer.groups());
+                stats.addProperty("averageGroupSize", writer.getAverageGroupSize());
+                stats.addProperty("largestGroup", writer.largestGroup());
+                stats.addProperty("queued", writer.queued());
+                stats.addProperty("rolledBack", writer.rolledBack());
+                stats.addProperty("commitFailures", writer.commitFailures());
+                stats.addProperty("rejected", writer.rejected());
+                stats.addProperty("averageCommitMicros", writer.getAverageCommitMicros());
+                return stats;
+            });
+
+            if (databaseManager.getRouter().shardCount() > 1) {
+                commands.registerStats("shards", () -> {
+                    JsonObject stats = new JsonObject();
+                    for (int shard : databaseManager.getRouter().allShards()) {
+                        WriterStats writer = databaseManager.getWriterStats(shard);
+                        PoolStats pool = databaseManager.getPoolStats(shard);
+                        JsonObject shardStats = new JsonObject();
+                        shardStats.addProperty("writes", writer.writes());
+                        shardStats.addProperty("commits", writer.groups());
+                        shardStats.addProperty("queued", writer.queued());
+                        shardStats.addProperty("averageCommitMicros", writer.getAverageCommitMicros());
+                        shardStats.addProperty("activeConnections", pool.active());
+                        shardStats.addProperty("waiting", pool.waiting());
+                        stats.add(Integer.toString(shard), shardStats);
+                    }
+                    return stats;
+                });
+            }
+
+            if (config.isNioTransport()) {
+                startNio();
+                return;
+            }
+
             // Create server socket
             serverSocket = new ServerSocket(config.getPort());
 
@@ -75,6 +165,12 @@ public class UnisocialServer {
             Logger.info("UniSocial Server started on port " + config.getPort());
             Logger.info("Database: " + config.getDatabaseUrl());
             Logger.info("Max clients: " + config.getMaxClients());
+            if (config.isVirtualThreads()) {
+                // Virtual threads park on socket reads; commands still run on
+                // platform threads so SQLite's synchronized native calls never
+                // pin a carrier thread
+                Logger.info("Client handlers: virtual threads");
+            }
 
             // Accept client connections
             acceptClients();
@@ -85,6 +181,25 @@ public class UnisocialServer {
         }
     }
 
+    /**
+     * Start the selector-based transport; blocks until the server is stopped
+     */
+    private void startNio() throws IOException {
+        // Workers frame requests and hand them to the command bulkheads
+        workerPool = Executors.newFixedThreadPool(config.getWorkerThreads());
+        nioServer = new NioServer(config, workerPool, activeClients, reaper, remoteAddress ->
+                new ClientHandler(remoteAddress, config, commands));
+        nioServer.open();
+
+        running.set(true);
+
+        Logger.info("UniSocial Server started on port " + config.getPort() + " (NIO transport)");
+        Logger.info("Database: " + config.getDatabaseUrl());
+        Logger.info("Max clients: " + config.getMaxClients() + ", worker threads: " + config.getWorkerThreads());
+
+        nioServer.run();
+    }
+
     /**
      * Accept incoming client connections
      */
@@ -102,14 +217,16 @@ public class UnisocialServer {
                 }
 
                 // Create and start client handler
-                ClientHandler clientHandler = new ClientHandler(
-                        clientSocket,
-                        authService,
-                        postService,
-                        userService
-                );
-
-                clientThreadPool.submit(clientHandler);
+                ClientHandler clientHandler = new ClientHandler(clientSocket, config, commands, reaper);
+
+                activeClients.incrementAndGet();
+                clientThreadPool.submit(() -> {
+                    try {
+                        clientHandler.run();
+                    } finally {
+                        activeClients.decrementAndGet();
+                    }
+                });
 
                 Logger.info("New client connected: " + clientSocket.getRemoteSocketAddress());
 
@@ -137,13 +254,28 @@ public class UnisocialServer {
             if (serverSocket != null && !serverSocket.isClosed()) {
                 serverSocket.close();
             }
+            if (nioServer != null) {
+                nioServer.stop();
+            }
 
-            // Shutdown thread pool
+            // Shutdown thread pools
             clientThreadPool.shutdown();
+            if (workerPool != null) {
+                workerPool.shutdown();
+            }
+            if (commands != null) {
+                commands.shutdown();
+            }
+            if (reaper != null) {
+                reaper.stop();
+                Logger.info("Idle connections reaped: " + reaper.getReclaimed());
+            }
 
             // Close database connections
             databaseManager.close();
 
+            Logger.info("Compression: " + PayloadCompression.stats());
+
             Logger.info("Server stopped successfully");
 
         } catch (IOException e) {
@@ -155,7 +287,7 @@ public class UnisocialServer {
      * Get the number of active client connections
      */
     public int getActiveClientCount() {
-        return ((java.util.concurrent.ThreadPoolExecutor) clientThreadPool).getActiveCount();
+        return activeClients.get();
     }
 
     /**
@@ -218,6 +350,58 @@ public class UnisocialServer {
                         config.setMaxClients(Integer.parseInt(args[++i]));
                     }
                     break;
+                case "--transport":
+                case "-t":
+                    if (i + 1 < args.length) {
+                        config.setTransportMode(args[++i]);
+                    }
+                    break;
+                case "--workers":
+                case "-w":
+                    if (i + 1 < args.length) {
+                        config.setWorkerThreads(Integer.parseInt(args[++i]));
+                    }
+                    break;
+                case "--compression-threshold":
+                case "-c":
+                    if (i + 1 < args.length) {
+                        config.setCompressionThreshold(Integer.parseInt(args[++i]));
+                    }
+                    break;
+                case "--fan-out-threshold":
+                case "-f":
+                    if (i + 1 < args.length) {
+                        config.setFanOutThreshold(Integer.parseInt(args[++i]));
+                    }
+                    break;
+                case "--shards":
+                case "-s":
+                    if (i + 1 < args.length) {
+                        config.setShardCount(Integer.parseInt(args[++i]));
+                    }
+                    break;
+                case "--archive-after":
+                case "-r":
+                    if (i + 1 < args.length) {
+                        config.setArchiveAfterDays(Integer.parseInt(args[++i]));
+                    }
+                    break;
+                case "--admins":
+                case "-a":
+                    if (i + 1 < args.length) {
+                        config.setAdminUsers(args[++i]);
+                    }
+                    break;
+                case "--backup-dir":
+                case "-b":
+                    if (i + 1 < args.length) {
+                        config.setBackupDirectory(args[++i]);
+                    }
+                    break;
+                case "--virtual-threads":
+                case "-v":
+                    config.setVirtualThreads(true);
+                    break;
                 case "--help":
                 case "-h":
                     printUsage();
@@ -240,6 +424,21 @@ public class UnisocialServer {
         System.out.println("  -p, --port <port>        Server port (default: 8080)");
         System.out.println("  -d, --database <url>     Database URL (default: jdbc:sqlite:unisocial.db)");
         System.out.println("  -m, --max-clients <num>  Maximum concurrent clients (default: 100)");
+        System.out.println("  -t, --transport <mode>   Client transport: blocking or nio (default: blocking)");
+        System.out.println("  -w, --workers <num>      NIO framing threads (default: 2 x CPUs)");
+        System.out.println("  -c, --compression-threshold <bytes>");
+        System.out.println("                           Compress responses at least this large, 0 disables (default: 1024)");
+        System.out.println("  -f, --fan-out-threshold <num>");
+        System.out.println("                           Posts of authors with more followers are pulled into feeds at read time,");
+        System.out.println("                           0 always fans out (default: 5000)");
+        System.out.println("  -s, --shards <num>       Database files users' posts are spread over; must match the database,");
+        System.out.println("                           see com.server.db.ReshardTool (default: 1)");
+        System.out.println("  -r, --archive-after <days>");
+        System.out.println("                           Move older posts to archive files next to the database,");
+        System.out.println("                           0 disables (default: 0)");
+        System.out.println("  -a, --admins <names>     Comma-separated usernames allowed to run BACKUP (default: none)");
+        System.out.println("  -b, --backup-dir <dir>   Where BACKUP writes snapshot files (default: backups/)");
+        System.out.println("  -v, --virtual-threads    Run blocking client handlers on virtual threads");
         System.out.println("  -h, --help               Show this help message");
     }
 }
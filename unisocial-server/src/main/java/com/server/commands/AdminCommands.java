@@ -0,0 +1,119 @@
+package com.server.commands;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.server.commands.AdmissionController.Priority;
+import com.server.db.BackupProgress;
+import com.server.db.OnlineBackup;
+import com.server.models.User;
+
+import java.util.Arrays;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static com.server.commands.CommandRegistry.error;
+
+/**
+ * Operator commands, limited to the users named in the adminUsers setting.
+ *
+ * BACKUP starts an online backup and returns at once; BACKUP_STATUS reports
+ * how far it has got.
+ */
+public class AdminCommands {
+    private final CommandRegistry registry;
+    private final OnlineBackup backup;
+    private final Set<String> adminUsers;
+
+    /**
+     * @param adminUsers Comma-separated usernames
+     */
+    public AdminCommands(CommandRegistry registry, OnlineBackup backup, String adminUsers) {
+        this.registry = registry;
+        this.backup = backup;
+        this.adminUsers = Arrays.stream(adminUsers.split(","))
+                .map(String::trim)
+                .filter(name -> !name.isEmpty())
+                .collect(Collectors.toUnmodifiableSet());
+    }
+
+    /**
+     * Register the commands
+     *
+     * @param session Bulkhead for cheap, non-blocking commands; the backup
+     *                itself runs on its own thread
+     */
+    public void register(Bulkhead session) {
+        registry.register("BACKUP", session, this::handleBackup);
+        registry.register("BACKUP_STATUS", session, Priority.CRITICAL, this::handleBackupStatus);
+    }
+
+    private JsonObject handleBackup(CommandContext context) {
+        JsonObject denied = checkAdmin(context);
+        if (denied != null) {
+            return denied;
+        }
+
+        String snapshot;
+        try {
+            snapshot = backup.start();
+        } catch (IllegalStateException e) {
+            return error(e.getMessage());
+        }
+        if (snapshot == null) {
+            JsonObject response = error("A backup is already running");
+            response.add("backup", toJson(backup.getProgress()));
+            return response;
+        }
+
+        JsonObject response = new JsonObject();
+        response.addProperty("success", true);
+        response.addProperty("message", "Backup started");
+        response.addProperty("snapshot", snapshot);
+        return response;
+    }
+
+    private JsonObject handleBackupStatus(CommandContext context) {
+        JsonObject denied = checkAdmin(context);
+        if (denied != null) {
+            return denied;
+        }
+
+        JsonObject response = new JsonObject();
+        response.addProperty("success", true);
+        response.add("backup", toJson(backup.getProgress()));
+        return response;
+    }
+
+    /**
+     * @return An error response, or null if the session's user is an admin
+     */
+    private JsonObject checkAdmin(CommandContext context) {
+        User currentUser = context.session().getCurrentUser();
+        if (currentUser == null) {
+            return error("Not authenticated");
+        }
+        if (!adminUsers.contains(currentUser.getUsername())) {
+            return error("Not authorized");
+        }
+        return null;
+    }
+
+    private static JsonObject toJson(BackupProgress progress) {
+        JsonArray files = new JsonArray();
+        progress.files().forEach(files::add);
+
+        JsonObject json = new JsonObject();
+        json.addProperty("state", progress.state().name());
+        json.addProperty("snapshot", progress.snapshot());
+        json.addProperty("file", progress.file());
+        json.addProperty("fileCount", progress.fileCount());
+        json.addProperty("remainingPages", progress.remainingPages());
+        json.addProperty("pageCount", progress.pageCount());
+        json.addProperty("percent", progress.getPercent());
+        json.add("files", files);
+        json.addProperty("message", progress.message());
+        json.addProperty("startedAt", progress.startedAt());
+        json.addProperty("finishedAt", progress.finishedAt());
+        return json;
+    }
+}
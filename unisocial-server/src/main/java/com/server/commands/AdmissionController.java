@@ -0,0 +1,152 @@
+package com.server.commands;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Adaptive concurrency limit for commands, adjusted AIMD-style.
+ *
+ * Every admitted command reports how long it waited for a bulkhead thread.
+ * While queueing delay stays under the target the limit grows by about one
+ * per window of commands; when it exceeds the target (or a bulkhead is full)
+ * the limit is cut multiplicatively. Queueing delay rather than total
+ * latency is used so that inherently slow commands such as bcrypt do not
+ * look like overload.
+ *
+ * Background requests (feed polls) are shed as soon as the adaptive limit
+ * is reached. Interactive requests still count towards it but are only
+ * rejected at the hard maximum, so user actions keep going through while
+ * polls back off. Critical session commands are never rejected.
+ */
+public class AdmissionController {
+
+    public enum Priority {
+        /** Never rejected and not counted, e.g. HANDSHAKE and PING */
+        CRITICAL,
+        /** User-initiated actions, admitted up to the hard maximum */
+        INTERACTIVE,
+        /** Periodic refreshes, shed first */
+        BACKGROUND
+    }
+
+    private static final int MIN_LIMIT = 4;
+    private static final double BACKOFF_RATIO = 0.9;
+    private static final long MIN_RETRY_AFTER_MS = 100;
+    private static final long MAX_RETRY_AFTER_MS = 5000;
+
+    private final int maxLimit;
+    private final long latencyTargetNanos;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicLong admitted = new AtomicLong();
+    private final AtomicLong shed = new AtomicLong();
+
+    // Guarded by this
+    private double limit;
+    private double smoothedQueueMillis;
+    private long lastDecreaseNanos;
+
+    /**
+     * @param initialLimit Starting concurrency limit
+     * @param maxLimit Upper bound for the limit
+     * @param latencyTargetMs Queueing delay above which the limit is reduced
+     */
+    public AdmissionController(int initialLimit, int maxLimit, int latencyTargetMs) {
+        this.maxLimit = Math.max(MIN_LIMIT, maxLimit);
+        this.limit = Math.clamp(initialLimit, MIN_LIMIT, this.maxLimit);
+        this.latencyTargetNanos = TimeUnit.MILLISECONDS.toNanos(latencyTargetMs);
+    }
+
+    /**
+     * Try to admit a command
+     *
+     * @return true if admitted; the caller must then call {@link #release} or {@link #drop}
+     */
+    public boolean tryAcquire(Priority priority) {
+        if (priority == Priority.CRITICAL) {
+            return true;
+        }
+
+        int cap = priority == Priority.INTERACTIVE ? maxLimit : getLimit();
+        while (true) {
+            int current = inFlight.get();
+            if (current >= cap) {
+                shed.incrementAndGet();
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                admitted.incrementAndGet();
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Record a completed command
+     *
+     * @param queueNanos Time the command waited before it started running
+     */
+    public void release(Priority priority, long queueNanos) {
+        if (priority == Priority.CRITICAL) {
+            return;
+        }
+        int current = inFlight.getAndDecrement();
+        onSample(queueNanos, current);
+    }
+
+    /**
+     * Record an admitted command that could not be run because its bulkhead
+     * was full; treated as an overload signal
+     */
+    public void drop(Priority priority) {
+        if (priority == Priority.CRITICAL) {
+            return;
+        }
+        inFlight.decrementAndGet();
+        synchronized (this) {
+            decrease(System.nanoTime());
+        }
+    }
+
+    private synchronized void onSample(long queueNanos, int inFlightAtCompletion) {
+        double queueMillis = queueNanos / 1_000_000.0;
+        smoothedQueueMillis = smoothedQueueMillis == 0 ? queueMillis : smoothedQueueMillis * 0.9 + queueMillis * 0.1;
+
+        if (queueNanos > latencyTargetNanos) {
+            decrease(System.nanoTime());
+        } else if (inFlightAtCompletion * 2 >= limit) {
+            // Only grow while the limit is actually being used
+            limit = Math.min(maxLimit, limit + 1.0 / limit);
+        }
+    }
+
+    private void decrease(long now) {
+        // At most one decrease per target interval so one burst does not collapse the limit
+        if (now - lastDecreaseNanos >= latencyTargetNanos) {
+            limit = Math.max(MIN_LIMIT, limit * BACKOFF_RATIO);
+            lastDecreaseNanos = now;
+        }
+    }
+
+    /**
+     * Suggested client back-off: grows with overload and is jittered so
+     * rejected clients do not retry in lockstep
+     */
+    public long getRetryAfterMillis() {
+        double overload = (double) inFlight.get() / getLimit();
+        long base = (long) (MIN_RETRY_AFTER_MS * Math.max(1.0, overload * 2) + getSmoothedQueueMillis());
+        long jitter = ThreadLocalRandom.current().nextLong(MIN_RETRY_AFTER_MS);
+        return Math.min(MAX_RETRY_AFTER_MS, base + jitter);
+    }
+
+    public synchronized int getLimit() { return (int) limit; }
+
+    public int getInFlight() { return inFlight.get(); }
+
+    public synchronized double getSmoothedQueueMillis() { return smoothedQueueMillis; }
+
+    public long getAdmitted() { return admitted.get(); }
+
+    public long getShed() { return shed.get(); }
+}
@@ -0,0 +1,92 @@
+package com.server.commands;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.server.commands.AdmissionController.Priority;
+import com.server.models.User;
+import com.server.services.AuthService;
+import com.server.utils.Logger;
+
+/**
+ * Login, signup and logout
+ */
+public class AuthCommands {
+    private final CommandRegistry registry;
+    private final AuthService authService;
+    private final Gson gson;
+
+    public AuthCommands(CommandRegistry registry, AuthService authService) {
+        this.registry = registry;
+        this.authService = authService;
+        this.gson = registry.getGson();
+    }
+
+    /**
+     * Register the commands
+     *
+     * @param auth Bulkhead for commands that hash passwords
+     * @param session Bulkhead for cheap, non-blocking commands
+     */
+    public void register(Bulkhead auth, Bulkhead session) {
+        registry.register("LOGIN", auth, this::handleLogin);
+        registry.register("SIGNUP", auth, this::handleSignup);
+        registry.register("LOGOUT", session, Priority.CRITICAL, this::handleLogout);
+    }
+
+    private JsonObject handleLogin(CommandContext context) {
+        String username = context.data().get("username").getAsString();
+        String password = context.data().get("password").getAsString();
+
+        User user = authService.authenticate(username, password);
+
+        JsonObject response = new JsonObject();
+        if (user != null) {
+            context.session().setCurrentUser(user);
+            response.addProperty("success", true);
+            response.addProperty("message", "Login successful");
+            response.add("user", gson.toJsonTree(user));
+
+            Logger.info("User logged in: " + username);
+        } else {
+            response.addProperty("success", false);
+            response.addProperty("message", "Invalid credentials");
+        }
+
+        return response;
+    }
+
+    private JsonObject handleSignup(CommandContext context) {
+        String username = context.data().get("username").getAsString();
+        String password = context.data().get("password").getAsString();
+
+        User user = authService.createUser(username, password);
+
+        JsonObject response = new JsonObject();
+        if (user != null) {
+            context.session().setCurrentUser(user);
+            response.addProperty("success", true);
+            response.addProperty("message", "Signup successful");
+            response.add("user", gson.toJsonTree(user));
+
+            Logger.info("User signed up: " + username);
+        } else {
+            response.addProperty("success", false);
+            response.addProperty("message", "Username already exists");
+        }
+
+        return response;
+    }
+
+    private JsonObject handleLogout(CommandContext context) {
+        User currentUser = context.session().getCurrentUser();
+        if (currentUser != null) {
+            Logger.info("User logged out: " + currentUser.getUsername());
+            context.session().setCurrentUser(null);
+        }
+
+        JsonObject response = new JsonObject();
+        response.addProperty("success", true);
+        response.addProperty("message", "Logout successful");
+        return response;
+    }
+}
@@ -0,0 +1,219 @@
+package com.server.commands;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonWriter;
+import com.server.DatabaseManager;
+import com.server.commands.AdmissionController.Priority;
+import com.server.db.ShardRouter;
+import com.server.models.User;
+import com.server.protocol.Request;
+import com.server.utils.Logger;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+
+import static com.server.commands.CommandRegistry.error;
+
+/**
+ * BATCH: run many sub-requests in one round trip.
+ *
+ * Read sub-requests are dispatched to the read bulkhead in parallel. Write
+ * sub-requests run in order on one write thread, in one database transaction
+ * per shard they write to: the writes to a shard are rolled back together if
+ * any of them fails, while the other shards' writes still commit. With a
+ * single shard the whole batch is one transaction. Reads run alongside the
+ * writes and may see the database before or after them. Results are
+ * returned in request order.
+ */
+public class BatchCommands {
+    private static final String ROLLED_BACK = "Batch rolled back";
+
+    private final CommandRegistry registry;
+    private final DatabaseManager databaseManager;
+    private final int maxBatchSize;
+
+    private Bulkhead reads;
+    private Bulkhead writes;
+
+    public BatchCommands(CommandRegistry registry, DatabaseManager databaseManager, int maxBatchSize) {
+        this.registry = registry;
+        this.databaseManager = databaseManager;
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    /**
+     * Register the commands
+     *
+     * @param batch Bulkhead for batch coordinators
+     * @param reads Bulkhead whose commands may run in parallel
+     * @param writes Bulkhead whose commands run in the batch transaction
+     */
+    public void register(Bulkhead batch, Bulkhead reads, Bulkhead writes) {
+        this.reads = reads;
+        this.writes = writes;
+        registry.registerStreaming("BATCH", batch, Priority.INTERACTIVE, this::streamBatch);
+    }
+
+    private void streamBatch(CommandContext context, JsonWriter writer) throws IOException {
+        JsonObject data = context.data();
+        if (data == null || !data.has("requests") || !data.get("requests").isJsonArray()) {
+            registry.writeMembers(writer, error("Missing requests"));
+            return;
+        }
+
+        JsonArray requests = data.getAsJsonArray("requests");
+        if (requests.size() > maxBatchSize) {
+            registry.writeMembers(writer, error("Too many requests in batch (max " + maxBatchSize + ")"));
+            return;
+        }
+
+        List<CompletableFuture<byte[]>> results = new ArrayList<>(requests.size());
+        List<Request> writeRequests = new ArrayList<>();
+        List<CompletableFuture<byte[]>> writeResults = new ArrayList<>();
+
+        for (JsonElement element : requests) {
+            Request request = toRequest(element);
+            Bulkhead bulkhead = request != null ? registry.getBulkhead(request.command()) : null;
+
+            if (request == null) {
+                results.add(completed(error("Invalid batch request")));
+            } else if (bulkhead == null) {
+                results.add(completed(error("Unknown command: " + request.command())));
+            } else if (bulkhead == reads) {
+                results.add(registry.dispatch(context.session(), request, null));
+            } else if (bulkhead == writes) {
+                CompletableFuture<byte[]> result = new CompletableFuture<>();
+                writeRequests.add(request);
+                writeResults.add(result);
+                results.add(result);
+            } else {
+                results.add(completed(error("Command not allowed in BATCH: " + request.command())));
+            }
+        }
+
+        if (!writeRequests.isEmpty()) {
+            runWrites(context.session(), writeRequests, writeResults);
+        }
+
+        writer.name("success").value(true);
+        writer.name("results");
+        writer.beginArray();
+        for (CompletableFuture<byte[]> result : results) {
+            writer.jsonValue(new String(result.join(), StandardCharsets.UTF_8));
+        }
+        writer.endArray();
+    }
+
+    /**
+     * Run the write sub-requests on a write thread, one transaction per
+     * shard, and complete their results
+     */
+    private void runWrites(ClientSession session, List<Request> requests, List<CompletableFuture<byte[]>> results) {
+        // Indexes of the writes to each shard, shards in order of their first write
+        Map<Integer, List<Integer>> byShard = new LinkedHashMap<>();
+        for (int i = 0; i < requests.size(); i++) {
+            byShard.computeIfAbsent(shardOf(session, requests.get(i)), shard -> new ArrayList<>()).add(i);
+        }
+
+        CompletableFuture<byte[][]> transactions;
+        try {
+            transactions = writes.submit(() -> {
+                byte[][] responses = new byte[requests.size()][];
+                byShard.forEach((shard, indexes) -> runShardWrites(session, shard, requests, indexes, responses));
+                return responses;
+            });
+        } catch (RejectedExecutionException e) {
+            Logger.warn("Rejected batched writes from " + session.getRemoteAddress() + ": " + e.getMessage());
+            results.forEach(result -> result.complete(registry.serialize(null, error("Server busy"))));
+            return;
+        }
+
+        transactions.whenComplete((responses, failure) -> {
+            for (int i = 0; i < results.size(); i++) {
+                results.get(i).complete(failure == null
+                        ? responses[i]
+                        : registry.serialize(null, error("Error processing command: " + failure.getMessage())));
+            }
+        });
+    }
+
+    /**
+     * Run the writes to one shard in one transaction on its writer
+     *
+     * @param indexes Positions of the shard's writes in {@code requests}, in order
+     * @param responses Filled in at those positions
+     */
+    private void runShardWrites(ClientSession session, int shard, List<Request> requests, List<Integer> indexes,
+            byte[][] responses) {
+        List<byte[]> shardResponses = new ArrayList<>(indexes.size());
+        boolean committed = databaseManager.executeTransaction(shard, connection -> {
+            for (int index : indexes) {
+                Request request = requests.get(index);
+                byte[] response = registry.invoke(session, request, null);
+                shardResponses.add(response);
+                if (!succeeded(response)) {
+                    Logger.warn("Batched " + request.command() + " failed, rolling back its shard's writes");
+                    return false;
+                }
+            }
+            return true;
+        });
+
+        // When rolled back, only the failed sub-request reports its own error
+        byte[] rolledBack = registry.serialize(null, error(ROLLED_BACK));
+        for (int i = 0; i < indexes.size(); i++) {
+            boolean ran = i < shardResponses.size();
+            boolean failed = ran && !succeeded(shardResponses.get(i));
+            responses[indexes.get(i)] = committed || failed ? shardResponses.get(i) : rolledBack;
+        }
+    }
+
+    /**
+     * Get the shard a batched write commits on. Commands that fail before
+     * writing (not logged in, bad arguments) are put on the main database.
+     */
+    private int shardOf(ClientSession session, Request request) {
+        ShardRouter router = databaseManager.getRouter();
+        User user = session.getCurrentUser();
+        JsonElement postId = request.data().get("postId");
+        boolean hasPostId = postId != null && postId.isJsonPrimitive() && postId.getAsJsonPrimitive().isNumber();
+
+        return switch (request.command()) {
+            case "CREATE_POST", "BOOKMARK_POST" -> user != null ? router.shardForUser(user.getId()) : ShardRouter.MAIN;
+            case "LIKE_POST", "DELETE_POST" -> hasPostId ? router.shardForPost(postId.getAsInt()) : ShardRouter.MAIN;
+            default -> ShardRouter.MAIN;
+        };
+    }
+
+    private static Request toRequest(JsonElement element) {
+        if (!element.isJsonObject()) {
+            return null;
+        }
+        JsonObject object = element.getAsJsonObject();
+        if (!object.has("command") || !object.get("command").isJsonPrimitive()) {
+            return null;
+        }
+        JsonObject data = object.has("data") && object.get("data").isJsonObject()
+                ? object.getAsJsonObject("data")
+                : new JsonObject();
+        return new Request(null, object.get("command").getAsString(), data);
+    }
+
+    private static boolean succeeded(byte[] response) {
+        JsonObject object = JsonParser.parseString(new String(response, StandardCharsets.UTF_8)).getAsJsonObject();
+        return object.has("success") && object.get("success").getAsBoolean();
+    }
+
+    private CompletableFuture<byte[]> completed(JsonObject response) {
+        return CompletableFuture.completedFuture(registry.serialize(null, response));
+    }
+}
@@ -0,0 +1,120 @@
+package com.server.commands;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * An isolated pool of threads for one class of commands.
+ *
+ * Each bulkhead has its own fixed set of threads and a cap on running plus
+ * queued commands, so a burst of slow commands (e.g. bcrypt during a signup
+ * storm) fills only its own bulkhead and is rejected there instead of
+ * delaying everything else.
+ */
+public class Bulkhead {
+    private final String name;
+    private final int threads;
+    private final int maxPending;
+    private final ExecutorService executor;
+    private final Semaphore permits;
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+
+    /**
+     * @param name Name used for threads and stats
+     * @param threads Commands that may run at once; 0 runs commands on the calling thread
+     * @param maxPending Commands that may be running or queued at once
+     */
+    public Bulkhead(String name, int threads, int maxPending) {
+        this.name = name;
+        this.threads = threads;
+        this.maxPending = maxPending;
+        this.executor = threads > 0 ? Executors.newFixedThreadPool(threads, threadFactory(name)) : null;
+        this.permits = new Semaphore(maxPending);
+    }
+
+    /**
+     * Create a bulkhead that runs commands on the calling thread, for
+     * commands too cheap to be worth a hand-off
+     */
+    public static Bulkhead inline(String name) {
+        return new Bulkhead(name, 0, Integer.MAX_VALUE);
+    }
+
+    private static ThreadFactory threadFactory(String name) {
+        AtomicInteger count = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, name + "-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * Run a task in this bulkhead
+     *
+     * @throws RejectedExecutionException if the bulkhead is full
+     */
+    public <T> CompletableFuture<T> submit(Supplier<T> task) {
+        if (!permits.tryAcquire()) {
+            rejected.incrementAndGet();
+            throw new RejectedExecutionException("Bulkhead " + name + " is full");
+        }
+
+        Supplier<T> tracked = () -> {
+            active.incrementAndGet();
+            try {
+                return task.get();
+            } finally {
+                active.decrementAndGet();
+                completed.incrementAndGet();
+                permits.release();
+            }
+        };
+
+        if (executor == null) {
+            return CompletableFuture.completedFuture(tracked.get());
+        }
+        try {
+            return CompletableFuture.supplyAsync(tracked, executor);
+        } catch (RejectedExecutionException e) {
+            permits.release();
+            rejected.incrementAndGet();
+            throw e;
+        }
+    }
+
+    public String getName() { return name; }
+
+    public int getThreads() { return threads; }
+
+    public int getMaxPending() { return maxPending; }
+
+    /**
+     * Number of commands currently running
+     */
+    public int getActive() { return active.get(); }
+
+    /**
+     * Number of commands running or waiting for a thread
+     */
+    public int getPending() { return maxPending - permits.availablePermits(); }
+
+    public long getCompleted() { return completed.get(); }
+
+    public long getRejected() { return rejected.get(); }
+
+    public void shutdown() {
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.server.commands;
+
+import com.server.models.User;
+import com.server.protocol.FrameCodec;
+
+import java.net.SocketAddress;
+
+/**
+ * Per-connection state shared by the transport and the command handlers
+ */
+public class ClientSession {
+    /** Maximum requests with a correlation id in flight per connection */
+    public static final int MAX_PIPELINED_REQUESTS = 32;
+
+    private final SocketAddress remoteAddress;
+
+    private volatile User currentUser;
+    private volatile boolean open = true;
+    private volatile String framing;
+    private volatile FrameCodec negotiatedCodec;
+
+    public ClientSession(SocketAddress remoteAddress, String framing) {
+        this.remoteAddress = remoteAddress;
+        this.framing = framing;
+    }
+
+    public SocketAddress getRemoteAddress() { return remoteAddress; }
+
+    public User getCurrentUser() { return currentUser; }
+    public void setCurrentUser(User currentUser) { this.currentUser = currentUser; }
+
+    public boolean isAuthenticated() { return currentUser != null; }
+
+    /**
+     * Check if the client is still active (false after DISCONNECT)
+     */
+    public boolean isOpen() { return open; }
+
+    /**
+     * Mark the session closed; the transport closes the connection once the
+     * current response has been written
+     */
+    public void close() { this.open = false; }
+
+    /**
+     * Name of the framing currently used on the connection
+     */
+    public String getFraming() { return framing; }
+
+    /**
+     * Record a codec negotiated in HANDSHAKE. Transports switch to it after
+     * writing the HANDSHAKE response.
+     */
+    public void negotiate(FrameCodec codec) {
+        this.negotiatedCodec = codec;
+    }
+
+    /**
+     * Take the codec negotiated by the last HANDSHAKE, if any
+     *
+     * @return The new codec, or null if nothing was negotiated since the last call
+     */
+    public FrameCodec takeNegotiatedCodec() {
+        FrameCodec next = negotiatedCodec;
+        negotiatedCodec = null;
+        if (next != null) {
+            framing = next.name();
+        }
+        return next;
+    }
+}
@@ -0,0 +1,13 @@
+package com.server.commands;
+
+import com.google.gson.JsonObject;
+
+/**
+ * Arguments passed to a command handler
+ *
+ * @param session The calling client's session
+ * @param data The request "data" object, may be null
+ * @param attachment Binary attachment sent with the request, may be null
+ */
+public record CommandContext(ClientSession session, JsonObject data, byte[] attachment) {
+}
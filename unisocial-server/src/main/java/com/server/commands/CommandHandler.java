@@ -0,0 +1,18 @@
+package com.server.commands;
+
+import com.google.gson.JsonObject;
+
+/**
+ * A command that builds its response as a JSON tree
+ */
+@FunctionalInterface
+public interface CommandHandler {
+
+    /**
+     * Handle a command
+     *
+     * @param context The calling session and request arguments
+     * @return The response members; the request id is added by the registry
+     */
+    JsonObject handle(CommandContext context);
+}
@@ -0,0 +1,307 @@
+package com.server.commands;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonWriter;
+import com.server.DatabaseManager;
+import com.server.ServerConfig;
+import com.server.commands.AdmissionController.Priority;
+import com.server.db.OnlineBackup;
+import com.server.protocol.Request;
+import com.server.services.AuthService;
+import com.server.services.PostService;
+import com.server.services.UserService;
+import com.server.utils.Logger;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Supplier;
+
+/**
+ * Maps command names to handlers and runs each command in the bulkhead it
+ * was registered with.
+ *
+ * Responses are serialized here: the request id is written first, then the
+ * members produced by the handler.
+ */
+public class CommandRegistry {
+    private static final int RESPONSE_BUFFER_SIZE = 1024;
+
+    private final Gson gson;
+    private final AdmissionController admission;
+    private final Map<String, Registration> commands = new ConcurrentHashMap<>();
+    private final List<Bulkhead> bulkheads = new ArrayList<>();
+    private final Map<String, Supplier<JsonObject>> statsSources = new LinkedHashMap<>();
+
+    public CommandRegistry(Gson gson, AdmissionController admission) {
+        this.gson = gson;
+        this.admission = admission;
+    }
+
+    /**
+     * Create a registry with the built-in commands. Commands are split into
+     * bulkheads by cost: cheap session commands run inline, bcrypt-heavy
+     * authentication, database reads and database writes each get their own
+     * threads. BATCH coordinators get a bulkhead of their own so waiting on
+     * sub-requests never ties up the read or write threads. Admin commands
+     * only start or inspect background work, so they run inline.
+     */
+    public static CommandRegistry create(ServerConfig config, DatabaseManager databaseManager,
+            AuthService authService, PostService postService, UserService userService) {
+        AdmissionController admission = new AdmissionController(config.getAdmissionInitialLimit(),
+                config.getAdmissionMaxLimit(), config.getAdmissionLatencyTargetMs());
+        CommandRegistry registry = new CommandRegistry(new Gson(), admission);
+
+        Bulkhead session = registry.addBulkhead(Bulkhead.inline("session"));
+        Bulkhead auth = registry.addBulkhead(
+                new Bulkhead("auth", config.getAuthThreads(), config.getBulkheadQueueSize()));
+        Bulkhead reads = registry.addBulkhead(
+                new Bulkhead("read", config.getReadThreads(), config.getBulkheadQueueSize()));
+        Bulkhead writes = registry.addBulkhead(
+                new Bulkhead("write", config.getWriteThreads(), config.getBulkheadQueueSize()));
+        Bulkhead batch = registry.addBulkhead(
+                new Bulkhead("batch", config.getBatchThreads(), config.getBulkheadQueueSize()));
+
+        new SessionCommands(registry, config).register(session);
+        new AuthCommands(registry, authService).register(auth, session);
+        new PostCommands(registry, postService).register(reads, writes);
+        new UserCommands(registry, userService).register(reads, writes);
+        new BatchCommands(registry, databaseManager, config.getMaxBatchSize()).register(batch, reads, writes);
+
+        OnlineBackup backup = new OnlineBackup(databaseManager.getFileUrls(), Path.of(config.getBackupDirectory()),
+                config.getBackupPagesPerStep(), config.getBackupStepSleepMs());
+        new AdminCommands(registry, backup, config.getAdminUsers()).register(session);
+
+        return registry;
+    }
+
+    /**
+     * Add a bulkhead so it is reported in stats and shut down with the registry
+     */
+    public Bulkhead addBulkhead(Bulkhead bulkhead) {
+        bulkheads.add(bulkhead);
+        return bulkhead;
+    }
+
+    /**
+     * Register an interactive command that builds its response as a tree
+     */
+    public void register(String command, Bulkhead bulkhead, CommandHandler handler) {
+        register(command, bulkhead, Priority.INTERACTIVE, handler);
+    }
+
+    /**
+     * Register a command that builds its response as a tree
+     *
+     * @param priority Admission priority under load
+     */
+    public void register(String command, Bulkhead bulkhead, Priority priority, CommandHandler handler) {
+        registerStreaming(command, bulkhead, priority,
+                (context, response) -> writeMembers(response, handler.handle(context)));
+    }
+
+    /**
+     * Register an interactive command that writes its response directly
+     */
+    public void registerStreaming(String command, Bulkhead bulkhead, StreamingCommandHandler handler) {
+        registerStreaming(command, bulkhead, Priority.INTERACTIVE, handler);
+    }
+
+    /**
+     * Register a command that writes its response directly
+     *
+     * @param priority Admission priority under load
+     */
+    public void registerStreaming(String command, Bulkhead bulkhead, Priority priority,
+            StreamingCommandHandler handler) {
+        if (commands.putIfAbsent(command, new Registration(handler, bulkhead, priority)) != null) {
+            throw new IllegalArgumentException("Command already registered: " + command);
+        }
+    }
+
+    /**
+     * Run a request in its command's bulkhead
+     *
+     * @param session The calling client's session
+     * @param request The request, or null if it could not be parsed
+     * @param attachment Binary attachment sent with the request, may be null
+     * @return Future completed with the UTF-8 JSON response; never completes exceptionally
+     */
+    public CompletableFuture<byte[]> dispatch(ClientSession session, Request request, byte[] attachment) {
+        if (request == null || request.command() == null) {
+            return CompletableFuture.completedFuture(
+                    serialize(request != null ? request.id() : null, error("Internal server error")));
+        }
+
+        Registration registration = commands.get(request.command());
+        if (registration == null) {
+            return CompletableFuture.completedFuture(
+                    serialize(request.id(), error("Unknown command: " + request.command())));
+        }
+
+        // Shed load before any work is queued
+        Priority priority = registration.priority();
+        if (!admission.tryAcquire(priority)) {
+            return CompletableFuture.completedFuture(serialize(request.id(), busy()));
+        }
+
+        CommandContext context = new CommandContext(session, request.data(), attachment);
+        long submitted = System.nanoTime();
+        try {
+            return registration.bulkhead().submit(() -> {
+                long queueNanos = System.nanoTime() - submitted;
+                try {
+                    return execute(registration.handler(), request, context);
+                } finally {
+                    admission.release(priority, queueNanos);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            admission.drop(priority);
+            Logger.warn("Rejected " + request.command() + " from " + session.getRemoteAddress() + ": " + e.getMessage());
+            return CompletableFuture.completedFuture(serialize(request.id(), busy()));
+        }
+    }
+
+    /**
+     * Run a request on the calling thread, bypassing its bulkhead and
+     * admission control. Used to run batched writes inside their shard's transaction.
+     */
+    byte[] invoke(ClientSession session, Request request, byte[] attachment) {
+        Registration registration = commands.get(request.command());
+        if (registration == null) {
+            return serialize(request.id(), error("Unknown command: " + request.command()));
+        }
+        return execute(registration.handler(), request, new CommandContext(session, request.data(), attachment));
+    }
+
+    /**
+     * Get the bulkhead a command was registered with
+     *
+     * @return The bulkhead, or null if the command is unknown
+     */
+    Bulkhead getBulkhead(String command) {
+        Registration registration = commands.get(command);
+        return registration != null ? registration.bulkhead() : null;
+    }
+
+    private byte[] execute(StreamingCommandHandler handler, Request request, CommandContext context) {
+        try {
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream(RESPONSE_BUFFER_SIZE);
+            try (JsonWriter writer = gson.newJsonWriter(new OutputStreamWriter(buffer, StandardCharsets.UTF_8))) {
+                writer.beginObject();
+                writeId(writer, request.id());
+                handler.handle(context, writer);
+                writer.endObject();
+            }
+            return buffer.toByteArray();
+
+        } catch (Exception e) {
+            // Nothing has been sent yet, so a half-written response is simply dropped
+            Logger.error("Error processing command " + request.command() + ": " + e.getMessage());
+            return serialize(request.id(), error("Error processing command: " + e.getMessage()));
+        }
+    }
+
+    /**
+     * Serialize a response tree
+     */
+    public byte[] serialize(JsonElement id, JsonObject response) {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(RESPONSE_BUFFER_SIZE);
+        try (JsonWriter writer = gson.newJsonWriter(new OutputStreamWriter(buffer, StandardCharsets.UTF_8))) {
+            writer.beginObject();
+            writeId(writer, id);
+            writeMembers(writer, response);
+            writer.endObject();
+        } catch (IOException e) {
+            // Cannot happen when writing to memory
+            throw new UncheckedIOException(e);
+        }
+        return buffer.toByteArray();
+    }
+
+    private void writeId(JsonWriter writer, JsonElement id) throws IOException {
+        if (id != null) {
+            writer.name("id");
+            gson.toJson(id, writer);
+        }
+    }
+
+    /**
+     * Write the members of a response tree into an open response object
+     */
+    void writeMembers(JsonWriter writer, JsonObject response) throws IOException {
+        for (Map.Entry<String, JsonElement> member : response.entrySet()) {
+            writer.name(member.getKey());
+            gson.toJson(member.getValue(), writer);
+        }
+    }
+
+    /**
+     * Create an error response
+     */
+    public static JsonObject error(String message) {
+        JsonObject response = new JsonObject();
+        response.addProperty("success", false);
+        response.addProperty("message", message);
+        return response;
+    }
+
+    /**
+     * Create a structured busy response telling the client when to retry
+     */
+    private JsonObject busy() {
+        JsonObject response = error("Server busy");
+        response.addProperty("busy", true);
+        response.addProperty("retryAfterMs", admission.getRetryAfterMillis());
+        return response;
+    }
+
+    public Gson getGson() {
+        return gson;
+    }
+
+    /**
+     * Add a section to the STATS response
+     *
+     * @param section Name of the section
+     * @param source Produces the current values
+     */
+    public void registerStats(String section, Supplier<JsonObject> source) {
+        statsSources.put(section, source);
+    }
+
+    Map<String, Supplier<JsonObject>> getStatsSources() {
+        return statsSources;
+    }
+
+    public AdmissionController getAdmission() {
+        return admission;
+    }
+
+    public List<Bulkhead> getBulkheads() {
+        return bulkheads;
+    }
+
+    /**
+     * Stop all bulkhead threads
+     */
+    public void shutdown() {
+        bulkheads.forEach(Bulkhead::shutdown);
+    }
+
+    private record Registration(StreamingCommandHandler handler, Bulkhead bulkhead, Priority priority) {
+    }
+}
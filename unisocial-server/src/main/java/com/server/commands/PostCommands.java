@@ -0,0 +1,156 @@
+package com.server.commands;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonWriter;
+import com.server.commands.AdmissionController.Priority;
+import com.server.models.FeedCursor;
+import com.server.models.FeedPage;
+import com.server.models.Post;
+import com.server.models.ToggleResult;
+import com.server.models.User;
+import com.server.services.PostService;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.List;
+
+import static com.server.commands.CommandRegistry.error;
+
+/**
+ * Feed and post commands
+ */
+public class PostCommands {
+    private static final Type POST_LIST_TYPE = new TypeToken<List<Post>>() {}.getType();
+
+    private final CommandRegistry registry;
+    private final PostService postService;
+    private final Gson gson;
+
+    public PostCommands(CommandRegistry registry, PostService postService) {
+        this.registry = registry;
+        this.postService = postService;
+        this.gson = registry.getGson();
+    }
+
+    /**
+     * Register the commands
+     *
+     * @param reads Bulkhead for database reads
+     * @param writes Bulkhead for database writes
+     */
+    public void register(Bulkhead reads, Bulkhead writes) {
+        // Feed loads are mostly periodic polls, so they are shed first under load
+        registry.registerStreaming("GET_FEED", reads, Priority.BACKGROUND, this::streamGetFeed);
+        registry.register("CREATE_POST", writes, this::handleCreatePost);
+        registry.register("LIKE_POST", writes, this::handleLikePost);
+        registry.register("BOOKMARK_POST", writes, this::handleBookmarkPost);
+        registry.register("DELETE_POST", writes, this::handleDeletePost);
+    }
+
+    private JsonObject handleCreatePost(CommandContext context) {
+        User currentUser = context.session().getCurrentUser();
+        if (currentUser == null) {
+            return error("Not authenticated");
+        }
+
+        String content = context.data().get("content").getAsString();
+        Post createdPost = postService.createPost(currentUser.getId(), content);
+
+        JsonObject response = new JsonObject();
+        if (createdPost != null) {
+            response.addProperty("success", true);
+            response.add("post", gson.toJsonTree(createdPost));
+        } else {
+            response.addProperty("success", false);
+            response.addProperty("message", "Failed to create post");
+        }
+        return response;
+    }
+
+    private void streamGetFeed(CommandContext context, JsonWriter writer) throws IOException {
+        User currentUser = context.session().getCurrentUser();
+        if (currentUser == null) {
+            registry.writeMembers(writer, error("Not authenticated"));
+            return;
+        }
+
+        // Both are optional; without them this is the first page, as before paging existed
+        JsonObject data = context.data();
+        FeedCursor after = null;
+        if (data.has("cursor") && !data.get("cursor").isJsonNull()) {
+            try {
+                after = FeedCursor.decode(data.get("cursor").getAsString());
+            } catch (IllegalArgumentException e) {
+                registry.writeMembers(writer, error(e.getMessage()));
+                return;
+            }
+        }
+        int limit = data.has("limit") ? data.get("limit").getAsInt() : PostService.DEFAULT_FEED_PAGE_SIZE;
+        limit = Math.max(1, Math.min(limit, PostService.MAX_FEED_PAGE_SIZE));
+
+        FeedPage page = postService.getFeed(currentUser.getId(), after, limit);
+
+        writer.name("success").value(true);
+        writer.name("posts");
+        gson.toJson(page.posts(), POST_LIST_TYPE, writer);
+        if (page.nextCursor() != null) {
+            writer.name("nextCursor").value(page.nextCursor().encode());
+        }
+    }
+
+    private JsonObject handleLikePost(CommandContext context) {
+        User currentUser = context.session().getCurrentUser();
+        if (currentUser == null) {
+            return error("Not authenticated");
+        }
+
+        int postId = context.data().get("postId").getAsInt();
+        ToggleResult result = postService.toggleLike(currentUser.getId(), postId);
+        if (result == null) {
+            return error("Failed to toggle like");
+        }
+
+        JsonObject response = new JsonObject();
+        response.addProperty("success", true);
+        response.addProperty("liked", result.active());
+        response.addProperty("likeCount", result.count());
+        response.addProperty("message", "Like toggled");
+        return response;
+    }
+
+    private JsonObject handleBookmarkPost(CommandContext context) {
+        User currentUser = context.session().getCurrentUser();
+        if (currentUser == null) {
+            return error("Not authenticated");
+        }
+
+        int postId = context.data().get("postId").getAsInt();
+        Boolean bookmarked = postService.toggleBookmark(currentUser.getId(), postId);
+        if (bookmarked == null) {
+            return error("Failed to toggle bookmark");
+        }
+
+        JsonObject response = new JsonObject();
+        response.addProperty("success", true);
+        response.addProperty("bookmarked", bookmarked);
+        response.addProperty("message", "Bookmark toggled");
+        return response;
+    }
+
+    private JsonObject handleDeletePost(CommandContext context) {
+        User currentUser = context.session().getCurrentUser();
+        if (currentUser == null) {
+            return error("Not authenticated");
+        }
+
+        int postId = context.data().get("postId").getAsInt();
+        boolean success = postService.deletePost(currentUser.getId(), postId);
+
+        JsonObject response = new JsonObject();
+        response.addProperty("success", success);
+        response.addProperty("message", success ? "Post deleted" : "Failed to delete post");
+        return response;
+    }
+}
@@ -0,0 +1,127 @@
+package com.server.commands;
+
+import com.google.gson.JsonObject;
+import com.server.ServerConfig;
+import com.server.commands.AdmissionController.Priority;
+import com.server.protocol.CompressionStats;
+import com.server.protocol.FrameCodecs;
+import com.server.protocol.PayloadCompression;
+
+/**
+ * Connection-level commands: handshake, keep-alive and server stats
+ */
+public class SessionCommands {
+    private final CommandRegistry registry;
+    private final int maxMessageSize;
+    private final int compressionThreshold;
+    private final int readTimeout;
+
+    public SessionCommands(CommandRegistry registry, ServerConfig config) {
+        this.registry = registry;
+        this.maxMessageSize = config.getMaxMessageSize();
+        this.compressionThreshold = config.getCompressionThreshold();
+        this.readTimeout = config.getReadTimeout();
+    }
+
+    /**
+     * Register the commands
+     *
+     * @param session Bulkhead for cheap, non-blocking commands
+     */
+    public void register(Bulkhead session) {
+        registry.register("HANDSHAKE", session, Priority.CRITICAL, this::handleHandshake);
+        registry.register("PING", session, Priority.CRITICAL, this::handlePing);
+        registry.register("STATS", session, Priority.CRITICAL, this::handleStats);
+        registry.register("DISCONNECT", session, Priority.CRITICAL, this::handleDisconnect);
+    }
+
+    private JsonObject handleHandshake(CommandContext context) {
+        JsonObject data = context.data();
+
+        JsonObject response = new JsonObject();
+        response.addProperty("success", true);
+        response.addProperty("message", "Handshake successful");
+        response.addProperty("serverVersion", "1.0");
+
+        // Framing and compression take effect after this response has been written
+        String framing = context.session().getFraming();
+        if (data != null && data.has("framing")) {
+            framing = FrameCodecs.negotiate(data.getAsJsonArray("framing"));
+        }
+        boolean compression = compressionThreshold > 0
+                && FrameCodecs.LENGTH_PREFIXED.equals(framing)
+                && data != null && data.has("compression")
+                && FrameCodecs.acceptsCompression(data.getAsJsonArray("compression"));
+        context.session().negotiate(
+                FrameCodecs.create(framing, maxMessageSize, compression ? compressionThreshold : 0));
+
+        response.addProperty("framing", framing);
+        if (compression) {
+            response.addProperty("compression", PayloadCompression.NAME);
+            response.addProperty("compressionThreshold", compressionThreshold);
+        }
+        response.addProperty("pipelining", true);
+        response.addProperty("maxPipelinedRequests", ClientSession.MAX_PIPELINED_REQUESTS);
+
+        // Idle connections are closed after readTimeout; PING well before that
+        response.addProperty("heartbeatIntervalMs", readTimeout / 3);
+        return response;
+    }
+
+    private JsonObject handlePing(CommandContext context) {
+        JsonObject response = new JsonObject();
+        response.addProperty("success", true);
+        response.addProperty("message", "pong");
+        response.addProperty("timestamp", System.currentTimeMillis());
+        return response;
+    }
+
+    private JsonObject handleStats(CommandContext context) {
+        CompressionStats stats = PayloadCompression.stats();
+
+        JsonObject compression = new JsonObject();
+        compression.addProperty("messages", stats.getMessages());
+        compression.addProperty("skipped", stats.getSkipped());
+        compression.addProperty("bytesIn", stats.getBytesIn());
+        compression.addProperty("bytesOut", stats.getBytesOut());
+        compression.addProperty("ratio", stats.getRatio());
+        compression.addProperty("cpuMillis", stats.getTotalMillis());
+        compression.addProperty("averageMicros", stats.getAverageMicros());
+
+        JsonObject bulkheads = new JsonObject();
+        for (Bulkhead bulkhead : registry.getBulkheads()) {
+            JsonObject entry = new JsonObject();
+            entry.addProperty("threads", bulkhead.getThreads());
+            entry.addProperty("active", bulkhead.getActive());
+            entry.addProperty("pending", bulkhead.getPending());
+            entry.addProperty("completed", bulkhead.getCompleted());
+            entry.addProperty("rejected", bulkhead.getRejected());
+            bulkheads.add(bulkhead.getName(), entry);
+        }
+
+        AdmissionController admission = registry.getAdmission();
+        JsonObject admissionStats = new JsonObject();
+        admissionStats.addProperty("limit", admission.getLimit());
+        admissionStats.addProperty("inFlight", admission.getInFlight());
+        admissionStats.addProperty("queueMillis", admission.getSmoothedQueueMillis());
+        admissionStats.addProperty("admitted", admission.getAdmitted());
+        admissionStats.addProperty("shed", admission.getShed());
+
+        JsonObject response = new JsonObject();
+        response.addProperty("success", true);
+        response.add("compression", compression);
+        response.add("admission", admissionStats);
+        registry.getStatsSources().forEach((section, source) -> response.add(section, source.get()));
+        response.add("bulkheads", bulkheads);
+        return response;
+    }
+
+    private JsonObject handleDisconnect(CommandContext context) {
+        context.session().close();
+
+        JsonObject response = new JsonObject();
+        response.addProperty("success", true);
+        response.addProperty("message", "Disconnect acknowledged");
+        return response;
+    }
+}
@@ -0,0 +1,21 @@
+package com.server.commands;
+
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+
+/**
+ * A command that writes its response members directly, for large responses
+ * that should not be built as a tree first
+ */
+@FunctionalInterface
+public interface StreamingCommandHandler {
+
+    /**
+     * Handle a command
+     *
+     * @param context The calling session and request arguments
+     * @param response Writer positioned inside the response object
+     */
+    void handle(CommandContext context, JsonWriter response) throws IOException;
+}
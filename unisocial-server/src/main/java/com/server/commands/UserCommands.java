@@ -0,0 +1,179 @@
+package com.server.commands;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonWriter;
+import com.server.models.ToggleResult;
+import com.server.models.User;
+import com.server.services.UserService;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.List;
+
+import static com.server.commands.CommandRegistry.error;
+
+/**
+ * Profile, search, follow and avatar commands
+ */
+public class UserCommands {
+    private static final Type USER_LIST_TYPE = new TypeToken<List<User>>() {}.getType();
+
+    private final CommandRegistry registry;
+    private final UserService userService;
+    private final Gson gson;
+
+    public UserCommands(CommandRegistry registry, UserService userService) {
+        this.registry = registry;
+        this.userService = userService;
+        this.gson = registry.getGson();
+    }
+
+    /**
+     * Register the commands
+     *
+     * @param reads Bulkhead for database reads
+     * @param writes Bulkhead for database writes
+     */
+    public void register(Bulkhead reads, Bulkhead writes) {
+        registry.registerStreaming("GET_USER", reads, this::streamGetUser);
+        registry.registerStreaming("SEARCH_USERS", reads, this::streamSearchUsers);
+        registry.register("GET_AVATAR_URL", reads, this::handleGetAvatarUrl);
+        registry.register("UPDATE_PROFILE", writes, this::handleUpdateProfile);
+        registry.register("FOLLOW_USER", writes, this::handleFollowUser);
+        registry.register("UPDATE_AVATAR", writes, this::handleUpdateAvatar);
+        registry.register("DELETE_AVATAR", writes, this::handleDeleteAvatar);
+    }
+
+    private void streamGetUser(CommandContext context, JsonWriter writer) throws IOException {
+        int userId = context.data().get("userId").getAsInt();
+        User user = userService.getUserById(userId);
+
+        if (user != null) {
+            writer.name("success").value(true);
+            writer.name("user");
+            gson.toJson(user, User.class, writer);
+        } else {
+            writer.name("success").value(false);
+            writer.name("message").value("User not found");
+        }
+    }
+
+    private void streamSearchUsers(CommandContext context, JsonWriter writer) throws IOException {
+        JsonObject data = context.data();
+        String query = data.get("query").getAsString();
+        int limit = data.has("limit") ? data.get("limit").getAsInt() : 20;
+
+        List<User> users = userService.searchUsers(query, limit);
+
+        writer.name("success").value(true);
+        writer.name("users");
+        gson.toJson(users, USER_LIST_TYPE, writer);
+    }
+
+    private JsonObject handleUpdateProfile(CommandContext context) {
+        User currentUser = context.session().getCurrentUser();
+        if (currentUser == null) {
+            return error("Not authenticated");
+        }
+
+        JsonObject data = context.data();
+        int userId = data.get("userId").getAsInt();
+        if (userId != currentUser.getId()) {
+            return error("Unauthorized");
+        }
+
+        String fullName = data.has("fullName") ? data.get("fullName").getAsString() : null;
+        String bio = data.has("bio") ? data.get("bio").getAsString() : null;
+        String avatarUrl = data.has("avatarUrl") ? data.get("avatarUrl").getAsString() : null;
+
+        boolean success = userService.updateProfile(userId, fullName, bio, avatarUrl);
+
+        JsonObject response = new JsonObject();
+        response.addProperty("success", success);
+        response.addProperty("message", success ? "Profile updated" : "Failed to update profile");
+        return response;
+    }
+
+    private JsonObject handleFollowUser(CommandContext context) {
+        User currentUser = context.session().getCurrentUser();
+        if (currentUser == null) {
+            return error("Not authenticated");
+        }
+
+        int targetUserId = context.data().get("targetUserId").getAsInt();
+        ToggleResult result = userService.toggleFollow(currentUser.getId(), targetUserId);
+        if (result == null) {
+            return error("Failed to toggle follow");
+        }
+
+        JsonObject response = new JsonObject();
+        response.addProperty("success", true);
+        response.addProperty("following", result.active());
+        response.addProperty("followersCount", result.count());
+        response.addProperty("message", "Follow toggled");
+        return response;
+    }
+
+    private JsonObject handleGetAvatarUrl(CommandContext context) {
+        int userId = context.data().get("userId").getAsInt();
+        String avatarUrl = userService.getAvatarUrl(userId);
+
+        JsonObject response = new JsonObject();
+        response.addProperty("success", true);
+        response.addProperty("avatarUrl", avatarUrl);
+        return response;
+    }
+
+    private JsonObject handleUpdateAvatar(CommandContext context) {
+        User currentUser = context.session().getCurrentUser();
+        if (currentUser == null) {
+            return error("Not authenticated");
+        }
+
+        JsonObject data = context.data();
+        int userId = data.get("userId").getAsInt();
+        if (userId != currentUser.getId()) {
+            return error("Unauthorized");
+        }
+
+        String contentType = data.get("contentType").getAsString();
+
+        // Length-prefixed clients send the image as a raw attachment
+        byte[] attachment = context.attachment();
+        String avatarUrl = attachment != null
+                ? userService.updateAvatar(userId, attachment, contentType)
+                : userService.updateAvatar(userId, data.get("avatarData").getAsString(), contentType);
+
+        JsonObject response = new JsonObject();
+        if (avatarUrl != null) {
+            response.addProperty("success", true);
+            response.addProperty("avatarUrl", avatarUrl);
+        } else {
+            response.addProperty("success", false);
+            response.addProperty("message", "Failed to update avatar");
+        }
+
+        return response;
+    }
+
+    private JsonObject handleDeleteAvatar(CommandContext context) {
+        User currentUser = context.session().getCurrentUser();
+        if (currentUser == null) {
+            return error("Not authenticated");
+        }
+
+        int userId = context.data().get("userId").getAsInt();
+        if (userId != currentUser.getId()) {
+            return error("Unauthorized");
+        }
+
+        boolean success = userService.deleteAvatar(userId);
+
+        JsonObject response = new JsonObject();
+        response.addProperty("success", success);
+        response.addProperty("message", success ? "Avatar deleted" : "Failed to delete avatar");
+        return response;
+    }
+}
@@ -0,0 +1,46 @@
+package com.server.db;
+
+import java.util.List;
+
+/**
+ * Snapshot of an online backup's progress
+ *
+ * @param state Where the backup is
+ * @param snapshot Name of the main snapshot file, or null before the first backup
+ * @param file Index of the database file being copied
+ * @param fileCount Database files to copy: the shards, then their archives
+ * @param remainingPages Pages of the current file still to copy
+ * @param pageCount Pages in the current file
+ * @param files Snapshot files written and verified so far
+ * @param message Why the backup failed, or null
+ * @param startedAt When the backup started, in epoch milliseconds, or 0
+ * @param finishedAt When the backup finished, in epoch milliseconds, or 0 while it runs
+ */
+public record BackupProgress(State state, String snapshot, int file, int fileCount, int remainingPages,
+                             int pageCount, List<String> files, String message, long startedAt, long finishedAt) {
+
+    public enum State {
+        IDLE, RUNNING, SUCCEEDED, FAILED
+    }
+
+    public static final BackupProgress IDLE = new BackupProgress(State.IDLE, null, 0, 0, 0, 0, List.of(), null, 0, 0);
+
+    /**
+     * Overall progress across all files, from 0 to 100
+     */
+    public double getPercent() {
+        if (state == State.SUCCEEDED) {
+            return 100;
+        }
+        if (fileCount == 0) {
+            return 0;
+        }
+        double fileDone = pageCount == 0 ? 0 : (double) (pageCount - remainingPages) / pageCount;
+        return (file + fileDone) * 100 / fileCount;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s %s, file %d of %d, %.1f%%", state, snapshot, file, fileCount, getPercent());
+    }
+}
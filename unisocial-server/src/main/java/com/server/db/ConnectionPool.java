@@ -0,0 +1,330 @@
+package com.server.db;
+
+import com.server.utils.Logger;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.sql.Statement;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded pool of JDBC connections.
+ *
+ * At most {@code maxSize} connections are handed out at once; callers beyond
+ * that wait up to the acquire timeout and then fail with an
+ * {@link SQLTimeoutException}. Closing a borrowed connection returns it to
+ * the pool. Idle connections are reused most-recent-first, checked before
+ * reuse once they have been idle for a while, and closed by a background
+ * evictor after the idle timeout. Each connection keeps its own cache of
+ * prepared statements.
+ */
+public class ConnectionPool {
+    private static final int VALIDATION_TIMEOUT_SECONDS = 1;
+
+    private final String url;
+    private final int maxSize;
+    private final long acquireTimeoutMs;
+    private final long idleTimeoutNanos;
+    private final long validationIntervalNanos;
+    private final int statementCacheSize;
+    private final SqliteProfile profile;
+    private final boolean readOnly;
+    private final String archiveUrl;
+    private final StatementCache.Counters statementCounters = new StatementCache.Counters();
+    private final Semaphore permits;
+    private final Deque<PooledConnection> idle = new ArrayDeque<>();
+    private final ScheduledExecutorService evictor;
+
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicLong acquired = new AtomicLong();
+    private final AtomicLong timeouts = new AtomicLong();
+    private final AtomicLong created = new AtomicLong();
+    private final AtomicLong evicted = new AtomicLong();
+    private final AtomicLong waitNanos = new AtomicLong();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+
+    // Previous stats() call, for the creation rate
+    private long lastSampleNanos = System.nanoTime();
+    private long lastSampleCreated;
+
+    private volatile boolean closed;
+
+    /**
+     * @param url JDBC URL
+     * @param maxSize Connections that may be open at once
+     * @param acquireTimeoutMs How long a caller waits for a free connection
+     * @param idleTimeoutMs Idle connections older than this are closed
+     * @param validationIntervalMs Connections idle longer than this are checked before reuse
+     * @param statementCacheSize Prepared statements cached per connection; 0 disables the cache
+     * @param profile Pragmas applied to each new connection
+     * @param readOnly Whether connections refuse writes (query_only)
+     * @param archiveUrl Archive file attached to each connection (see {@link PostArchiver}), or null
+     */
+    public ConnectionPool(String url, int maxSize, long acquireTimeoutMs, long idleTimeoutMs,
+            long validationIntervalMs, int statementCacheSize, SqliteProfile profile, boolean readOnly,
+            String archiveUrl) {
+        this.url = url;
+        this.maxSize = maxSize;
+        this.acquireTimeoutMs = acquireTimeoutMs;
+        this.idleTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(idleTimeoutMs);
+        this.validationIntervalNanos = TimeUnit.MILLISECONDS.toNanos(validationIntervalMs);
+        this.statementCacheSize = statementCacheSize;
+        this.profile = profile;
+        this.readOnly = readOnly;
+        this.archiveUrl = archiveUrl;
+        this.permits = new Semaphore(maxSize, true);
+
+        this.evictor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "db-pool-evictor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long evictionPeriod = Math.max(1, idleTimeoutMs / 2);
+        evictor.scheduleWithFixedDelay(this::evictIdle, evictionPeriod, evictionPeriod, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Borrow a connection. Closing it returns it to the pool.
+     *
+     * @throws SQLTimeoutException if no connection became free in time
+     */
+    public Connection acquire() throws SQLException {
+        if (closed) {
+            throw new SQLException("Connection pool is closed");
+        }
+
+        long start = System.nanoTime();
+        try {
+            if (!permits.tryAcquire(acquireTimeoutMs, TimeUnit.MILLISECONDS)) {
+                timeouts.incrementAndGet();
+                throw new SQLTimeoutException("Timed out after " + acquireTimeoutMs
+                        + "ms waiting for a database connection");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted waiting for a database connection", e);
+        }
+        recordWait(System.nanoTime() - start);
+
+        try {
+            PooledConnection pooled = takeIdle();
+            if (pooled == null) {
+                pooled = open();
+            }
+            active.incrementAndGet();
+            acquired.incrementAndGet();
+            return borrowed(pooled);
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Get an idle connection that is still usable, or null if there is none
+     */
+    private PooledConnection takeIdle() {
+        while (true) {
+            PooledConnection pooled;
+            synchronized (idle) {
+                pooled = idle.pollFirst();
+            }
+            if (pooled == null) {
+                return null;
+            }
+            if (System.nanoTime() - pooled.lastUsed < validationIntervalNanos || isValid(pooled)) {
+                return pooled;
+            }
+            Logger.debug("Discarding broken database connection");
+            closeQuietly(pooled);
+        }
+    }
+
+    private PooledConnection open() throws SQLException {
+        Connection connection = DriverManager.getConnection(url);
+        try {
+            profile.apply(connection);
+            if (archiveUrl != null) {
+                PostArchiver.attach(connection, archiveUrl, profile);
+            }
+            if (readOnly) {
+                try (Statement stmt = connection.createStatement()) {
+                    stmt.execute("PRAGMA query_only = ON");
+                }
+            }
+        } catch (SQLException e) {
+            connection.close();
+            throw e;
+        }
+        connection.setAutoCommit(true);
+        created.incrementAndGet();
+        return new PooledConnection(connection,
+                new StatementCache(connection, statementCacheSize, statementCounters));
+    }
+
+    /**
+     * Return a connection to the pool, leaving it in auto-commit mode
+     */
+    private void release(PooledConnection pooled) {
+        active.decrementAndGet();
+        try {
+            if (closed || pooled.connection.isClosed()) {
+                closeQuietly(pooled);
+                return;
+            }
+            if (!pooled.connection.getAutoCommit()) {
+                pooled.connection.rollback();
+                pooled.connection.setAutoCommit(true);
+            }
+            pooled.lastUsed = System.nanoTime();
+            synchronized (idle) {
+                idle.addFirst(pooled);
+            }
+        } catch (SQLException e) {
+            Logger.warn("Discarding database connection that could not be reset: " + e.getMessage());
+            closeQuietly(pooled);
+        } finally {
+            permits.release();
+        }
+    }
+
+    /**
+     * Close connections that have been idle longer than the idle timeout.
+     * The least recently used connections sit at the tail of the deque.
+     */
+    private void evictIdle() {
+        long now = System.nanoTime();
+        List<PooledConnection> expired = new ArrayList<>();
+        synchronized (idle) {
+            while (!idle.isEmpty() && now - idle.peekLast().lastUsed > idleTimeoutNanos) {
+                expired.add(idle.pollLast());
+            }
+        }
+        for (PooledConnection pooled : expired) {
+            closeQuietly(pooled);
+            evicted.incrementAndGet();
+        }
+    }
+
+    private static boolean isValid(PooledConnection pooled) {
+        try {
+            return pooled.connection.isValid(VALIDATION_TIMEOUT_SECONDS);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private static void closeQuietly(PooledConnection pooled) {
+        pooled.statements.close();
+        try {
+            pooled.connection.close();
+        } catch (SQLException e) {
+            Logger.error("Error closing database connection: " + e.getMessage());
+        }
+    }
+
+    private void recordWait(long nanos) {
+        waitNanos.addAndGet(nanos);
+        maxWaitNanos.accumulateAndGet(nanos, Math::max);
+    }
+
+    /**
+     * Wrap a pooled connection so that close() returns it to the pool. Only
+     * the first close counts; the wrapper is unusable afterwards.
+     */
+    private Connection borrowed(PooledConnection pooled) {
+        boolean[] returned = { false };
+        return (Connection) Proxy.newProxyInstance(ConnectionPool.class.getClassLoader(),
+                new Class<?>[] { Connection.class }, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "close" -> {
+                            if (!returned[0]) {
+                                returned[0] = true;
+                                release(pooled);
+                            }
+                            return null;
+                        }
+                        case "isClosed" -> {
+                            return returned[0] || pooled.connection.isClosed();
+                        }
+                        default -> {
+                            if (returned[0]) {
+                                throw new SQLException("Connection has been returned to the pool");
+                            }
+                        }
+                    }
+                    if (method.getName().equals("prepareStatement") && args.length <= 2
+                            && (args.length == 1 || args[1] instanceof Integer)) {
+                        int autoGeneratedKeys = args.length == 2 ? (Integer) args[1] : Statement.NO_GENERATED_KEYS;
+                        return pooled.statements.prepare((String) args[0], autoGeneratedKeys);
+                    }
+                    try {
+                        return method.invoke(pooled.connection, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                });
+    }
+
+    /**
+     * Close all idle connections and stop the evictor. Borrowed connections
+     * are closed as they are returned.
+     */
+    public void close() {
+        closed = true;
+        evictor.shutdownNow();
+        synchronized (idle) {
+            idle.forEach(ConnectionPool::closeQuietly);
+            idle.clear();
+        }
+    }
+
+    /**
+     * Get a snapshot of the pool metrics
+     */
+    public synchronized PoolStats stats() {
+        int idleCount;
+        synchronized (idle) {
+            idleCount = idle.size();
+        }
+
+        long now = System.nanoTime();
+        long createdNow = created.get();
+        double elapsedSeconds = (now - lastSampleNanos) / 1_000_000_000.0;
+        double creationsPerSecond = elapsedSeconds > 0 ? (createdNow - lastSampleCreated) / elapsedSeconds : 0;
+        lastSampleNanos = now;
+        lastSampleCreated = createdNow;
+
+        return new PoolStats(maxSize, active.get(), idleCount, permits.getQueueLength(), acquired.get(),
+                timeouts.get(), createdNow, evicted.get(), creationsPerSecond, waitNanos.get(), maxWaitNanos.get(),
+                statementCounters.hits().get(), statementCounters.misses().get(),
+                statementCounters.evictions().get());
+    }
+
+    /**
+     * A physical connection, its statement cache and when it was last returned
+     */
+    private static final class PooledConnection {
+        private final Connection connection;
+        private final StatementCache statements;
+        private volatile long lastUsed = System.nanoTime();
+
+        PooledConnection(Connection connection, StatementCache statements) {
+            this.connection = connection;
+            this.statements = statements;
+        }
+    }
+}
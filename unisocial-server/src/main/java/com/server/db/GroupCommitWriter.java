@@ -0,0 +1,382 @@
+package com.server.db;
+
+import com.server.utils.Logger;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * The only thread that writes to the database.
+ *
+ * SQLite allows one writer at a time, so instead of many handler threads
+ * contending for the lock and paying one fsync per click, writes are queued
+ * here and applied on a single connection in groups: the writer takes
+ * whatever is queued, waits up to the group window for more, and commits
+ * them together once the window ends or the group is full.
+ *
+ * Each write runs inside its own savepoint, so a write that fails is rolled
+ * back without affecting the rest of its group. Callers are completed only
+ * after the group has committed; if the commit fails, the whole group fails.
+ * Writes a write queues on other writers (see {@link #submitAfterCommit})
+ * are only queued once it has committed, and dropped if it is rolled back.
+ */
+public class GroupCommitWriter {
+    private static final long POLL_MILLIS = 100;
+
+    private final String url;
+    private final String archiveUrl;
+    private final SqliteProfile profile;
+    private final int maxGroupSize;
+    private final long windowNanos;
+    private final int statementCacheSize;
+    private final BlockingQueue<Write<?>> queue;
+    private final StatementCache.Counters statementCounters = new StatementCache.Counters();
+    private final Thread thread;
+
+    private final AtomicLong writes = new AtomicLong();
+    private final AtomicLong groups = new AtomicLong();
+    private final AtomicLong rolledBack = new AtomicLong();
+    private final AtomicLong commitFailures = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong commitNanos = new AtomicLong();
+    private final AtomicLong largestGroup = new AtomicLong();
+
+    private Connection connection;
+    private Connection sharedConnection;
+    private StatementCache statements;
+    private volatile boolean running;
+    // Follow-ups of the write being applied; writer thread only
+    private List<FollowUp> followUps;
+
+    /**
+     * @param url JDBC URL
+     * @param profile Pragmas applied to the write connection
+     * @param maxGroupSize Writes committed together at most
+     * @param windowMs How long to wait for more writes before committing
+     * @param queueCapacity Writes that may be waiting at once
+     * @param statementCacheSize Prepared statements cached on the write connection
+     */
+    public GroupCommitWriter(String url, SqliteProfile profile, int maxGroupSize, long windowMs, int queueCapacity,
+            int statementCacheSize) {
+        this("db-writer", url, null, profile, maxGroupSize, windowMs, queueCapacity, statementCacheSize);
+    }
+
+    /**
+     * @param name Name of the writer thread
+     * @param archiveUrl Archive file attached to the write connection (see {@link PostArchiver}), or null
+     */
+    public GroupCommitWriter(String name, String url, String archiveUrl, SqliteProfile profile, int maxGroupSize,
+            long windowMs, int queueCapacity, int statementCacheSize) {
+        this.url = url;
+        this.archiveUrl = archiveUrl;
+        this.profile = profile;
+        this.maxGroupSize = maxGroupSize;
+        this.windowNanos = TimeUnit.MILLISECONDS.toNanos(windowMs);
+        this.queue = new LinkedBlockingQueue<>(queueCapacity);
+        this.thread = new Thread(this::run, name);
+        this.thread.setDaemon(true);
+        this.statementCacheSize = statementCacheSize;
+    }
+
+    /**
+     * Open the write connection and start the writer thread
+     */
+    public void start() throws SQLException {
+        connection = DriverManager.getConnection(url);
+        profile.apply(connection);
+        if (archiveUrl != null) {
+            PostArchiver.attach(connection, archiveUrl, profile);
+        }
+        connection.setAutoCommit(false);
+        statements = new StatementCache(connection, statementCacheSize, statementCounters);
+        sharedConnection = shared(connection, statements);
+
+        running = true;
+        thread.start();
+    }
+
+    /**
+     * Commit everything still queued, then close the write connection
+     */
+    public void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        statements.close();
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            Logger.error("Error closing write connection: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Queue a write. Called on the writer thread itself (a write that makes
+     * further writes), it runs immediately in a nested savepoint.
+     *
+     * @param mutation Performs the write through the write connection
+     * @param failed Result meaning the write failed; it is then rolled back
+     * @return Completed with the mutation's result once it is committed, or
+     *         with {@code failed} if it could not be committed
+     */
+    public <T> CompletableFuture<T> submit(Supplier<T> mutation, T failed) {
+        Write<T> write = new Write<>(mutation, failed);
+        if (isWriterThread()) {
+            write.future.complete(apply(write));
+            return write.future;
+        }
+
+        enqueue(write);
+        return write.future;
+    }
+
+    /**
+     * Queue a write on another writer once the current write has committed.
+     * Must be called from inside a write on this writer's thread; if that
+     * write is rolled back or its group fails, the follow-up is dropped.
+     *
+     * @param target Writer the follow-up runs on
+     * @return Completed with the follow-up's result once committed, or with {@code failed}
+     */
+    public <T> CompletableFuture<T> submitAfterCommit(GroupCommitWriter target, Supplier<T> mutation, T failed) {
+        if (!isWriterThread() || followUps == null) {
+            throw new IllegalStateException("Not inside a write on " + thread.getName());
+        }
+        Write<T> write = new Write<>(mutation, failed);
+        followUps.add(new FollowUp(target, write));
+        return write.future;
+    }
+
+    private void enqueue(Write<?> write) {
+        if (!running || !queue.offer(write)) {
+            rejected.incrementAndGet();
+            Logger.warn("Write rejected: " + (running ? "write queue full" : "writer stopped"));
+            write.fail();
+        }
+    }
+
+    /**
+     * Whether the calling thread is the writer
+     */
+    public boolean isWriterThread() {
+        return Thread.currentThread() == thread;
+    }
+
+    /**
+     * The write connection, for use on the writer thread only. Closing it is
+     * a no-op, and statements prepared through it are cached.
+     */
+    public Connection connection() {
+        return sharedConnection;
+    }
+
+    private void run() {
+        List<Write<?>> group = new ArrayList<>(maxGroupSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                Write<?> first = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                group.add(first);
+
+                long deadline = System.nanoTime() + windowNanos;
+                while (group.size() < maxGroupSize) {
+                    long remaining = deadline - System.nanoTime();
+                    Write<?> next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : queue.poll();
+                    if (next == null) {
+                        break;
+                    }
+                    group.add(next);
+                }
+            } catch (InterruptedException e) {
+                // Only stop() ends the loop, once the queue is drained
+            }
+
+            if (!group.isEmpty()) {
+                commit(group);
+                group.clear();
+            }
+        }
+    }
+
+    /**
+     * Apply and commit a group. If the commit itself fails, every write in
+     * the group fails: writes are not replayed, since they may already have
+     * queued follow-up writes on other shards.
+     */
+    private void commit(List<Write<?>> group) {
+        long start = System.nanoTime();
+        List<Object> results = new ArrayList<>(group.size());
+        try {
+            for (Write<?> write : group) {
+                results.add(apply(write));
+            }
+            connection.commit();
+        } catch (SQLException e) {
+            commitFailures.incrementAndGet();
+            Logger.error("Group commit of " + group.size() + " writes failed: " + e.getMessage());
+            rollbackQuietly();
+            for (Write<?> write : group) {
+                write.followUps.forEach(followUp -> followUp.write().fail());
+                write.fail();
+            }
+            return;
+        }
+
+        commitNanos.addAndGet(System.nanoTime() - start);
+        groups.incrementAndGet();
+        writes.addAndGet(group.size());
+        largestGroup.accumulateAndGet(group.size(), Math::max);
+
+        for (Write<?> write : group) {
+            write.followUps.forEach(followUp -> followUp.target().enqueue(followUp.write()));
+        }
+        for (int i = 0; i < group.size(); i++) {
+            group.get(i).completeWith(results.get(i));
+        }
+    }
+
+    /**
+     * Run one write in its own savepoint. Its follow-ups join the enclosing
+     * write's when it is nested, and are kept on the write otherwise.
+     */
+    private <T> T apply(Write<T> write) {
+        List<FollowUp> outer = followUps;
+        followUps = new ArrayList<>();
+        try {
+            T result = applyInSavepoint(write);
+            if (Objects.equals(result, write.failed)) {
+                followUps.forEach(followUp -> followUp.write().fail());
+            } else if (outer != null) {
+                outer.addAll(followUps);
+            } else {
+                write.followUps = followUps;
+            }
+            return result;
+        } finally {
+            followUps = outer;
+        }
+    }
+
+    private <T> T applyInSavepoint(Write<T> write) {
+        Savepoint savepoint;
+        try {
+            savepoint = connection.setSavepoint();
+        } catch (SQLException e) {
+            Logger.error("Could not start write: " + e.getMessage());
+            return write.failed;
+        }
+
+        T result;
+        try {
+            result = write.mutation.get();
+        } catch (RuntimeException e) {
+            Logger.error("Write failed: " + e.getMessage());
+            result = write.failed;
+        }
+
+        try {
+            if (Objects.equals(result, write.failed)) {
+                rolledBack.incrementAndGet();
+                connection.rollback(savepoint);
+            }
+            connection.releaseSavepoint(savepoint);
+        } catch (SQLException e) {
+            Logger.error("Could not finish write: " + e.getMessage());
+            return write.failed;
+        }
+        return result;
+    }
+
+    private void rollbackQuietly() {
+        try {
+            connection.rollback();
+        } catch (SQLException e) {
+            Logger.error("Error rolling back failed group: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Get a snapshot of the writer metrics
+     */
+    public WriterStats stats() {
+        return new WriterStats(writes.get(), groups.get(), largestGroup.get(), queue.size(), rolledBack.get(),
+                commitFailures.get(), rejected.get(), commitNanos.get(), statementCounters.hits().get(),
+                statementCounters.misses().get());
+    }
+
+    /**
+     * Wrap the write connection so services can use it with
+     * try-with-resources: close() is a no-op and statements are cached
+     */
+    private static Connection shared(Connection connection, StatementCache statements) {
+        return (Connection) Proxy.newProxyInstance(GroupCommitWriter.class.getClassLoader(),
+                new Class<?>[] { Connection.class }, (proxy, method, args) -> {
+                    if (method.getName().equals("close")) {
+                        return null;
+                    }
+                    if (method.getName().equals("prepareStatement") && args.length <= 2
+                            && (args.length == 1 || args[1] instanceof Integer)) {
+                        int autoGeneratedKeys = args.length == 2 ? (Integer) args[1] : Statement.NO_GENERATED_KEYS;
+                        return statements.prepare((String) args[0], autoGeneratedKeys);
+                    }
+                    try {
+                        return method.invoke(connection, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                });
+    }
+
+    /**
+     * A queued write and its caller's future
+     */
+    private static final class Write<T> {
+        private final Supplier<T> mutation;
+        private final T failed;
+        private final CompletableFuture<T> future = new CompletableFuture<>();
+        private List<FollowUp> followUps = List.of();
+
+        Write(Supplier<T> mutation, T failed) {
+            this.mutation = mutation;
+            this.failed = failed;
+        }
+
+        @SuppressWarnings("unchecked")
+        void completeWith(Object result) {
+            future.complete((T) result);
+        }
+
+        void fail() {
+            future.complete(failed);
+        }
+    }
+
+    /**
+     * A write to queue on another writer once the write that made it commits
+     */
+    private record FollowUp(GroupCommitWriter target, Write<?> write) {
+    }
+}
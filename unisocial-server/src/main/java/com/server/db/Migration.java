@@ -0,0 +1,22 @@
+package com.server.db;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * One step of schema evolution
+ *
+ * @param version Schema version after this migration; versions start at 1 and have no gaps
+ * @param description What the migration changes, for the startup log
+ * @param step Applies the change inside the migration's transaction
+ */
+public record Migration(int version, String description, Step step) {
+
+    /**
+     * The change a migration makes
+     */
+    @FunctionalInterface
+    public interface Step {
+        void apply(Connection connection) throws SQLException;
+    }
+}
@@ -0,0 +1,102 @@
+package com.server.db;
+
+import com.server.DatabaseManager;
+import com.server.utils.Logger;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+/**
+ * Brings a database up to the latest schema version.
+ *
+ * The current version is kept in SQLite's PRAGMA user_version. Each pending
+ * migration runs in its own transaction together with the version bump, so
+ * a failed migration leaves the database at the previous version and later
+ * migrations are not attempted.
+ */
+public class MigrationRunner {
+    private final DatabaseManager databaseManager;
+    private final int shard;
+    private final String name;
+    private final List<Migration> migrations;
+
+    /**
+     * @param shard The shard file to migrate; every shard has the same schema
+     * @param migrations Every migration, in version order starting at 1
+     */
+    public MigrationRunner(DatabaseManager databaseManager, int shard, List<Migration> migrations) {
+        for (int i = 0; i < migrations.size(); i++) {
+            if (migrations.get(i).version() != i + 1) {
+                throw new IllegalArgumentException("Migration " + (i + 1) + " is missing or out of order");
+            }
+        }
+        this.databaseManager = databaseManager;
+        this.shard = shard;
+        this.name = shard == ShardRouter.MAIN ? "Database" : "Shard " + shard;
+        this.migrations = migrations;
+    }
+
+    /**
+     * Apply every migration newer than the database's version
+     *
+     * @return true if the database is at the latest version
+     */
+    public boolean migrate() {
+        int latest = migrations.size();
+        int current;
+        try (Connection conn = databaseManager.getConnection(shard)) {
+            current = userVersion(conn);
+        } catch (SQLException e) {
+            Logger.error("Could not read " + name.toLowerCase() + " schema version: " + e.getMessage());
+            return false;
+        }
+
+        if (current > latest) {
+            Logger.error(name + " schema version " + current + " is newer than this server supports (" + latest + ")");
+            return false;
+        }
+        if (current == latest) {
+            Logger.info(name + " schema is up to date at version " + latest);
+            return true;
+        }
+
+        long start = System.nanoTime();
+        for (Migration migration : migrations.subList(current, latest)) {
+            long migrationStart = System.nanoTime();
+            boolean applied = databaseManager.executeTransaction(shard, conn -> {
+                migration.step().apply(conn);
+                try (Statement stmt = conn.createStatement()) {
+                    // Cannot be bound as a parameter; the version is an int
+                    stmt.execute("PRAGMA user_version = " + migration.version());
+                }
+                return true;
+            });
+
+            if (!applied) {
+                Logger.error(name + " migration " + migration.version() + " (" + migration.description()
+                        + ") failed; schema left at version " + (migration.version() - 1));
+                return false;
+            }
+            Logger.info(name + ": applied migration " + migration.version() + " (" + migration.description() + ") in "
+                    + millisSince(migrationStart) + " ms");
+        }
+
+        Logger.info(name + " schema migrated from version " + current + " to " + latest + " in "
+                + millisSince(start) + " ms");
+        return true;
+    }
+
+    private static int userVersion(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("PRAGMA user_version")) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+
+    private static long millisSince(long startNanos) {
+        return (System.nanoTime() - startNanos) / 1_000_000;
+    }
+}
@@ -0,0 +1,210 @@
+package com.server.db;
+
+import com.server.db.BackupProgress.State;
+import com.server.utils.Logger;
+import org.sqlite.SQLiteConnection;
+import org.sqlite.SQLiteErrorCode;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Copies the live database to timestamped snapshot files with SQLite's
+ * online backup API, on a background thread, while the server keeps serving.
+ *
+ * Each database file (every shard, and every archive) is copied a few pages
+ * per step with a pause between steps, so the copy never competes with live
+ * traffic for long. The copying connection holds one read transaction for
+ * the whole copy: under WAL the writers carry on, and the snapshot is the
+ * file as of the start of its copy. Without it, every commit by another
+ * connection would restart the copy from the first page. Files are copied
+ * one after another, so a snapshot of several files is not a single point
+ * in time across them.
+ *
+ * A snapshot is written under a temporary name and only gets its final name
+ * once integrity_check passes.
+ */
+public class OnlineBackup {
+    private static final DateTimeFormatter FILE_TIMESTAMP = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+    private static final String PART_SUFFIX = ".part";
+    private static final int BUSY_RETRIES = 100;
+
+    private final List<String> urls;
+    private final Path directory;
+    private final int pagesPerStep;
+    private final int stepSleepMs;
+    private final AtomicBoolean running = new AtomicBoolean();
+    private volatile BackupProgress progress = BackupProgress.IDLE;
+
+    /**
+     * @param urls JDBC URL of each database file, main first
+     * @param directory Where snapshot files are written
+     * @param pagesPerStep Pages copied per step
+     * @param stepSleepMs Pause between steps
+     */
+    public OnlineBackup(List<String> urls, Path directory, int pagesPerStep, int stepSleepMs) {
+        this.urls = List.copyOf(urls);
+        this.directory = directory;
+        this.pagesPerStep = Math.max(1, pagesPerStep);
+        this.stepSleepMs = Math.max(0, stepSleepMs);
+    }
+
+    /**
+     * Start a backup on a background thread
+     *
+     * @return The main snapshot file name, or null if a backup is already running
+     * @throws IllegalStateException if the database is not a plain file
+     */
+    public String start() {
+        Path mainFile = ShardRouter.databaseFile(urls.get(ShardRouter.MAIN));
+        if (mainFile == null) {
+            throw new IllegalStateException("Only file databases can be backed up");
+        }
+        if (!running.compareAndSet(false, true)) {
+            return null;
+        }
+
+        String mainName = mainFile.getFileName().toString();
+        String timestamp = LocalDateTime.now().format(FILE_TIMESTAMP);
+        String snapshot = snapshotName(mainName, mainName, timestamp);
+        progress = new BackupProgress(State.RUNNING, snapshot, 0, urls.size(), 0, 0, List.of(), null,
+                System.currentTimeMillis(), 0);
+
+        Thread thread = new Thread(() -> run(snapshot, mainName, timestamp), "db-backup");
+        thread.setDaemon(true);
+        thread.start();
+        return snapshot;
+    }
+
+    /**
+     * Get the progress of the running or most recent backup
+     */
+    public BackupProgress getProgress() {
+        return progress;
+    }
+
+    public boolean isRunning() {
+        return running.get();
+    }
+
+    private void run(String snapshot, String mainName, String timestamp) {
+        long started = progress.startedAt();
+        List<String> files = new ArrayList<>();
+        Logger.info("Backup " + snapshot + " started");
+        try {
+            Files.createDirectories(directory);
+            for (int file = 0; file < urls.size(); file++) {
+                String name = ShardRouter.databaseFile(urls.get(file)).getFileName().toString();
+                Path target = directory.resolve(snapshotName(name, mainName, timestamp));
+                copy(file, target);
+                files.add(target.toString());
+                Logger.info("Backup wrote " + target);
+            }
+            progress = new BackupProgress(State.SUCCEEDED, snapshot, urls.size(), urls.size(), 0, 0,
+                    List.copyOf(files), null, started, System.currentTimeMillis());
+            Logger.info("Backup " + snapshot + " finished in " + (System.currentTimeMillis() - started) + " ms");
+
+        } catch (Exception e) {
+            BackupProgress failed = progress;
+            progress = new BackupProgress(State.FAILED, snapshot, failed.file(), failed.fileCount(),
+                    failed.remainingPages(), failed.pageCount(), List.copyOf(files), e.getMessage(), started,
+                    System.currentTimeMillis());
+            Logger.error("Backup " + snapshot + " failed: " + e.getMessage());
+        } finally {
+            running.set(false);
+        }
+    }
+
+    /**
+     * Copy one database file to a verified snapshot file
+     */
+    private void copy(int file, Path target) throws SQLException, IOException {
+        Path part = target.resolveSibling(target.getFileName() + PART_SUFFIX);
+        Files.deleteIfExists(part);
+
+        try (Connection conn = DriverManager.getConnection(urls.get(file))) {
+            // Pin one read snapshot so commits made during the copy do not restart it
+            conn.setAutoCommit(false);
+            try (Statement stmt = conn.createStatement();
+                 ResultSet rs = stmt.executeQuery("SELECT count(*) FROM sqlite_schema")) {
+                rs.next();
+            }
+
+            int rc = ((SQLiteConnection) conn).getDatabase().backup("main", part.toAbsolutePath().toString(),
+                    (remaining, pageCount) -> step(file, remaining, pageCount), stepSleepMs, BUSY_RETRIES,
+                    pagesPerStep);
+            conn.rollback();
+            if (rc != SQLiteErrorCode.SQLITE_OK.code) {
+                throw new SQLException("Copying " + urls.get(file) + " failed with SQLite error " + rc);
+            }
+        }
+
+        try {
+            verify(part);
+            Files.move(part, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (SQLException | IOException e) {
+            Files.deleteIfExists(part);
+            throw e;
+        }
+    }
+
+    /**
+     * Record progress after a step, then give way to live traffic
+     */
+    private void step(int file, int remaining, int pageCount) {
+        BackupProgress current = progress;
+        progress = new BackupProgress(State.RUNNING, current.snapshot(), file, current.fileCount(), remaining,
+                pageCount, current.files(), null, current.startedAt(), 0);
+
+        if (remaining > 0 && stepSleepMs > 0) {
+            try {
+                Thread.sleep(stepSleepMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Leave the snapshot as a single file in rollback-journal mode and check it
+     */
+    private static void verify(Path file) throws SQLException {
+        try (Connection conn = DriverManager.getConnection("jdbc:sqlite:" + file.toAbsolutePath());
+             Statement stmt = conn.createStatement()) {
+            stmt.execute("PRAGMA journal_mode = DELETE");
+
+            List<String> problems = new ArrayList<>();
+            try (ResultSet rs = stmt.executeQuery("PRAGMA integrity_check")) {
+                while (rs.next()) {
+                    problems.add(rs.getString(1));
+                }
+            }
+            if (!problems.equals(List.of("ok"))) {
+                throw new SQLException("Snapshot " + file.getFileName() + " failed integrity_check: " + problems);
+            }
+        }
+    }
+
+    /**
+     * Name the snapshot of a database file after the main file and the time:
+     * with unisocial.db as the main file, unisocial.shard1.db becomes
+     * unisocial-20261016-201500.shard1.db
+     */
+    private static String snapshotName(String fileName, String mainName, String timestamp) {
+        int dot = mainName.lastIndexOf('.');
+        String stem = dot > 0 ? mainName.substring(0, dot) : mainName;
+        return stem + "-" + timestamp + fileName.substring(stem.length());
+    }
+}
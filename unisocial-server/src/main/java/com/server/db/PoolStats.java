@@ -0,0 +1,54 @@
+package com.server.db;
+
+/**
+ * Snapshot of connection pool metrics
+ *
+ * @param maxSize Connections that may be open at once
+ * @param active Connections currently borrowed
+ * @param idle Open connections waiting to be borrowed
+ * @param waiting Callers currently waiting for a connection
+ * @param acquired Connections handed out since startup
+ * @param timeouts Callers that gave up waiting
+ * @param created Physical connections opened since startup
+ * @param evicted Idle connections closed by the evictor
+ * @param creationsPerSecond Connections opened per second since the previous snapshot
+ * @param totalWaitNanos Time spent waiting for a connection
+ * @param maxWaitNanos Longest single wait
+ * @param statementHits Prepared statements served from a connection's cache
+ * @param statementMisses Prepared statements that had to be parsed
+ * @param statementEvictions Cached statements closed to make room
+ */
+public record PoolStats(int maxSize, int active, int idle, int waiting, long acquired, long timeouts,
+                        long created, long evicted, double creationsPerSecond, long totalWaitNanos,
+                        long maxWaitNanos, long statementHits, long statementMisses,
+                        long statementEvictions) {
+
+    /**
+     * Average time to get a connection, in microseconds
+     */
+    public double getAverageWaitMicros() {
+        return acquired == 0 ? 0 : totalWaitNanos / 1000.0 / acquired;
+    }
+
+    /**
+     * Longest time to get a connection, in milliseconds
+     */
+    public double getMaxWaitMillis() {
+        return maxWaitNanos / 1_000_000.0;
+    }
+
+    /**
+     * Fraction of prepared statements served from the cache
+     */
+    public double getStatementHitRate() {
+        long lookups = statementHits + statementMisses;
+        return lookups == 0 ? 0 : (double) statementHits / lookups;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d/%d active, %d idle, %d acquired, %d created, %d timeouts, avg wait %.1f us, "
+                + "statement cache hit rate %.2f", active, maxSize, idle, acquired, created, timeouts,
+                getAverageWaitMicros(), getStatementHitRate());
+    }
+}
@@ -0,0 +1,216 @@
+package com.server.db;
+
+import com.server.DatabaseManager;
+import com.server.utils.Logger;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Moves old posts, with their likes and bookmarks, out of the shard files
+ * into archive files, so the tables and indexes on the feed path only hold
+ * recent posts.
+ *
+ * Each shard has an archive file next to it (see
+ * {@link ShardRouter#archiveUrl}), attached to every connection of the shard
+ * as the {@value #SCHEMA} schema, so reads can fall back to it in the same
+ * query. Archived posts leave the home timelines; profiles, bookmarks and
+ * direct lookups still find them.
+ *
+ * Posts are moved a batch at a time, each step a small transaction of its
+ * own so live writes are never held up for long. A transaction over two
+ * files is not atomic across a crash in WAL mode, so rows are first copied
+ * to the archive and committed, and only then replaced from the live rows
+ * and deleted. A crash in between leaves a post in both places, and the next
+ * run finishes the move.
+ */
+public class PostArchiver {
+    public static final String SCHEMA = "archive";
+
+    private static final String COPY_POSTS = """
+        INSERT OR REPLACE INTO archive.posts (id, user_id, content, image_url, created_at, updated_at, like_count)
+        SELECT id, user_id, content, image_url, created_at, updated_at, like_count
+        FROM main.posts WHERE id IN (SELECT value FROM json_each(?))
+    """;
+    private static final String COPY_ROWS = """
+        INSERT INTO archive.%1$s (user_id, post_id, created_at)
+        SELECT user_id, post_id, created_at
+        FROM main.%1$s WHERE post_id IN (SELECT value FROM json_each(?))
+        ON CONFLICT (user_id, post_id) DO NOTHING
+    """;
+
+    private final DatabaseManager databaseManager;
+    private final long maxAgeMs;
+    private final int batchSize;
+
+    /**
+     * @param maxAgeMs Posts created longer ago than this are archived
+     * @param batchSize Posts moved per batch
+     */
+    public PostArchiver(DatabaseManager databaseManager, long maxAgeMs, int batchSize) {
+        this.databaseManager = databaseManager;
+        this.maxAgeMs = maxAgeMs;
+        this.batchSize = Math.max(1, batchSize);
+    }
+
+    /**
+     * Attach a shard's archive file to a newly opened connection, creating
+     * the file if needed. Must run outside a transaction.
+     */
+    static void attach(Connection connection, String archiveUrl, SqliteProfile profile) throws SQLException {
+        try (PreparedStatement stmt = connection.prepareStatement("ATTACH DATABASE ? AS " + SCHEMA)) {
+            stmt.setString(1, ShardRouter.databaseFile(archiveUrl).toString());
+            stmt.execute();
+        }
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute("PRAGMA " + SCHEMA + ".journal_mode = " + profile.journalMode());
+            stmt.execute("PRAGMA " + SCHEMA + ".synchronous = " + profile.synchronous());
+        }
+    }
+
+    /**
+     * Create the archive tables of a shard. Like and bookmark IDs are not
+     * kept, so rows added to the archive directly never collide with moved ones.
+     */
+    public static void createTables(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("""
+            CREATE TABLE IF NOT EXISTS archive.posts (
+                id INTEGER PRIMARY KEY,
+                user_id INTEGER NOT NULL,
+                content TEXT NOT NULL,
+                image_url TEXT,
+                created_at INTEGER NOT NULL,
+                updated_at INTEGER NOT NULL,
+                like_count INTEGER NOT NULL DEFAULT 0
+            )
+        """);
+            stmt.execute("CREATE INDEX IF NOT EXISTS archive.idx_posts_user_recent ON posts (user_id, created_at DESC, id DESC)");
+
+            for (String table : new String[] { "likes", "bookmarks" }) {
+                stmt.execute("""
+                CREATE TABLE IF NOT EXISTS archive.%s (
+                    id INTEGER PRIMARY KEY,
+                    user_id INTEGER NOT NULL,
+                    post_id INTEGER NOT NULL,
+                    created_at INTEGER NOT NULL,
+                    UNIQUE(user_id, post_id)
+                )
+            """.formatted(table));
+            }
+            stmt.execute("CREATE INDEX IF NOT EXISTS archive.idx_likes_post_user ON likes (post_id, user_id)");
+            stmt.execute("CREATE INDEX IF NOT EXISTS archive.idx_bookmarks_user_recent ON bookmarks (user_id, created_at DESC)");
+        }
+    }
+
+    /**
+     * Archive every post older than the maximum age
+     *
+     * @return Number of posts archived, or -1 on error
+     */
+    public int archive() {
+        long cutoff = System.currentTimeMillis() - maxAgeMs;
+        int archived = 0;
+        for (int shard : databaseManager.getRouter().allShards()) {
+            try {
+                List<Integer> batch;
+                do {
+                    batch = oldPosts(shard, cutoff);
+                    if (!batch.isEmpty() && !archiveBatch(shard, batch)) {
+                        return -1;
+                    }
+                    archived += batch.size();
+                } while (batch.size() == batchSize);
+
+            } catch (SQLException e) {
+                Logger.error("Error finding posts to archive on shard " + shard + ": " + e.getMessage());
+                return -1;
+            }
+        }
+        return archived;
+    }
+
+    private List<Integer> oldPosts(int shard, long cutoff) throws SQLException {
+        List<Integer> postIds = new ArrayList<>();
+        String sql = "SELECT id FROM posts WHERE created_at < ? ORDER BY created_at LIMIT ?";
+        try (Connection conn = databaseManager.getConnection(shard);
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setLong(1, cutoff);
+            stmt.setInt(2, batchSize);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    postIds.add(rs.getInt(1));
+                }
+            }
+        }
+        return postIds;
+    }
+
+    /**
+     * Move a batch of posts on a shard to its archive, with their likes and
+     * with their bookmarks on every shard
+     *
+     * @return true if successful
+     */
+    private boolean archiveBatch(int shard, List<Integer> postIds) {
+        String ids = DatabaseManager.jsonArray(postIds);
+
+        boolean copied = databaseManager.executeTransaction(shard, conn -> {
+            update(conn, COPY_POSTS, ids);
+            update(conn, COPY_ROWS.formatted("likes"), ids);
+            return true;
+        });
+        if (!copied) {
+            return false;
+        }
+
+        // Bookmarks are on the bookmarking users' shards
+        for (int bookmarkShard : databaseManager.getRouter().allShards()) {
+            boolean moved = databaseManager.executeTransaction(bookmarkShard, conn -> {
+                update(conn, COPY_ROWS.formatted("bookmarks"), ids);
+                return true;
+            }) && databaseManager.executeTransaction(bookmarkShard, conn -> {
+                replaceRows(conn, "bookmarks", ids);
+                update(conn, "DELETE FROM main.timeline WHERE post_id IN (SELECT value FROM json_each(?))", ids);
+                return true;
+            });
+            if (!moved) {
+                return false;
+            }
+        }
+
+        // Picks up edits and likes made since the copy
+        boolean deleted = databaseManager.executeTransaction(shard, conn -> {
+            update(conn, COPY_POSTS, ids);
+            replaceRows(conn, "likes", ids);
+            update(conn, "DELETE FROM main.posts WHERE id IN (SELECT value FROM json_each(?))", ids);
+            return true;
+        });
+        if (deleted) {
+            Logger.info("Archived " + postIds.size() + " posts of shard " + shard);
+        }
+        return deleted;
+    }
+
+    /**
+     * Replace the archived likes or bookmarks of posts with the live ones,
+     * then delete the live ones
+     */
+    private static void replaceRows(Connection conn, String table, String ids) throws SQLException {
+        update(conn, "DELETE FROM archive." + table + " WHERE post_id IN (SELECT value FROM json_each(?))", ids);
+        update(conn, COPY_ROWS.formatted(table), ids);
+        update(conn, "DELETE FROM main." + table + " WHERE post_id IN (SELECT value FROM json_each(?))", ids);
+    }
+
+    private static void update(Connection conn, String sql, String ids) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setString(1, ids);
+            stmt.executeUpdate();
+        }
+    }
+}
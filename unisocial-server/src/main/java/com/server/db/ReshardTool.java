@@ -0,0 +1,413 @@
+package com.server.db;
+
+import com.server.DatabaseManager;
+import com.server.ServerConfig;
+import com.server.utils.Logger;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Changes the number of shards a database is split over.
+ *
+ * Runs offline: stop the server and back up the database files first. The
+ * new shards are built in staging files next to the database, with every
+ * post moved to its author's new shard together with its likes and every
+ * bookmark to its user's new shard. Posts whose ID does not map to their new
+ * shard get a new ID. The staged posts, likes and bookmarks of shard 0 then
+ * replace those in the main database, the staging files replace the other
+ * shard files, and the timelines and counters are rebuilt. Users and follows
+ * stay in the main database throughout. Archived posts are first moved back
+ * into their shards; the archiver archives them again after the next start.
+ *
+ * Usage: java -m com.server/com.server.db.ReshardTool [database-url] [shards]
+ */
+public class ReshardTool {
+    private static final String POST_COLUMNS = "id, user_id, content, image_url, created_at, updated_at, like_count";
+    private static final String[] FILE_SUFFIXES = { "", "-wal", "-shm", "-journal" };
+
+    public static void main(String[] args) throws Exception {
+        if (args.length != 2) {
+            System.err.println("Usage: java -m com.server/com.server.db.ReshardTool [database-url] [shards]");
+            System.exit(2);
+        }
+        if (!reshard(args[0], Integer.parseInt(args[1]))) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Split the database at {@code mainUrl} over {@code shardCount} shards
+     *
+     * @return true if successful
+     */
+    public static boolean reshard(String mainUrl, int shardCount) throws SQLException, IOException {
+        ShardRouter target = new ShardRouter(shardCount);
+        Path mainFile = ShardRouter.databaseFile(mainUrl);
+        if (mainFile == null || !Files.exists(mainFile)) {
+            Logger.error("No database file at " + mainUrl);
+            return false;
+        }
+
+        Integer current;
+        try (Connection conn = DriverManager.getConnection(mainUrl)) {
+            current = readShardCount(conn);
+        }
+        if (current == null) {
+            Logger.error("The database has no shard settings; start the server on it once to upgrade it");
+            return false;
+        }
+        if (current == shardCount) {
+            Logger.info("The database already has " + shardCount + " shards");
+            return true;
+        }
+
+        // Brings every shard to the latest schema and checks the current layout
+        if (!withDatabase(mainUrl, current, databaseManager -> true)) {
+            return false;
+        }
+        Logger.info("Resharding " + mainUrl + " from " + current + " to " + shardCount + " shards");
+        for (int shard = 0; shard < current; shard++) {
+            restoreArchive(ShardRouter.shardUrl(mainUrl, shard));
+        }
+
+        String stageUrl = "jdbc:sqlite:" + mainFile.resolveSibling(stageName(mainFile.getFileName().toString()));
+        for (int shard = 0; shard < shardCount; shard++) {
+            deleteDatabase(ShardRouter.shardUrl(stageUrl, shard));
+        }
+        if (!withDatabase(stageUrl, shardCount, databaseManager -> true)) {
+            return false;
+        }
+
+        long lastPostId = 0;
+        for (int shard = 0; shard < current; shard++) {
+            try (Connection conn = DriverManager.getConnection(ShardRouter.shardUrl(mainUrl, shard))) {
+                lastPostId = Math.max(lastPostId, lastPostId(conn));
+            }
+        }
+
+        Map<Integer, Long> renumbered = new LinkedHashMap<>();
+        long highestId = lastPostId;
+        for (int shard = 0; shard < shardCount; shard++) {
+            try (Connection conn = DriverManager.getConnection(ShardRouter.shardUrl(stageUrl, shard))) {
+                for (int source = 0; source < current; source++) {
+                    copyShard(conn, ShardRouter.shardUrl(mainUrl, source), shardCount, shard);
+                }
+                highestId = Math.max(highestId, renumberPosts(conn, target, shard, lastPostId, renumbered));
+            }
+        }
+        Logger.info("Moved posts to " + shardCount + " shards; " + renumbered.size() + " got new IDs");
+
+        for (int shard = 0; shard < shardCount; shard++) {
+            try (Connection conn = DriverManager.getConnection(ShardRouter.shardUrl(stageUrl, shard))) {
+                remapBookmarks(conn, renumbered);
+                setPostSequence(conn, highestId);
+                try (Statement stmt = conn.createStatement()) {
+                    // Leaves a single file to move into place
+                    stmt.execute("PRAGMA journal_mode = DELETE");
+                }
+            }
+        }
+
+        replaceMainContent(mainUrl, ShardRouter.shardUrl(stageUrl, ShardRouter.MAIN), highestId, shardCount);
+        for (int shard = 1; shard < Math.max(current, shardCount); shard++) {
+            deleteDatabase(ShardRouter.shardUrl(mainUrl, shard));
+        }
+        for (int shard = 1; shard < shardCount; shard++) {
+            Files.move(ShardRouter.databaseFile(ShardRouter.shardUrl(stageUrl, shard)),
+                    ShardRouter.databaseFile(ShardRouter.shardUrl(mainUrl, shard)), StandardCopyOption.REPLACE_EXISTING);
+        }
+        deleteDatabase(stageUrl);
+
+        boolean rebuilt = withDatabase(mainUrl, shardCount,
+                databaseManager -> databaseManager.rebuildTimeline() && databaseManager.repairCounters() >= 0);
+        if (rebuilt) {
+            Logger.info("Database now has " + shardCount + " shards");
+        }
+        return rebuilt;
+    }
+
+    /**
+     * Open the database with a given shard count, run a step and close it
+     */
+    private static boolean withDatabase(String url, int shardCount, Step step) {
+        ServerConfig config = new ServerConfig();
+        config.setDatabaseUrl(url);
+        config.setShardCount(shardCount);
+        config.setCounterRepairIntervalMs(0);
+
+        DatabaseManager databaseManager = new DatabaseManager(config);
+        try {
+            return databaseManager.initialize() && step.run(databaseManager);
+        } finally {
+            databaseManager.close();
+        }
+    }
+
+    @FunctionalInterface
+    private interface Step {
+        boolean run(DatabaseManager databaseManager);
+    }
+
+    /**
+     * Move a shard's archived posts, likes and bookmarks back into the shard
+     * and delete its archive file
+     */
+    private static void restoreArchive(String shardUrl) throws SQLException, IOException {
+        String archiveUrl = ShardRouter.archiveUrl(shardUrl);
+        if (!Files.exists(ShardRouter.databaseFile(archiveUrl))) {
+            return;
+        }
+
+        int restored;
+        try (Connection conn = DriverManager.getConnection(shardUrl)) {
+            try (PreparedStatement attach = conn.prepareStatement("ATTACH DATABASE ? AS " + PostArchiver.SCHEMA)) {
+                attach.setString(1, ShardRouter.databaseFile(archiveUrl).toString());
+                attach.execute();
+            }
+
+            conn.setAutoCommit(false);
+            try (Statement stmt = conn.createStatement()) {
+                // Live rows win over archived copies of the same post
+                restored = stmt.executeUpdate("INSERT OR IGNORE INTO main.posts (" + POST_COLUMNS + ") "
+                        + "SELECT " + POST_COLUMNS + " FROM archive.posts");
+                for (String table : new String[] { "likes", "bookmarks" }) {
+                    stmt.executeUpdate("INSERT OR IGNORE INTO main." + table + " (user_id, post_id, created_at) "
+                            + "SELECT user_id, post_id, created_at FROM archive." + table);
+                }
+            }
+            conn.commit();
+            conn.setAutoCommit(true);
+
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute("DETACH DATABASE " + PostArchiver.SCHEMA);
+            }
+        }
+        deleteDatabase(archiveUrl);
+        Logger.info("Restored " + restored + " archived posts into " + shardUrl);
+    }
+
+    /**
+     * Copy the posts, likes and bookmarks of a source shard that belong on a
+     * staging shard. Likes go with their post, bookmarks with their user.
+     */
+    private static void copyShard(Connection conn, String sourceUrl, int shardCount, int shard) throws SQLException {
+        try (PreparedStatement attach = conn.prepareStatement("ATTACH DATABASE ? AS source")) {
+            attach.setString(1, ShardRouter.databaseFile(sourceUrl).toString());
+            attach.execute();
+        }
+
+        try {
+            conn.setAutoCommit(false);
+            String[] copies = {
+                "INSERT INTO posts (" + POST_COLUMNS + ") SELECT " + POST_COLUMNS
+                        + " FROM source.posts WHERE user_id % ? = ?",
+                """
+                    INSERT INTO likes (user_id, post_id, created_at)
+                    SELECT l.user_id, l.post_id, l.created_at
+                    FROM source.likes l JOIN source.posts p ON p.id = l.post_id
+                    WHERE p.user_id % ? = ?
+                """,
+                """
+                    INSERT INTO bookmarks (user_id, post_id, created_at)
+                    SELECT user_id, post_id, created_at FROM source.bookmarks
+                    WHERE user_id % ? = ?
+                """
+            };
+            for (String sql : copies) {
+                try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                    stmt.setInt(1, shardCount);
+                    stmt.setInt(2, shard);
+                    stmt.executeUpdate();
+                }
+            }
+            conn.commit();
+        } catch (SQLException e) {
+            conn.rollback();
+            throw e;
+        } finally {
+            conn.setAutoCommit(true);
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute("DETACH DATABASE source");
+            }
+        }
+    }
+
+    /**
+     * Give the posts on a staging shard whose ID maps to another shard a new
+     * ID above every ID used so far, and move their likes along
+     *
+     * @param renumbered Collects each old ID and its new one
+     * @return The highest new ID, or {@code lastPostId} if none were needed
+     */
+    private static long renumberPosts(Connection conn, ShardRouter target, int shard, long lastPostId,
+            Map<Integer, Long> renumbered) throws SQLException {
+        List<Integer> misplaced = new ArrayList<>();
+        try (PreparedStatement stmt = conn.prepareStatement("SELECT id FROM posts WHERE id % ? != ? ORDER BY id")) {
+            stmt.setInt(1, target.shardCount());
+            stmt.setInt(2, shard);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    misplaced.add(rs.getInt(1));
+                }
+            }
+        }
+
+        long last = lastPostId;
+        conn.setAutoCommit(false);
+        try (PreparedStatement post = conn.prepareStatement("UPDATE posts SET id = ? WHERE id = ?");
+             PreparedStatement likes = conn.prepareStatement("UPDATE likes SET post_id = ? WHERE post_id = ?")) {
+            for (int oldId : misplaced) {
+                last = target.nextId(last, shard);
+                for (PreparedStatement stmt : new PreparedStatement[] { post, likes }) {
+                    stmt.setLong(1, last);
+                    stmt.setInt(2, oldId);
+                    stmt.executeUpdate();
+                }
+                renumbered.put(oldId, last);
+            }
+            conn.commit();
+        } catch (SQLException e) {
+            conn.rollback();
+            throw e;
+        } finally {
+            conn.setAutoCommit(true);
+        }
+        return last;
+    }
+
+    /**
+     * Point bookmarks of renumbered posts at their new IDs
+     */
+    private static void remapBookmarks(Connection conn, Map<Integer, Long> renumbered) throws SQLException {
+        conn.setAutoCommit(false);
+        try (PreparedStatement stmt = conn.prepareStatement("UPDATE bookmarks SET post_id = ? WHERE post_id = ?")) {
+            for (Map.Entry<Integer, Long> entry : renumbered.entrySet()) {
+                stmt.setLong(1, entry.getValue());
+                stmt.setInt(2, entry.getKey());
+                stmt.addBatch();
+            }
+            stmt.executeBatch();
+            conn.commit();
+        } catch (SQLException e) {
+            conn.rollback();
+            throw e;
+        } finally {
+            conn.setAutoCommit(true);
+        }
+    }
+
+    /**
+     * Replace the posts, likes, bookmarks and timeline of the main database
+     * with staging shard 0 and record the new shard count, in one transaction
+     */
+    private static void replaceMainContent(String mainUrl, String stageUrl, long highestId, int shardCount)
+            throws SQLException {
+        try (Connection conn = DriverManager.getConnection(mainUrl)) {
+            try (PreparedStatement attach = conn.prepareStatement("ATTACH DATABASE ? AS stage")) {
+                attach.setString(1, ShardRouter.databaseFile(stageUrl).toString());
+                attach.execute();
+            }
+
+            conn.setAutoCommit(false);
+            try (Statement stmt = conn.createStatement()) {
+                for (String table : new String[] { "posts", "likes", "bookmarks", "timeline" }) {
+                    stmt.execute("DELETE FROM main." + table);
+                }
+                stmt.execute("INSERT INTO main.posts (" + POST_COLUMNS + ") SELECT " + POST_COLUMNS + " FROM stage.posts");
+                stmt.execute("""
+                    INSERT INTO main.likes (id, user_id, post_id, created_at)
+                    SELECT id, user_id, post_id, created_at FROM stage.likes
+                """);
+                stmt.execute("""
+                    INSERT INTO main.bookmarks (id, user_id, post_id, created_at)
+                    SELECT id, user_id, post_id, created_at FROM stage.bookmarks
+                """);
+                setPostSequence(conn, highestId);
+                stmt.execute("UPDATE main.settings SET value = " + shardCount + " WHERE name = 'shard_count'");
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+
+            conn.setAutoCommit(true);
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute("DETACH DATABASE stage");
+            }
+        }
+    }
+
+    /**
+     * Get the highest post ID ever used on a shard
+     */
+    private static long lastPostId(Connection conn) throws SQLException {
+        String sql = """
+            SELECT max(coalesce((SELECT seq FROM sqlite_sequence WHERE name = 'posts'), 0),
+                       coalesce((SELECT max(id) FROM posts), 0))
+        """;
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+            return rs.next() ? rs.getLong(1) : 0;
+        }
+    }
+
+    /**
+     * Make sure the posts sequence is at least {@code highestId}, so no
+     * shard hands out an ID that was used before
+     */
+    private static void setPostSequence(Connection conn, long highestId) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(
+                "UPDATE main.sqlite_sequence SET seq = max(seq, ?) WHERE name = 'posts'")) {
+            stmt.setLong(1, highestId);
+            if (stmt.executeUpdate() == 0 && highestId > 0) {
+                try (PreparedStatement insert = conn.prepareStatement(
+                        "INSERT INTO main.sqlite_sequence (name, seq) VALUES ('posts', ?)")) {
+                    insert.setLong(1, highestId);
+                    insert.executeUpdate();
+                }
+            }
+        }
+    }
+
+    private static Integer readShardCount(Connection conn) {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT value FROM settings WHERE name = 'shard_count'")) {
+            return rs.next() ? rs.getInt(1) : null;
+        } catch (SQLException e) {
+            return null;
+        }
+    }
+
+    /**
+     * unisocial.db becomes unisocial.reshard.db
+     */
+    private static String stageName(String fileName) {
+        int dot = fileName.lastIndexOf('.');
+        return dot > 0
+                ? fileName.substring(0, dot) + ".reshard" + fileName.substring(dot)
+                : fileName + ".reshard";
+    }
+
+    /**
+     * Delete a database file with its journal files
+     */
+    private static void deleteDatabase(String url) throws IOException {
+        Path file = ShardRouter.databaseFile(url);
+        for (String suffix : FILE_SUFFIXES) {
+            Files.deleteIfExists(file.resolveSibling(file.getFileName() + suffix));
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package com.server.db;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Maps users and posts to database shards.
+ *
+ * Shard 0 is the main database file, which also holds the users and the
+ * follow graph. A user's posts, bookmarks and home timeline live on shard
+ * {@code userId mod shardCount}, and a post's ID is allocated so that it
+ * maps to its author's shard, which lets a post be found from its ID alone.
+ */
+public class ShardRouter {
+    public static final int MAIN = 0;
+
+    private static final String SQLITE_PREFIX = "jdbc:sqlite:";
+
+    private final int shardCount;
+
+    /**
+     * @param shardCount Number of shard files, at least 1
+     */
+    public ShardRouter(int shardCount) {
+        if (shardCount < 1) {
+            throw new IllegalArgumentException("Shard count must be at least 1: " + shardCount);
+        }
+        this.shardCount = shardCount;
+    }
+
+    public int shardCount() {
+        return shardCount;
+    }
+
+    /**
+     * Get the shard holding a user's posts, bookmarks and timeline
+     */
+    public int shardForUser(int userId) {
+        return Math.floorMod(userId, shardCount);
+    }
+
+    /**
+     * Get the shard holding a post and its likes
+     */
+    public int shardForPost(int postId) {
+        return Math.floorMod(postId, shardCount);
+    }
+
+    /**
+     * Get every shard, main first
+     */
+    public List<Integer> allShards() {
+        List<Integer> shards = new ArrayList<>(shardCount);
+        for (int shard = 0; shard < shardCount; shard++) {
+            shards.add(shard);
+        }
+        return shards;
+    }
+
+    /**
+     * Group user or post IDs by the shard they live on
+     *
+     * @return IDs per shard, in shard order, each list in the order given
+     */
+    public Map<Integer, List<Integer>> groupByShard(Collection<Integer> ids) {
+        Map<Integer, List<Integer>> byShard = new TreeMap<>();
+        for (int id : ids) {
+            byShard.computeIfAbsent(Math.floorMod(id, shardCount), shard -> new ArrayList<>()).add(id);
+        }
+        return byShard;
+    }
+
+    /**
+     * Get the smallest post ID above {@code lastId} that maps to a shard
+     *
+     * @param lastId Highest ID ever used on the shard
+     */
+    public long nextId(long lastId, int shard) {
+        long next = lastId + 1;
+        return next + Math.floorMod(shard - next, (long) shardCount);
+    }
+
+    /**
+     * Get the JDBC URL of a shard. Shard 0 is the main database; the others
+     * are files next to it, e.g. unisocial.shard2.db for unisocial.db.
+     */
+    public static String shardUrl(String mainUrl, int shard) {
+        if (shard == MAIN) {
+            return mainUrl;
+        }
+        return withSuffix(mainUrl, ".shard" + shard);
+    }
+
+    /**
+     * Get the JDBC URL of the archive file of a shard, e.g.
+     * unisocial.shard2.archive.db for unisocial.shard2.db
+     */
+    public static String archiveUrl(String shardUrl) {
+        return withSuffix(shardUrl, ".archive");
+    }
+
+    /**
+     * Insert a suffix before the file extension of a URL or path
+     */
+    private static String withSuffix(String url, String suffix) {
+        int query = url.indexOf('?');
+        String path = query >= 0 ? url.substring(0, query) : url;
+        String parameters = query >= 0 ? url.substring(query) : "";
+
+        int slash = Math.max(path.lastIndexOf('/'), path.lastIndexOf('\\'));
+        int dot = path.lastIndexOf('.');
+        if (dot > slash) {
+            return path.substring(0, dot) + suffix + path.substring(dot) + parameters;
+        }
+        return path + suffix + parameters;
+    }
+
+    /**
+     * Get the file behind a jdbc:sqlite: URL, or null if it is not a plain file path
+     */
+    public static Path databaseFile(String url) {
+        String path = url.startsWith(SQLITE_PREFIX) ? url.substring(SQLITE_PREFIX.length()) : url;
+        int query = path.indexOf('?');
+        if (query >= 0) {
+            path = path.substring(0, query);
+        }
+        if (path.isEmpty() || path.startsWith(":memory:") || path.startsWith("file:")) {
+            return null;
+        }
+        return Path.of(path);
+    }
+}
@@ -0,0 +1,186 @@
+package com.server.db;
+
+import com.server.DatabaseManager;
+import com.server.ServerConfig;
+import com.server.models.Post;
+import com.server.services.PostService;
+import com.server.services.TimelineService;
+import com.server.utils.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Compares read/write concurrency under the legacy SQLite settings and the
+ * configured profile.
+ *
+ * Writers toggle likes and readers load feeds through the real services,
+ * all at once, against a fresh database per profile. Failed operations are
+ * mostly writes that gave up on SQLITE_BUSY.
+ *
+ * Usage: java -m com.server/com.server.db.SqliteBenchmark [seconds] [readers] [writers] [shards]
+ */
+public class SqliteBenchmark {
+    private static final int USERS = 50;
+    private static final int POSTS = 500;
+    private static final int FOLLOWS_PER_USER = 10;
+
+    public static void main(String[] args) throws Exception {
+        int seconds = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+        int readers = args.length > 1 ? Integer.parseInt(args[1]) : 8;
+        int writers = args.length > 2 ? Integer.parseInt(args[2]) : 4;
+        int shards = args.length > 3 ? Integer.parseInt(args[3]) : 1;
+
+        Logger.setLevel(Logger.Level.WARN);
+
+        ServerConfig tuned = new ServerConfig();
+        Result before = run(SqliteProfile.LEGACY, seconds, readers, writers, shards);
+        Result after = run(DatabaseManager.sqliteProfile(tuned), seconds, readers, writers, shards);
+
+        System.out.printf("%d readers, %d writers, %d shards, %d s per run%n%n", readers, writers, shards, seconds);
+        System.out.printf("%-10s %12s %12s %10s%n", "profile", "reads/s", "writes/s", "failed");
+        before.print("legacy");
+        after.print("tuned");
+    }
+
+    private static Result run(SqliteProfile profile, int seconds, int readers, int writers, int shards)
+            throws Exception {
+        Path directory = Files.createTempDirectory("unisocial-bench");
+        File database = directory.resolve("bench.db").toFile();
+
+        ServerConfig config = new ServerConfig();
+        config.setDatabaseUrl("jdbc:sqlite:" + database.getAbsolutePath());
+        config.setDbPoolSize(readers + writers);
+        config.setSqliteJournalMode(profile.journalMode());
+        config.setSqliteSynchronous(profile.synchronous());
+        config.setSqliteMmapSize(profile.mmapSize());
+        config.setSqliteCacheSizeKb(profile.cacheSizeKb());
+        config.setSqliteTempStore(profile.tempStore());
+        config.setSqliteBusyTimeoutMs(profile.busyTimeoutMs());
+        config.setShardCount(shards);
+
+        DatabaseManager databaseManager = new DatabaseManager(config);
+        try {
+            if (!databaseManager.initialize()) {
+                throw new IllegalStateException("Could not initialize " + database);
+            }
+            PostService postService = new PostService(databaseManager,
+                    new TimelineService(databaseManager, config.getFanOutThreshold()));
+            List<Integer> postIds = seed(databaseManager, postService);
+
+            Result result = new Result();
+            long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+
+            List<Thread> threads = new ArrayList<>();
+            for (int i = 0; i < readers; i++) {
+                threads.add(Thread.ofPlatform().start(() -> {
+                    while (System.nanoTime() < deadline) {
+                        int userId = ThreadLocalRandom.current().nextInt(1, USERS + 1);
+                        result.count(postService.getFeed(userId) != null, result.reads);
+                    }
+                }));
+            }
+            for (int i = 0; i < writers; i++) {
+                threads.add(Thread.ofPlatform().start(() -> {
+                    while (System.nanoTime() < deadline) {
+                        int userId = ThreadLocalRandom.current().nextInt(1, USERS + 1);
+                        int postId = postIds.get(ThreadLocalRandom.current().nextInt(postIds.size()));
+                        result.count(postService.toggleLike(userId, postId) != null, result.writes);
+                    }
+                }));
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+
+            result.seconds = seconds;
+            result.writer = databaseManager.getWriterStats();
+            return result;
+
+        } finally {
+            databaseManager.close();
+            deleteRecursively(directory);
+        }
+    }
+
+    /**
+     * Users following each other, with posts spread between them. Posts are
+     * created through the service so they get IDs on their authors' shards.
+     *
+     * @return The post IDs
+     */
+    private static List<Integer> seed(DatabaseManager databaseManager, PostService postService) {
+        boolean seeded = databaseManager.executeTransaction(conn -> {
+            try (PreparedStatement users = conn.prepareStatement(
+                         "INSERT INTO users (username, password_hash, full_name) VALUES (?, 'x', ?)");
+                 PreparedStatement follows = conn.prepareStatement(
+                         "INSERT OR IGNORE INTO follows (follower_id, followee_id) VALUES (?, ?)")) {
+
+                for (int i = 1; i <= USERS; i++) {
+                    users.setString(1, "user" + i);
+                    users.setString(2, "User " + i);
+                    users.executeUpdate();
+                }
+                for (int i = 1; i <= USERS; i++) {
+                    for (int j = 1; j <= FOLLOWS_PER_USER; j++) {
+                        follows.setInt(1, i);
+                        follows.setInt(2, 1 + (i + j * 7) % USERS);
+                        follows.executeUpdate();
+                    }
+                }
+            }
+            return true;
+        });
+        if (!seeded) {
+            throw new IllegalStateException("Could not seed benchmark data");
+        }
+        // Seeded rows bypass the services that maintain counters and timelines
+        databaseManager.repairCounters();
+        databaseManager.rebuildTimeline();
+
+        List<Integer> postIds = new ArrayList<>(POSTS);
+        for (int i = 1; i <= POSTS; i++) {
+            Post post = postService.createPost(1 + i % USERS,
+                    "Benchmark post number " + i + " with some text to make it realistic");
+            if (post == null) {
+                throw new IllegalStateException("Could not seed benchmark posts");
+            }
+            postIds.add(post.getId());
+        }
+        return postIds;
+    }
+
+    private static void deleteRecursively(Path directory) throws IOException {
+        try (var paths = Files.walk(directory)) {
+            paths.sorted((a, b) -> b.compareTo(a)).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    private static final class Result {
+        private final AtomicLong reads = new AtomicLong();
+        private final AtomicLong writes = new AtomicLong();
+        private final AtomicLong failed = new AtomicLong();
+        private int seconds;
+        private WriterStats writer;
+
+        void count(boolean success, AtomicLong counter) {
+            if (success) {
+                counter.incrementAndGet();
+            } else {
+                failed.incrementAndGet();
+            }
+        }
+
+        void print(String name) {
+            System.out.printf("%-10s %12.0f %12.0f %10d   %s%n", name, reads.get() / (double) seconds,
+                    writes.get() / (double) seconds, failed.get(), writer);
+        }
+    }
+}
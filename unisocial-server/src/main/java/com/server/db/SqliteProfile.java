@@ -0,0 +1,65 @@
+package com.server.db;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Set;
+
+/**
+ * SQLite pragmas applied to every new connection
+ *
+ * @param journalMode journal_mode, e.g. WAL so readers do not wait on the writer
+ * @param synchronous synchronous, e.g. NORMAL to fsync only at WAL checkpoints
+ * @param mmapSize mmap_size in bytes; 0 disables memory-mapped I/O
+ * @param cacheSizeKb Page cache per connection in KiB
+ * @param tempStore temp_store: DEFAULT, FILE or MEMORY
+ * @param busyTimeoutMs How long to wait on a locked database before SQLITE_BUSY
+ */
+public record SqliteProfile(String journalMode, String synchronous, long mmapSize, int cacheSizeKb,
+                            String tempStore, int busyTimeoutMs) {
+
+    private static final Set<String> JOURNAL_MODES = Set.of("DELETE", "TRUNCATE", "PERSIST", "MEMORY", "WAL", "OFF");
+    private static final Set<String> SYNCHRONOUS_MODES = Set.of("OFF", "NORMAL", "FULL", "EXTRA");
+    private static final Set<String> TEMP_STORES = Set.of("DEFAULT", "FILE", "MEMORY");
+
+    /**
+     * The driver's defaults: rollback journal, fsync on every commit
+     */
+    public static final SqliteProfile LEGACY = new SqliteProfile("DELETE", "FULL", 0, 2000, "DEFAULT", 3000);
+
+    public SqliteProfile {
+        // Pragma values cannot be bound as parameters, so only known keywords are accepted
+        journalMode = keyword("journal_mode", journalMode, JOURNAL_MODES);
+        synchronous = keyword("synchronous", synchronous, SYNCHRONOUS_MODES);
+        tempStore = keyword("temp_store", tempStore, TEMP_STORES);
+    }
+
+    private static String keyword(String pragma, String value, Set<String> allowed) {
+        String upper = value.toUpperCase();
+        if (!allowed.contains(upper)) {
+            throw new IllegalArgumentException("Invalid " + pragma + ": " + value);
+        }
+        return upper;
+    }
+
+    /**
+     * Apply the pragmas to a newly opened connection
+     */
+    public void apply(Connection connection) throws SQLException {
+        try (Statement stmt = connection.createStatement()) {
+            // Set first so switching the journal mode waits for other connections' locks
+            stmt.execute("PRAGMA busy_timeout = " + busyTimeoutMs);
+            stmt.execute("PRAGMA journal_mode = " + journalMode);
+            stmt.execute("PRAGMA synchronous = " + synchronous);
+            stmt.execute("PRAGMA mmap_size = " + mmapSize);
+            stmt.execute("PRAGMA cache_size = " + -cacheSizeKb); // Negative means KiB rather than pages
+            stmt.execute("PRAGMA temp_store = " + tempStore);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("journal_mode=%s, synchronous=%s, mmap_size=%d, cache_size=%dKiB, temp_store=%s, busy_timeout=%dms",
+                journalMode, synchronous, mmapSize, cacheSizeKb, tempStore, busyTimeoutMs);
+    }
+}
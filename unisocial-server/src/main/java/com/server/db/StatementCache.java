@@ -0,0 +1,152 @@
+package com.server.db;
+
+import com.server.utils.Logger;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Prepared statements of one pooled connection, keyed by SQL text and
+ * evicted least-recently-used first.
+ *
+ * A cached statement is handed out wrapped so that close() only clears its
+ * parameters and makes it available again, letting hot queries skip
+ * SQLite's parse and plan step. A connection is used by one thread at a
+ * time, so the cache needs no locking.
+ */
+final class StatementCache {
+    private final Connection connection;
+    private final int capacity;
+    private final Counters counters;
+    private final LinkedHashMap<Key, Entry> statements = new LinkedHashMap<>(16, 0.75f, true);
+
+    private boolean closed;
+
+    StatementCache(Connection connection, int capacity, Counters counters) {
+        this.connection = connection;
+        this.capacity = capacity;
+        this.counters = counters;
+    }
+
+    /**
+     * Get a prepared statement for the SQL text
+     *
+     * @param autoGeneratedKeys {@link Statement#RETURN_GENERATED_KEYS} or {@link Statement#NO_GENERATED_KEYS}
+     */
+    PreparedStatement prepare(String sql, int autoGeneratedKeys) throws SQLException {
+        Key key = new Key(sql, autoGeneratedKeys);
+        Entry entry = statements.get(key);
+
+        if (entry != null && !entry.inUse) {
+            counters.hits().incrementAndGet();
+            entry.inUse = true;
+            return entry.handle;
+        }
+
+        counters.misses().incrementAndGet();
+        PreparedStatement statement = connection.prepareStatement(sql, autoGeneratedKeys);
+        if (entry != null || capacity <= 0) {
+            // Already checked out, e.g. the same query nested in itself; use a plain statement
+            return statement;
+        }
+
+        entry = new Entry(statement);
+        entry.inUse = true;
+        statements.put(key, entry);
+        evictOverCapacity();
+        return entry.handle;
+    }
+
+    private void evictOverCapacity() {
+        Iterator<Entry> eldest = statements.values().iterator();
+        while (statements.size() > capacity && eldest.hasNext()) {
+            Entry entry = eldest.next();
+            if (entry.inUse) {
+                continue; // Closed for real when its caller is done with it
+            }
+            eldest.remove();
+            closeQuietly(entry.statement);
+            counters.evictions().incrementAndGet();
+        }
+    }
+
+    /**
+     * Close every cached statement
+     */
+    void close() {
+        closed = true;
+        statements.values().forEach(entry -> closeQuietly(entry.statement));
+        statements.clear();
+    }
+
+    private void release(Entry entry) throws SQLException {
+        entry.inUse = false;
+        if (closed) {
+            entry.statement.close();
+            return;
+        }
+        entry.statement.clearParameters();
+        evictOverCapacity();
+    }
+
+    private static void closeQuietly(PreparedStatement statement) {
+        try {
+            statement.close();
+        } catch (SQLException e) {
+            Logger.warn("Error closing cached statement: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Cache counters shared by all connections of a pool
+     */
+    record Counters(AtomicLong hits, AtomicLong misses, AtomicLong evictions) {
+        Counters() {
+            this(new AtomicLong(), new AtomicLong(), new AtomicLong());
+        }
+    }
+
+    private record Key(String sql, int autoGeneratedKeys) {
+    }
+
+    private final class Entry {
+        private final PreparedStatement statement;
+        private final PreparedStatement handle;
+        private boolean inUse;
+
+        Entry(PreparedStatement statement) {
+            this.statement = statement;
+            this.handle = (PreparedStatement) Proxy.newProxyInstance(StatementCache.class.getClassLoader(),
+                    new Class<?>[] { PreparedStatement.class }, (proxy, method, args) -> {
+                        switch (method.getName()) {
+                            case "close" -> {
+                                if (inUse) {
+                                    release(this);
+                                }
+                                return null;
+                            }
+                            case "isClosed" -> {
+                                return !inUse || statement.isClosed();
+                            }
+                            default -> {
+                                if (!inUse) {
+                                    throw new SQLException("Statement has been closed");
+                                }
+                            }
+                        }
+                        try {
+                            return method.invoke(statement, args);
+                        } catch (InvocationTargetException e) {
+                            throw e.getCause();
+                        }
+                    });
+        }
+    }
+}
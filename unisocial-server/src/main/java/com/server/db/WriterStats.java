@@ -0,0 +1,40 @@
+package com.server.db;
+
+/**
+ * Snapshot of group-commit writer metrics
+ *
+ * @param writes Writes committed
+ * @param groups Commits, each covering one or more writes
+ * @param largestGroup Most writes committed together
+ * @param queued Writes waiting for the writer
+ * @param rolledBack Writes that failed and were rolled back to their savepoint
+ * @param commitFailures Group commits that failed, failing every write in the group
+ * @param rejected Writes refused because the queue was full or the writer stopped
+ * @param commitNanos Time spent applying and committing groups
+ * @param statementHits Prepared statements served from the write connection's cache
+ * @param statementMisses Prepared statements that had to be parsed
+ */
+public record WriterStats(long writes, long groups, long largestGroup, int queued, long rolledBack,
+                          long commitFailures, long rejected, long commitNanos, long statementHits,
+                          long statementMisses) {
+
+    /**
+     * Average number of writes per commit
+     */
+    public double getAverageGroupSize() {
+        return groups == 0 ? 0 : (double) writes / groups;
+    }
+
+    /**
+     * Average time to apply and commit a group, in microseconds
+     */
+    public double getAverageCommitMicros() {
+        return groups == 0 ? 0 : commitNanos / 1000.0 / groups;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d writes in %d commits (avg %.1f, max %d per commit), %d rolled back, %d rejected",
+                writes, groups, getAverageGroupSize(), largestGroup, rolledBack, rejected);
+    }
+}
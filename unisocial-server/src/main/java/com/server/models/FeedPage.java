@@ -0,0 +1,12 @@
+package com.server.models;
+
+import java.util.List;
+
+/**
+ * One page of a feed
+ *
+ * @param posts Posts on this page, newest first
+ * @param nextCursor Where the next page starts, or null if this is the last page
+ */
+public record FeedPage(List<Post> posts, FeedCursor nextCursor) {
+}
@@ -1,6 +1,6 @@
 package com.server.models;
 
-import java.time.LocalDateTime;
+import java.time.Instant;
 
 /**
  * Server-side Post model
@@ -14,8 +14,8 @@ public class Post {
     private int likeCount;
     private boolean liked; // For current user context
     private boolean bookmarked; // For current user context
-    private String createdAt;
-    private String updatedAt;
+    private long createdAt; // Epoch milliseconds
+    private long updatedAt; // Epoch milliseconds
 
     // Constructors
     public Post() {}
@@ -24,8 +24,8 @@ public class Post {
         this.userId = userId;
         this.username = username;
         this.content = content;
-        this.createdAt = LocalDateTime.now().toString();
-        this.updatedAt = LocalDateTime.now().toString();
+        this.createdAt = System.currentTimeMillis();
+        this.updatedAt = this.createdAt;
     }
 
     // Getters and setters
@@ -53,29 +53,20 @@ public class Post {
     public boolean isBookmarked() { return bookmarked; }
     public void setBookmarked(boolean bookmarked) { this.bookmarked = bookmarked; }
 
-    public String getCreatedAt() { return createdAt; }
-    public void setCreatedAt(String createdAt) { this.createdAt = createdAt; }
-    
-    // Helper method to get LocalDateTime if needed
-    public LocalDateTime getCreatedAtAsLocalDateTime() {
-        return createdAt != null ? LocalDateTime.parse(createdAt) : null;
-    }
+    public long getCreatedAt() { return createdAt; }
+    public void setCreatedAt(long createdAt) { this.createdAt = createdAt; }
 
-    public String getUpdatedAt() { return updatedAt; }
-    public void setUpdatedAt(String updatedAt) { this.updatedAt = updatedAt; }
-    
-    // Helper method to get LocalDateTime if needed
-    public LocalDateTime getUpdatedAtAsLocalDateTime() {
-        return updatedAt != null ? LocalDateTime.parse(updatedAt) : null;
-    }
-    
-    // Helper method to set from LocalDateTime
-    public void setCreatedAt(LocalDateTime dateTime) {
-        this.createdAt = dateTime != null ? dateTime.toString() : null;
+    // Helper method to get an Instant if needed
+    public Instant getCreatedAtAsInstant() {
+        return Instant.ofEpochMilli(createdAt);
     }
-    
-    public void setUpdatedAt(LocalDateTime dateTime) {
-        this.updatedAt = dateTime != null ? dateTime.toString() : null;
+
+    public long getUpdatedAt() { return updatedAt; }
+    public void setUpdatedAt(long updatedAt) { this.updatedAt = updatedAt; }
+
+    // Helper method to get an Instant if needed
+    public Instant getUpdatedAtAsInstant() {
+        return Instant.ofEpochMilli(updatedAt);
     }
 
     @Override
@@ -0,0 +1,10 @@
+package com.server.models;
+
+/**
+ * The outcome of toggling a like or a follow
+ *
+ * @param active Whether the post is now liked, or the user now followed
+ * @param count The post's like count, or the followee's follower count, after the toggle
+ */
+public record ToggleResult(boolean active, int count) {
+}
@@ -1,6 +1,6 @@
 package com.server.models;
 
-import java.time.LocalDateTime;
+import java.time.Instant;
 
 /**
  * Server-side User model
@@ -13,8 +13,8 @@ public class User {
     private String avatarUrl;
     private int followingCount;
     private int followersCount;
-    private String createdAt;
-    private String updatedAt;
+    private long createdAt; // Epoch milliseconds
+    private long updatedAt; // Epoch milliseconds
 
     // Constructors
     public User() {}
@@ -23,7 +23,7 @@ public class User {
         this.id = id;
         this.username = username;
         this.fullName = fullName;
-        this.createdAt = LocalDateTime.now().toString();
+        this.createdAt = System.currentTimeMillis();
     }
 
     // Getters and setters
@@ -48,29 +48,20 @@ public class User {
     public int getFollowersCount() { return followersCount; }
     public void setFollowersCount(int followersCount) { this.followersCount = followersCount; }
 
-    public String getCreatedAt() { return createdAt; }
-    public void setCreatedAt(String createdAt) { this.createdAt = createdAt; }
-    
-    // Helper method to get LocalDateTime if needed
-    public LocalDateTime getCreatedAtAsLocalDateTime() {
-        return createdAt != null ? LocalDateTime.parse(createdAt) : null;
-    }
+    public long getCreatedAt() { return createdAt; }
+    public void setCreatedAt(long createdAt) { this.createdAt = createdAt; }
 
-    public String getUpdatedAt() { return updatedAt; }
-    public void setUpdatedAt(String updatedAt) { this.updatedAt = updatedAt; }
-    
-    // Helper method to get LocalDateTime if needed
-    public LocalDateTime getUpdatedAtAsLocalDateTime() {
-        return updatedAt != null ? LocalDateTime.parse(updatedAt) : null;
-    }
-    
-    // Helper method to set from LocalDateTime
-    public void setCreatedAt(LocalDateTime dateTime) {
-        this.createdAt = dateTime != null ? dateTime.toString() : null;
+    // Helper method to get an Instant if needed
+    public Instant getCreatedAtAsInstant() {
+        return Instant.ofEpochMilli(createdAt);
     }
-    
-    public void setUpdatedAt(LocalDateTime dateTime) {
-        this.updatedAt = dateTime != null ? dateTime.toString() : null;
+
+    public long getUpdatedAt() { return updatedAt; }
+    public void setUpdatedAt(long updatedAt) { this.updatedAt = updatedAt; }
+
+    // Helper method to get an Instant if needed
+    public Instant getUpdatedAtAsInstant() {
+        return Instant.ofEpochMilli(updatedAt);
     }
 
     @Override
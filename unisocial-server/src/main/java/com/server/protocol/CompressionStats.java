@@ -0,0 +1,68 @@
+package com.server.protocol;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counters for outbound payload compression
+ */
+public class CompressionStats {
+    private final AtomicLong messages = new AtomicLong();
+    private final AtomicLong skipped = new AtomicLong();
+    private final AtomicLong bytesIn = new AtomicLong();
+    private final AtomicLong bytesOut = new AtomicLong();
+    private final AtomicLong nanos = new AtomicLong();
+
+    void record(int rawSize, int compressedSize, long elapsedNanos) {
+        messages.incrementAndGet();
+        bytesIn.addAndGet(rawSize);
+        bytesOut.addAndGet(compressedSize);
+        nanos.addAndGet(elapsedNanos);
+    }
+
+    void recordSkipped() {
+        skipped.incrementAndGet();
+    }
+
+    /**
+     * Number of payloads compressed
+     */
+    public long getMessages() { return messages.get(); }
+
+    /**
+     * Number of payloads sent uncompressed because they were below the threshold
+     */
+    public long getSkipped() { return skipped.get(); }
+
+    public long getBytesIn() { return bytesIn.get(); }
+
+    public long getBytesOut() { return bytesOut.get(); }
+
+    /**
+     * Compressed size as a fraction of the original size (lower is better)
+     */
+    public double getRatio() {
+        long in = bytesIn.get();
+        return in == 0 ? 1.0 : (double) bytesOut.get() / in;
+    }
+
+    /**
+     * Total CPU time spent compressing, in milliseconds
+     */
+    public double getTotalMillis() {
+        return nanos.get() / 1_000_000.0;
+    }
+
+    /**
+     * Average time to compress one payload, in microseconds
+     */
+    public double getAverageMicros() {
+        long count = messages.get();
+        return count == 0 ? 0 : nanos.get() / 1000.0 / count;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d compressed, %d skipped, %d -> %d bytes (ratio %.2f), %.1f ms CPU",
+                getMessages(), getSkipped(), getBytesIn(), getBytesOut(), getRatio(), getTotalMillis());
+    }
+}
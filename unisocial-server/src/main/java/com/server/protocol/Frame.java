@@ -0,0 +1,12 @@
+package com.server.protocol;
+
+/**
+ * A single protocol message: a UTF-8 JSON payload plus an optional binary
+ * attachment (only carried by the length-prefixed framing)
+ */
+public record Frame(byte[] payload, byte[] attachment) {
+
+    public boolean hasAttachment() {
+        return attachment != null;
+    }
+}
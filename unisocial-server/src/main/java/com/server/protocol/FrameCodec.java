@@ -0,0 +1,43 @@
+package com.server.protocol;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Splits a byte stream into frames and serializes frames back to bytes.
+ *
+ * Decoders keep per-connection state and must only be used by the thread
+ * reading the connection; {@link #encode(Frame)} is stateless and may be
+ * called from any thread.
+ */
+public interface FrameCodec {
+
+    /**
+     * Decode the next complete frame. The buffer is in read mode; on success
+     * its position is advanced past the frame, otherwise it is left untouched.
+     *
+     * @param buffer Buffered bytes received from the peer
+     * @return The next frame, or null if more bytes are needed
+     * @throws ProtocolException if the stream is malformed or a frame is too large
+     */
+    Frame decode(ByteBuffer buffer) throws ProtocolException;
+
+    /**
+     * Total size of the frame at the buffer position if it can be known
+     * before the frame is complete, so the reader can reserve exactly that
+     *
+     * @return Frame size in bytes, or -1 if unknown
+     */
+    default int expectedFrameSize(ByteBuffer buffer) {
+        return -1;
+    }
+
+    /**
+     * Serialize a frame ready to be written to the peer
+     */
+    ByteBuffer encode(Frame frame);
+
+    /**
+     * Name used to negotiate this framing in HANDSHAKE
+     */
+    String name();
+}
@@ -0,0 +1,69 @@
+package com.server.protocol;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+
+/**
+ * Factory and negotiation helpers for the supported framings
+ */
+public final class FrameCodecs {
+    public static final String LINE = "line";
+    public static final String LENGTH_PREFIXED = "length-prefixed";
+
+    private FrameCodecs() {}
+
+    /**
+     * Create a codec for a negotiated framing name
+     */
+    public static FrameCodec create(String name, int maxFrameSize) {
+        return create(name, maxFrameSize, 0);
+    }
+
+    /**
+     * Create a codec for a negotiated framing name
+     *
+     * @param compressionThreshold Minimum payload size to compress; 0 disables
+     *                             compression. Only length-prefixed framing can
+     *                             carry compressed payloads.
+     */
+    public static FrameCodec create(String name, int maxFrameSize, int compressionThreshold) {
+        if (LENGTH_PREFIXED.equals(name)) {
+            return new LengthPrefixedFrameCodec(maxFrameSize, compressionThreshold);
+        }
+        return new LineFrameCodec(maxFrameSize);
+    }
+
+    /**
+     * Pick the first framing offered by the client that the server supports
+     *
+     * @param offered Framings in client preference order, may be null
+     * @return The chosen framing; line mode if nothing else matches
+     */
+    public static String negotiate(JsonArray offered) {
+        if (offered != null) {
+            for (JsonElement element : offered) {
+                String name = element.getAsString();
+                if (LENGTH_PREFIXED.equals(name) || LINE.equals(name)) {
+                    return name;
+                }
+            }
+        }
+        return LINE;
+    }
+
+    /**
+     * Check if the client offered the supported compression
+     *
+     * @param offered Compression names from the HANDSHAKE, may be null
+     */
+    public static boolean acceptsCompression(JsonArray offered) {
+        if (offered != null) {
+            for (JsonElement element : offered) {
+                if (PayloadCompression.NAME.equals(element.getAsString())) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,77 @@
+package com.server.protocol;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Per-connection receive buffer. Kept in read mode between fills so codecs
+ * can decode directly from it; grows for large frames and shrinks back once
+ * they have been consumed so idle connections stay cheap.
+ */
+public class InboundBuffer {
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final int RETAINED_CAPACITY = 64 * 1024;
+
+    private ByteBuffer buffer = ByteBuffer.allocate(INITIAL_CAPACITY).flip();
+
+    public ByteBuffer buffer() {
+        return buffer;
+    }
+
+    /**
+     * Append received bytes (NIO transport)
+     */
+    public void append(ByteBuffer source) {
+        ensureWritable(source.remaining());
+        buffer.compact();
+        buffer.put(source);
+        buffer.flip();
+    }
+
+    /**
+     * Read once from a blocking stream
+     *
+     * @param expectedFrameSize Size of the frame being received if known, so
+     *                          the buffer grows to it in one step; -1 otherwise
+     * @return false at end of stream
+     */
+    public boolean fill(InputStream in, int expectedFrameSize) throws IOException {
+        ensureWritable(Math.max(INITIAL_CAPACITY, expectedFrameSize - buffer.remaining()));
+        buffer.compact();
+        try {
+            int read = in.read(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+            if (read < 0) {
+                return false;
+            }
+            buffer.position(buffer.position() + read);
+            return true;
+        } finally {
+            buffer.flip();
+        }
+    }
+
+    /**
+     * Drop an oversized backing array once everything has been consumed
+     */
+    public void trim() {
+        if (!buffer.hasRemaining() && buffer.capacity() > RETAINED_CAPACITY) {
+            buffer = ByteBuffer.allocate(INITIAL_CAPACITY).flip();
+        }
+    }
+
+    private void ensureWritable(int bytes) {
+        int free = buffer.capacity() - buffer.remaining();
+        if (free >= bytes) {
+            return;
+        }
+
+        int capacity = buffer.capacity();
+        while (capacity - buffer.remaining() < bytes) {
+            capacity *= 2;
+        }
+        ByteBuffer grown = ByteBuffer.allocate(capacity);
+        grown.put(buffer);
+        buffer = grown.flip();
+    }
+}
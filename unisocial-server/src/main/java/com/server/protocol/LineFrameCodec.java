@@ -0,0 +1,57 @@
+package com.server.protocol;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Newline-delimited JSON, the original wire format. Binary attachments are
+ * not supported; clients must base64 them into the JSON payload.
+ */
+public class LineFrameCodec implements FrameCodec {
+    private final int maxFrameSize;
+
+    // Bytes after the buffer position already known not to contain '\n'
+    private int scanned;
+
+    public LineFrameCodec(int maxFrameSize) {
+        this.maxFrameSize = maxFrameSize;
+    }
+
+    @Override
+    public Frame decode(ByteBuffer buffer) throws ProtocolException {
+        int start = buffer.position();
+        for (int i = start + scanned; i < buffer.limit(); i++) {
+            if (buffer.get(i) == '\n') {
+                int end = i;
+                if (end > start && buffer.get(end - 1) == '\r') {
+                    end--;
+                }
+
+                byte[] payload = new byte[end - start];
+                buffer.get(start, payload);
+                buffer.position(i + 1);
+                scanned = 0;
+                return new Frame(payload, null);
+            }
+        }
+
+        scanned = buffer.remaining();
+        if (scanned > maxFrameSize) {
+            throw new ProtocolException("Request exceeds " + maxFrameSize + " bytes");
+        }
+        return null;
+    }
+
+    @Override
+    public ByteBuffer encode(Frame frame) {
+        byte[] payload = frame.payload();
+        byte[] line = Arrays.copyOf(payload, payload.length + 1);
+        line[payload.length] = '\n';
+        return ByteBuffer.wrap(line);
+    }
+
+    @Override
+    public String name() {
+        return FrameCodecs.LINE;
+    }
+}
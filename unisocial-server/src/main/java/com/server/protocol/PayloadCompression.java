@@ -0,0 +1,120 @@
+package com.server.protocol;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Deflate with a preset dictionary of typical Post/User JSON.
+ *
+ * Responses are small and repetitive, so a shared dictionary lets even a
+ * single feed page compress well. The client keeps an identical copy of
+ * {@link #DICTIONARY}; changing it requires a new {@link #NAME}.
+ */
+public final class PayloadCompression {
+    public static final String NAME = "deflate-dict-v2";
+
+    private static final byte[] DICTIONARY = ("""
+            {"success":true,"message":"","users":[],"user":{"id":,"username":"","fullName":"","bio":"",\
+            "avatarUrl":"/avatars/avatar_","followingCount":0,"followersCount":0,"createdAt":17,"updatedAt":17},\
+            "posts":[{"id":,"userId":,"username":"","content":"","imageUrl":null,"likeCount":0,"liked":false,\
+            "bookmarked":false,"createdAt":17,"updatedAt":17},{"id":,"userId":,"username":"",\
+            "content":"","likeCount":1,"liked":true,"bookmarked":true,"createdAt":1,"updatedAt":1}],\
+            "success":false,"message":"Not authenticated"}""").getBytes(StandardCharsets.UTF_8);
+
+    // Deflater/Inflater hold native zlib state; keep a few for reuse rather
+    // than one per thread, which under virtual threads is one per connection
+    private static final int POOL_SIZE = Runtime.getRuntime().availableProcessors();
+    private static final BlockingQueue<Deflater> DEFLATERS = new ArrayBlockingQueue<>(POOL_SIZE);
+    private static final BlockingQueue<Inflater> INFLATERS = new ArrayBlockingQueue<>(POOL_SIZE);
+
+    private static final CompressionStats STATS = new CompressionStats();
+
+    private PayloadCompression() {}
+
+    /**
+     * Compress a payload and record the result in {@link #stats()}
+     */
+    public static byte[] compress(byte[] payload) {
+        long start = System.nanoTime();
+
+        Deflater deflater = DEFLATERS.poll();
+        if (deflater == null) {
+            deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+        }
+
+        byte[] compressed;
+        try {
+            deflater.setDictionary(DICTIONARY);
+            deflater.setInput(payload);
+            deflater.finish();
+
+            ByteArrayOutputStream output = new ByteArrayOutputStream(Math.max(64, payload.length / 4));
+            byte[] chunk = new byte[8192];
+            while (!deflater.finished()) {
+                int count = deflater.deflate(chunk);
+                output.write(chunk, 0, count);
+            }
+            compressed = output.toByteArray();
+        } finally {
+            deflater.reset();
+            if (!DEFLATERS.offer(deflater)) {
+                deflater.end();
+            }
+        }
+
+        STATS.record(payload.length, compressed.length, System.nanoTime() - start);
+        return compressed;
+    }
+
+    /**
+     * Decompress a payload produced by {@link #compress(byte[])}
+     *
+     * @param maxSize Upper bound on the decompressed size
+     */
+    public static byte[] decompress(byte[] compressed, int maxSize) throws ProtocolException {
+        Inflater inflater = INFLATERS.poll();
+        if (inflater == null) {
+            inflater = new Inflater();
+        }
+        inflater.setInput(compressed);
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream(compressed.length * 4);
+        byte[] chunk = new byte[8192];
+        try {
+            while (!inflater.finished()) {
+                int count = inflater.inflate(chunk);
+                if (count == 0) {
+                    if (inflater.needsDictionary()) {
+                        inflater.setDictionary(DICTIONARY);
+                    } else if (inflater.needsInput()) {
+                        throw new ProtocolException("Truncated compressed payload");
+                    }
+                }
+                output.write(chunk, 0, count);
+                if (output.size() > maxSize) {
+                    throw new ProtocolException("Decompressed payload exceeds " + maxSize + " bytes");
+                }
+            }
+        } catch (DataFormatException e) {
+            throw new ProtocolException("Invalid compressed payload: " + e.getMessage());
+        } finally {
+            inflater.reset();
+            if (!INFLATERS.offer(inflater)) {
+                inflater.end();
+            }
+        }
+        return output.toByteArray();
+    }
+
+    /**
+     * Get the server-wide compression counters
+     */
+    public static CompressionStats stats() {
+        return STATS;
+    }
+}
@@ -0,0 +1,14 @@
+package com.server.protocol;
+
+import java.io.IOException;
+
+/**
+ * Thrown when a peer sends bytes that cannot be framed
+ */
+public class ProtocolException extends IOException {
+    private static final long serialVersionUID = 1L;
+
+    public ProtocolException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,68 @@
+package com.server.protocol;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Request envelope read straight from the frame bytes.
+ *
+ * Only the small "data" object is materialized as a tree; the envelope is
+ * read with a streaming JsonReader and unknown fields are skipped.
+ *
+ * @param id Correlation id, or null for lock-step requests
+ * @param command The command name, or null if missing
+ * @param data The command arguments, or null if missing
+ */
+public record Request(JsonElement id, String command, JsonObject data) {
+
+    /**
+     * Parse a request payload
+     *
+     * @throws ProtocolException if the payload is not a JSON object
+     */
+    public static Request parse(byte[] payload) throws ProtocolException {
+        try (JsonReader reader = new JsonReader(
+                new InputStreamReader(new ByteArrayInputStream(payload), StandardCharsets.UTF_8))) {
+            JsonElement id = null;
+            String command = null;
+            JsonObject data = null;
+
+            reader.beginObject();
+            while (reader.hasNext()) {
+                switch (reader.nextName()) {
+                    case "id" -> id = JsonParser.parseReader(reader);
+                    case "command" -> command = reader.peek() == JsonToken.STRING ? reader.nextString() : skip(reader);
+                    case "data" -> data = reader.peek() == JsonToken.BEGIN_OBJECT
+                            ? JsonParser.parseReader(reader).getAsJsonObject() : skip(reader);
+                    default -> reader.skipValue();
+                }
+            }
+            reader.endObject();
+            return new Request(id, command, data);
+
+        } catch (IOException | RuntimeException e) {
+            throw new ProtocolException("Malformed request: " + e.getMessage());
+        }
+    }
+
+    private static <T> T skip(JsonReader reader) throws IOException {
+        reader.skipValue();
+        return null;
+    }
+
+    /**
+     * Requests that carry a correlation id may be executed out of order.
+     * HANDSHAKE is always lock-step because it may change the framing.
+     */
+    public boolean isPipelined() {
+        return id != null && !"HANDSHAKE".equals(command);
+    }
+}
@@ -54,7 +54,7 @@ public class AuthService {
                             user.setFullName(rs.getString("full_name"));
                             user.setBio(rs.getString("bio"));
                             user.setAvatarUrl(rs.getString("avatar_url"));
-                            user.setCreatedAt(rs.getTimestamp("created_at").toLocalDateTime().toString());
+                            user.setCreatedAt(rs.getLong("created_at"));
 
                             Logger.info("User authenticated: " + username);
                             return user;
@@ -84,54 +84,62 @@ public class AuthService {
             return null;
         }
 
-        username = username.trim();
+        String trimmedUsername = username.trim();
 
         // Check if username already exists
-        if (userExists(username)) {
-            Logger.warn("Attempted to create user with existing username: " + username);
+        if (userExists(trimmedUsername)) {
+            Logger.warn("Attempted to create user with existing username: " + trimmedUsername);
             return null;
         }
 
-        try (Connection conn = databaseManager.getConnection()) {
-            String sql = """
-                INSERT INTO users (username, password_hash, full_name, created_at, updated_at)
-                VALUES (?, ?, ?, CURRENT_TIMESTAMP, CURRENT_TIMESTAMP)
-            """;
-
-            String passwordHash = PasswordUtils.hashPassword(password);
-
-            try (PreparedStatement stmt = conn.prepareStatement(sql, PreparedStatement.RETURN_GENERATED_KEYS)) {
-                stmt.setString(1, username);
-                stmt.setString(2, passwordHash);
-                stmt.setString(3, username); // Default full name to username
-
-                int affectedRows = stmt.executeUpdate();
-
-                if (affectedRows > 0) {
-                    try (ResultSet generatedKeys = stmt.getGeneratedKeys()) {
-                        if (generatedKeys.next()) {
-                            int userId = generatedKeys.getInt(1);
-
-                            // Create and return user object
-                            User user = new User();
-                            user.setId(userId);
-                            user.setUsername(username);
-                            user.setFullName(username);
-                            user.setBio("New user on UniSocial!");
-                            user.setAvatarUrl(null);
-
-                            Logger.info("User created: " + username + " (ID: " + userId + ")");
-                            return user;
+        // Hash before queueing the write so bcrypt never runs on the writer thread
+        String passwordHash = PasswordUtils.hashPassword(password);
+
+        return databaseManager.write(() -> {
+            try (Connection conn = databaseManager.getConnection()) {
+                String sql = """
+                    INSERT INTO users (username, password_hash, full_name, created_at, updated_at)
+                    VALUES (?, ?, ?, ?, ?)
+                """;
+
+                long now = System.currentTimeMillis();
+                try (PreparedStatement stmt = conn.prepareStatement(sql, PreparedStatement.RETURN_GENERATED_KEYS)) {
+                    stmt.setString(1, trimmedUsername);
+                    stmt.setString(2, passwordHash);
+                    stmt.setString(3, trimmedUsername); // Default full name to username
+                    stmt.setLong(4, now);
+                    stmt.setLong(5, now);
+
+                    int affectedRows = stmt.executeUpdate();
+
+                    if (affectedRows > 0) {
+                        try (ResultSet generatedKeys = stmt.getGeneratedKeys()) {
+                            if (generatedKeys.next()) {
+                                int userId = generatedKeys.getInt(1);
+
+                                // Create and return user object
+                                User user = new User();
+                                user.setId(userId);
+                                user.setUsername(trimmedUsername);
+                                user.setFullName(trimmedUsername);
+                                user.setBio("New user on UniSocial!");
+                                user.setAvatarUrl(null);
+                                user.setCreatedAt(now);
+                                user.setUpdatedAt(now);
+
+                                Logger.info("User created: " + trimmedUsername + " (ID: " + userId + ")");
+                                return user;
+                            }
                         }
                     }
                 }
-            }
 
-        } catch (SQLException e) {
-            Logger.error("Error creating user: " + e.getMessage());
-        }
+            } catch (SQLException e) {
+                Logger.error("Error creating user: " + e.getMessage());
+            }
 
-        return null;
+            return null;
+        }, null);
     }
 
     /**
@@ -199,27 +207,36 @@ public class AuthService {
                 }
             }
 
-            // Update password
-            String updateSql = "UPDATE users SET password_hash = ?, updated_at = CURRENT_TIMESTAMP WHERE id = ?";
-            String newPasswordHash = PasswordUtils.hashPassword(newPassword);
+        } catch (SQLException e) {
+            Logger.error("Error changing password: " + e.getMessage());
+            return false;
+        }
 
-            try (PreparedStatement updateStmt = conn.prepareStatement(updateSql)) {
-                updateStmt.setString(1, newPasswordHash);
-                updateStmt.setInt(2, userId);
+        // Update password
+        String newPasswordHash = PasswordUtils.hashPassword(newPassword);
+        return databaseManager.write(() -> {
+            try (Connection conn = databaseManager.getConnection()) {
+                String updateSql = "UPDATE users SET password_hash = ?, updated_at = ? WHERE id = ?";
 
-                int affectedRows = updateStmt.executeUpdate();
+                try (PreparedStatement updateStmt = conn.prepareStatement(updateSql)) {
+                    updateStmt.setString(1, newPasswordHash);
+                    updateStmt.setLong(2, System.currentTimeMillis());
+                    updateStmt.setInt(3, userId);
 
-                if (affectedRows > 0) {
-                    Logger.info("Password changed for user ID: " + userId);
-                    return true;
+                    int affectedRows = updateStmt.executeUpdate();
+
+                    if (affectedRows > 0) {
+                        Logger.info("Password changed for user ID: " + userId);
+                        return true;
+                    }
                 }
-            }
 
-        } catch (SQLException e) {
-            Logger.error("Error changing password: " + e.getMessage());
-        }
+            } catch (SQLException e) {
+                Logger.error("Error changing password: " + e.getMessage());
+            }
 
-        return false;
+            return false;
+        }, false);
     }
 
     /**
@@ -235,27 +252,31 @@ public class AuthService {
             return false;
         }
 
-        try (Connection conn = databaseManager.getConnection()) {
-            String sql = "UPDATE users SET password_hash = ?, updated_at = CURRENT_TIMESTAMP WHERE username = ?";
-            String passwordHash = PasswordUtils.hashPassword(newPassword);
+        String passwordHash = PasswordUtils.hashPassword(newPassword);
 
-            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
-                stmt.setString(1, passwordHash);
-                stmt.setString(2, username.trim());
+        return databaseManager.write(() -> {
+            try (Connection conn = databaseManager.getConnection()) {
+                String sql = "UPDATE users SET password_hash = ?, updated_at = ? WHERE username = ?";
+
+                try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                    stmt.setString(1, passwordHash);
+                    stmt.setLong(2, System.currentTimeMillis());
+                    stmt.setString(3, username.trim());
 
-                int affectedRows = stmt.executeUpdate();
+                    int affectedRows = stmt.executeUpdate();
 
-                if (affectedRows > 0) {
-                    Logger.info("Password reset for user: " + username);
-                    return true;
+                    if (affectedRows > 0) {
+                        Logger.info("Password reset for user: " + username);
+                        return true;
+                    }
                 }
-            }
 
-        } catch (SQLException e) {
-            Logger.error("Error resetting password: " + e.getMessage());
-        }
+            } catch (SQLException e) {
+                Logger.error("Error resetting password: " + e.getMessage());
+            }
 
-        return false;
+            return false;
+        }, false);
     }
 
     /**
@@ -287,24 +308,32 @@ public class AuthService {
                 }
             }
 
-            // Delete user (cascade will handle related records)
-            String deleteSql = "DELETE FROM users WHERE id = ?";
+        } catch (SQLException e) {
+            Logger.error("Error deleting account: " + e.getMessage());
+            return false;
+        }
 
-            try (PreparedStatement deleteStmt = conn.prepareStatement(deleteSql)) {
-                deleteStmt.setInt(1, userId);
+        // Delete user (cascade will handle related records)
+        return databaseManager.write(() -> {
+            try (Connection conn = databaseManager.getConnection()) {
+                String deleteSql = "DELETE FROM users WHERE id = ?";
 
-                int affectedRows = deleteStmt.executeUpdate();
+                try (PreparedStatement deleteStmt = conn.prepareStatement(deleteSql)) {
+                    deleteStmt.setInt(1, userId);
 
-                if (affectedRows > 0) {
-                    Logger.info("Account deleted for user ID: " + userId);
-                    return true;
+                    int affectedRows = deleteStmt.executeUpdate();
+
+                    if (affectedRows > 0) {
+                        Logger.info("Account deleted for user ID: " + userId);
+                        return true;
+                    }
                 }
-            }
 
-        } catch (SQLException e) {
-            Logger.error("Error deleting account: " + e.getMessage());
-        }
+            } catch (SQLException e) {
+                Logger.error("Error deleting account: " + e.getMessage());
+            }
 
-        return false;
+            return false;
+        }, false);
     }
 }
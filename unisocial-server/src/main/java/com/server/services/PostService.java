@@ -5,21 +5,69 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import com.server.DatabaseManager;
+import com.server.db.PostArchiver;
+import com.server.db.ShardRouter;
+import com.server.models.FeedCursor;
+import com.server.models.FeedPage;
 import com.server.models.Post;
+import com.server.models.ToggleResult;
 import com.server.utils.Logger;
 
 /**
- * Service for managing posts
+ * Service for managing posts.
+ *
+ * When the database has archive files (see {@link PostArchiver}), posts not
+ * found on their shard are looked up in its archive. Archived posts can
+ * still be read, liked, bookmarked, edited and deleted.
  */
 public class PostService {
 
+    public static final int DEFAULT_FEED_PAGE_SIZE = 50;
+    public static final int MAX_FEED_PAGE_SIZE = 100;
+    private static final int USER_POSTS_LIMIT = 50;
+
+    // A post and whether the requesting user (first parameter) liked it; likes are on the post's shard,
+    // in the same schema as the post
+    private static final String POST_COLUMNS_IN = """
+        SELECT p.id, p.user_id, p.content, p.image_url,
+               p.created_at, p.updated_at,
+               p.like_count,
+               (SELECT COUNT(*) FROM %1$s.likes l WHERE l.post_id = p.id AND l.user_id = ?) as user_liked
+        FROM %1$s.posts p
+    """;
+    private static final String POST_COLUMNS = POST_COLUMNS_IN.formatted("main");
+    private static final String ARCHIVED_POST_COLUMNS = POST_COLUMNS_IN.formatted(PostArchiver.SCHEMA);
+    private static final Comparator<Post> NEWEST_FIRST =
+            Comparator.comparingLong(Post::getCreatedAt).thenComparingInt(Post::getId).reversed();
+
     private final DatabaseManager databaseManager;
+    private final ShardRouter router;
+    private final TimelineService timelineService;
+    private final boolean archived;
+    private final List<String> postSchemas;
+    private final String bookmarks;
 
-    public PostService(DatabaseManager databaseManager) {
+    public PostService(DatabaseManager databaseManager, TimelineService timelineService) {
         this.databaseManager = databaseManager;
+        this.router = databaseManager.getRouter();
+        this.timelineService = timelineService;
+        this.archived = databaseManager.hasArchive();
+
+        // Where a post may be, in the order to try
+        this.postSchemas = archived ? List.of("main", PostArchiver.SCHEMA) : List.of("main");
+        // A user's bookmarks, live and archived
+        this.bookmarks = archived
+                ? "(SELECT user_id, post_id, created_at FROM main.bookmarks "
+                        + "UNION ALL SELECT user_id, post_id, created_at FROM archive.bookmarks)"
+                : "bookmarks";
     }
 
     /**
@@ -34,101 +82,124 @@ public class PostService {
             return null;
         }
 
-        try (Connection conn = databaseManager.getConnection()) {
-            String sql = """
-                INSERT INTO posts (user_id, content, created_at, updated_at)
-                VALUES (?, ?, CURRENT_TIMESTAMP, CURRENT_TIMESTAMP)
-                RETURNING id, user_id, content, created_at, updated_at
-            """;
-
-            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
-                stmt.setInt(1, userId);
-                stmt.setString(2, content.trim());
-
-                try (ResultSet rs = stmt.executeQuery()) {
-                    if (rs.next()) {
-                        Post post = new Post();
-                        post.setId(rs.getInt("id"));
-                        post.setUserId(rs.getInt("user_id"));
-                        post.setContent(rs.getString("content"));
-                        post.setCreatedAt(rs.getTimestamp("created_at").toLocalDateTime().toString());
-                        post.setUpdatedAt(rs.getTimestamp("updated_at").toLocalDateTime().toString());
-                        post.setLikeCount(0);
-                        post.setLiked(false);
-                        post.setBookmarked(false);
+        int shard = router.shardForUser(userId);
+        Post created = databaseManager.write(shard, () -> {
+            try (Connection conn = databaseManager.getConnection(shard)) {
+                String sql = """
+                    INSERT INTO posts (id, user_id, content, created_at, updated_at)
+                    VALUES (?, ?, ?, ?, ?)
+                    RETURNING id, user_id, content, created_at, updated_at
+                """;
+
+                long now = System.currentTimeMillis();
+                try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                    stmt.setLong(1, nextPostId(conn, shard));
+                    stmt.setInt(2, userId);
+                    stmt.setString(3, content.trim());
+                    stmt.setLong(4, now);
+                    stmt.setLong(5, now);
+
+                    Post post = null;
+                    try (ResultSet rs = stmt.executeQuery()) {
+                        if (rs.next()) {
+                            post = new Post();
+                            post.setId(rs.getInt("id"));
+                            post.setUserId(rs.getInt("user_id"));
+                            post.setContent(rs.getString("content"));
+                            post.setCreatedAt(rs.getLong("created_at"));
+                            post.setUpdatedAt(rs.getLong("updated_at"));
+                            post.setLikeCount(0);
+                            post.setLiked(false);
+                            post.setBookmarked(false);
+                        }
+                    }
 
+                    if (post != null) {
+                        // The author sees the post at once; followers get it from fanOut
+                        timelineService.addOwnPost(conn, userId, post.getId(), post.getCreatedAt());
+                        adjustPostCount(userId, 1);
                         Logger.info("Post created by user ID: " + userId);
                         return post;
                     }
                 }
+
+            } catch (SQLException e) {
+                Logger.error("Error creating post: " + e.getMessage());
             }
 
-        } catch (SQLException e) {
-            Logger.error("Error creating post: " + e.getMessage());
+            return null;
+        }, null);
+
+        if (created != null) {
+            timelineService.fanOut(created.getId(), userId, created.getCreatedAt());
         }
+        return created;
+    }
 
-        return null;
+    /**
+     * Allocate the next post ID on a shard, inside the post's write. IDs are
+     * never reused, and each maps back to the shard it was allocated on.
+     */
+    private long nextPostId(Connection conn, int shard) throws SQLException {
+        String sql = """
+            SELECT max(coalesce((SELECT seq FROM sqlite_sequence WHERE name = 'posts'), 0),
+                       coalesce((SELECT max(id) FROM posts), 0))
+        """;
+        try (PreparedStatement stmt = conn.prepareStatement(sql);
+             ResultSet rs = stmt.executeQuery()) {
+            return router.nextId(rs.next() ? rs.getLong(1) : 0, shard);
+        }
     }
 
     /**
-     * Get feed for a user (posts from followed users + own posts)
+     * Get the first page of a user's feed (posts from followed users + own posts)
      *
      * @param userId The user ID requesting the feed
      * @return List of posts in the feed
      */
     public List<Post> getFeed(int userId) {
-        List<Post> posts = new ArrayList<>();
-
-        try (Connection conn = databaseManager.getConnection()) {
-            String sql = """
-                SELECT DISTINCT p.id, p.user_id, u.username, p.content, p.image_url,
-                       p.created_at, p.updated_at,
-                       (SELECT COUNT(*) FROM likes l WHERE l.post_id = p.id) as like_count,
-                       (SELECT COUNT(*) FROM likes l WHERE l.post_id = p.id AND l.user_id = ?) as user_liked,
-                       (SELECT COUNT(*) FROM bookmarks b WHERE b.post_id = p.id AND b.user_id = ?) as user_bookmarked
-                FROM posts p
-                JOIN users u ON p.user_id = u.id
-                LEFT JOIN follows f ON p.user_id = f.followee_id
-                WHERE p.user_id = ? OR f.follower_id = ?
-                ORDER BY p.created_at DESC
-                LIMIT 50
-           \s""";
-
-            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
-                stmt.setInt(1, userId);
-                stmt.setInt(2, userId);
-                stmt.setInt(3, userId);
-                stmt.setInt(4, userId);
+        return getFeed(userId, null, DEFAULT_FEED_PAGE_SIZE).posts();
+    }
 
-                try (ResultSet rs = stmt.executeQuery()) {
-                    while (rs.next()) {
-                        Post post = new Post();
-                        post.setId(rs.getInt("id"));
-                        post.setUserId(rs.getInt("user_id"));
-                        post.setUsername(rs.getString("username"));
-                        post.setContent(rs.getString("content"));
-                        post.setImageUrl(rs.getString("image_url"));
-                        post.setLikeCount(rs.getInt("like_count"));
-                        post.setLiked(rs.getInt("user_liked") > 0);
-                        post.setBookmarked(rs.getInt("user_bookmarked") > 0);
-                        post.setCreatedAt(rs.getTimestamp("created_at").toLocalDateTime().toString());
-                        post.setUpdatedAt(rs.getTimestamp("updated_at").toLocalDateTime().toString());
-
-                        posts.add(post);
-                    }
-                }
+    /**
+     * Get a page of a user's feed, newest first. The page is found by range
+     * scans seeking past the cursor's (created_at, id) rather than using
+     * OFFSET, so a deep page costs the same as the first.
+     *
+     * @param userId The user ID requesting the feed
+     * @param after Cursor returned with the previous page, or null for the first page
+     * @param limit Maximum number of posts on the page
+     * @return The page and the cursor of the next one
+     */
+    public FeedPage getFeed(int userId, FeedCursor after, int limit) {
+        List<Post> posts = new ArrayList<>();
+        FeedCursor nextCursor = null;
+
+        try {
+            // One extra entry tells whether there is another page
+            List<TimelineService.Entry> entries = timelineService.page(userId, after, limit + 1);
+            if (entries.size() > limit) {
+                TimelineService.Entry last = entries.get(limit - 1);
+                nextCursor = new FeedCursor(last.createdAt(), last.postId());
+                entries = entries.subList(0, limit);
             }
 
+            List<Integer> postIds = new ArrayList<>(entries.size());
+            entries.forEach(entry -> postIds.add(entry.postId()));
+            posts = findPosts(postIds, userId);
+            posts.sort(NEWEST_FIRST);
+
         } catch (SQLException e) {
             Logger.error("Error getting feed: " + e.getMessage());
         }
 
         Logger.info("Feed loaded for user ID " + userId + " with " + posts.size() + " posts");
-        return posts;
+        return new FeedPage(posts, nextCursor);
     }
 
     /**
-     * Get posts by a specific user
+     * Get posts by a specific user, continuing into the archive once the
+     * live posts run out
      *
      * @param userId The user ID whose posts to retrieve
      * @param requestingUserId The user ID making the request (for like/bookmark
@@ -138,43 +209,30 @@ public class PostService {
     public List<Post> getUserPosts(int userId, int requestingUserId) {
         List<Post> posts = new ArrayList<>();
 
-        try (Connection conn = databaseManager.getConnection()) {
+        try (Connection conn = databaseManager.getConnection(router.shardForUser(userId))) {
             String sql = """
-                SELECT p.id, p.user_id, u.username, p.content, p.image_url, 
-                       p.created_at, p.updated_at,
-                       (SELECT COUNT(*) FROM likes l WHERE l.post_id = p.id) as like_count,
-                       (SELECT COUNT(*) FROM likes l WHERE l.post_id = p.id AND l.user_id = ?) as user_liked,
-                       (SELECT COUNT(*) FROM bookmarks b WHERE b.post_id = p.id AND b.user_id = ?) as user_bookmarked
-                FROM posts p
-                JOIN users u ON p.user_id = u.id
                 WHERE p.user_id = ?
                 ORDER BY p.created_at DESC
-                LIMIT 50
+                LIMIT ?
             """;
 
-            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            try (PreparedStatement stmt = conn.prepareStatement(POST_COLUMNS + sql)) {
                 stmt.setInt(1, requestingUserId);
-                stmt.setInt(2, requestingUserId);
-                stmt.setInt(3, userId);
+                stmt.setInt(2, userId);
+                stmt.setInt(3, USER_POSTS_LIMIT);
+                posts = readPosts(stmt);
+            }
 
-                try (ResultSet rs = stmt.executeQuery()) {
-                    while (rs.next()) {
-                        Post post = new Post();
-                        post.setId(rs.getInt("id"));
-                        post.setUserId(rs.getInt("user_id"));
-                        post.setUsername(rs.getString("username"));
-                        post.setContent(rs.getString("content"));
-                        post.setImageUrl(rs.getString("image_url"));
-                        post.setLikeCount(rs.getInt("like_count"));
-                        post.setLiked(rs.getInt("user_liked") > 0);
-                        post.setBookmarked(rs.getInt("user_bookmarked") > 0);
-                        post.setCreatedAt(rs.getTimestamp("created_at").toLocalDateTime().toString());
-                        post.setUpdatedAt(rs.getTimestamp("updated_at").toLocalDateTime().toString());
-
-                        posts.add(post);
-                    }
+            if (archived && posts.size() < USER_POSTS_LIMIT) {
+                try (PreparedStatement stmt = conn.prepareStatement(ARCHIVED_POST_COLUMNS + sql)) {
+                    stmt.setInt(1, requestingUserId);
+                    stmt.setInt(2, userId);
+                    stmt.setInt(3, USER_POSTS_LIMIT - posts.size());
+                    addMissing(posts, readPosts(stmt));
                 }
+                posts.sort(NEWEST_FIRST);
             }
+            hydrate(posts, requestingUserId);
 
         } catch (SQLException e) {
             Logger.error("Error getting user posts: " + e.getMessage());
@@ -184,61 +242,255 @@ public class PostService {
     }
 
     /**
-     * Toggle like on a post
+     * Find posts by ID on whichever shards they are on, reading the shards in
+     * parallel, and fill in their authors and the requesting user's like and
+     * bookmark status. Posts not on their shard are looked for in its
+     * archive. Posts whose author no longer exists are left out.
      *
-     * @param userId The user ID toggling the like
-     * @param postId The post ID to like/unlike
-     * @return true if operation successful, false otherwise
+     * @return The posts found, in no particular order
      */
-    public boolean toggleLike(int userId, int postId) {
-        try (Connection conn = databaseManager.getConnection()) {
-            // Check if user already liked the post
-            String checkSql = "SELECT COUNT(*) FROM likes WHERE user_id = ? AND post_id = ?";
-
-            try (PreparedStatement checkStmt = conn.prepareStatement(checkSql)) {
-                checkStmt.setInt(1, userId);
-                checkStmt.setInt(2, postId);
-
-                try (ResultSet rs = checkStmt.executeQuery()) {
-                    if (rs.next() && rs.getInt(1) > 0) {
-                        // Unlike the post
-                        String deleteSql = "DELETE FROM likes WHERE user_id = ? AND post_id = ?";
-
-                        try (PreparedStatement deleteStmt = conn.prepareStatement(deleteSql)) {
-                            deleteStmt.setInt(1, userId);
-                            deleteStmt.setInt(2, postId);
-
-                            int affectedRows = deleteStmt.executeUpdate();
-
-                            if (affectedRows > 0) {
-                                Logger.info("Post " + postId + " unliked by user " + userId);
-                                return true;
-                            }
-                        }
-                    } else {
-                        // Like the post
-                        String insertSql = "INSERT INTO likes (user_id, post_id, created_at) VALUES (?, ?, CURRENT_TIMESTAMP)";
+    private List<Post> findPosts(List<Integer> postIds, int requestingUserId) throws SQLException {
+        List<Post> posts = findPosts(POST_COLUMNS, postIds, requestingUserId);
+
+        if (archived && posts.size() < postIds.size()) {
+            Set<Integer> found = new HashSet<>();
+            posts.forEach(post -> found.add(post.getId()));
+            List<Integer> missing = new ArrayList<>();
+            for (int postId : postIds) {
+                if (!found.contains(postId)) {
+                    missing.add(postId);
+                }
+            }
+            addMissing(posts, findPosts(ARCHIVED_POST_COLUMNS, missing, requestingUserId));
+        }
 
-                        try (PreparedStatement insertStmt = conn.prepareStatement(insertSql)) {
-                            insertStmt.setInt(1, userId);
-                            insertStmt.setInt(2, postId);
+        hydrate(posts, requestingUserId);
+        return posts;
+    }
 
-                            int affectedRows = insertStmt.executeUpdate();
+    /**
+     * Read posts by ID from the shards they map to, in parallel
+     *
+     * @param columns POST_COLUMNS or ARCHIVED_POST_COLUMNS
+     */
+    private List<Post> findPosts(String columns, List<Integer> postIds, int requestingUserId) throws SQLException {
+        List<Post> posts = new ArrayList<>();
+        if (postIds.isEmpty()) {
+            return posts;
+        }
 
-                            if (affectedRows > 0) {
-                                Logger.info("Post " + postId + " liked by user " + userId);
-                                return true;
-                            }
-                        }
+        Map<Integer, List<Integer>> byShard = router.groupByShard(postIds);
+        String sql = columns + "WHERE p.id IN (SELECT value FROM json_each(?))";
+        for (List<Post> found : databaseManager.readShards(byShard.keySet(), (shard, conn) -> {
+            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                stmt.setInt(1, requestingUserId);
+                stmt.setString(2, DatabaseManager.jsonArray(byShard.get(shard)));
+                return readPosts(stmt);
+            }
+        })) {
+            posts.addAll(found);
+        }
+        return posts;
+    }
+
+    /**
+     * Add archived posts that are not also among the live ones, which only
+     * happens if the server stopped while the archiver was moving them
+     */
+    private static void addMissing(List<Post> posts, List<Post> archivedPosts) {
+        Set<Integer> ids = new HashSet<>();
+        posts.forEach(post -> ids.add(post.getId()));
+        for (Post post : archivedPosts) {
+            if (ids.add(post.getId())) {
+                posts.add(post);
+            }
+        }
+    }
+
+    private static List<Post> readPosts(PreparedStatement stmt) throws SQLException {
+        List<Post> posts = new ArrayList<>();
+        try (ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                Post post = new Post();
+                post.setId(rs.getInt("id"));
+                post.setUserId(rs.getInt("user_id"));
+                post.setContent(rs.getString("content"));
+                post.setImageUrl(rs.getString("image_url"));
+                post.setLikeCount(rs.getInt("like_count"));
+                post.setLiked(rs.getInt("user_liked") > 0);
+                post.setCreatedAt(rs.getLong("created_at"));
+                post.setUpdatedAt(rs.getLong("updated_at"));
+
+                posts.add(post);
+            }
+        }
+        return posts;
+    }
+
+    /**
+     * Fill in the authors' usernames from the main database and the
+     * requesting user's bookmarks from their shard. Posts whose author no
+     * longer exists are removed.
+     */
+    private void hydrate(List<Post> posts, int requestingUserId) throws SQLException {
+        if (posts.isEmpty()) {
+            return;
+        }
+
+        Set<Integer> authorIds = new HashSet<>();
+        List<Integer> postIds = new ArrayList<>(posts.size());
+        for (Post post : posts) {
+            authorIds.add(post.getUserId());
+            postIds.add(post.getId());
+        }
+
+        Map<Integer, String> usernames = new HashMap<>();
+        String usersSql = "SELECT id, username FROM users WHERE id IN (SELECT value FROM json_each(?))";
+        try (Connection conn = databaseManager.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(usersSql)) {
+            stmt.setString(1, DatabaseManager.jsonArray(authorIds));
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    usernames.put(rs.getInt(1), rs.getString(2));
+                }
+            }
+        }
+
+        Set<Integer> bookmarked = new HashSet<>();
+        String bookmarksSql = "SELECT post_id FROM " + bookmarks + " WHERE user_id = ? AND post_id IN (SELECT value FROM json_each(?))";
+        try (Connection conn = databaseManager.getConnection(router.shardForUser(requestingUserId));
+             PreparedStatement stmt = conn.prepareStatement(bookmarksSql)) {
+            stmt.setInt(1, requestingUserId);
+            stmt.setString(2, DatabaseManager.jsonArray(postIds));
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    bookmarked.add(rs.getInt(1));
+                }
+            }
+        }
+
+        posts.removeIf(post -> !usernames.containsKey(post.getUserId()));
+        for (Post post : posts) {
+            post.setUsername(usernames.get(post.getUserId()));
+            post.setBookmarked(bookmarked.contains(post.getId()));
+        }
+    }
+
+    /**
+     * Toggle like on a post. The like row and like_count change in one write
+     * on the post's shard, or in the archive if the post is archived.
+     *
+     * @param userId The user ID toggling the like
+     * @param postId The post ID to like/unlike
+     * @return Whether the post is now liked and its new like count, or null if the toggle failed
+     */
+    public ToggleResult toggleLike(int userId, int postId) {
+        int shard = router.shardForPost(postId);
+        for (String schema : postSchemas) {
+            // Not finding the post rolls the write back, like row included
+            ToggleResult result = databaseManager.write(shard, () -> {
+                try (Connection conn = databaseManager.getConnection(shard)) {
+                    boolean liked = toggleRow(conn, schema + ".likes", userId, postId);
+                    int likeCount = adjustLikeCount(conn, schema, postId, liked ? 1 : -1);
+                    if (likeCount < 0) {
+                        return null;
                     }
+
+                    Logger.info("Post " + postId + (liked ? " liked" : " unliked") + " by user " + userId);
+                    return new ToggleResult(liked, likeCount);
+
+                } catch (SQLException e) {
+                    Logger.error("Error toggling like: " + e.getMessage());
                 }
+
+                return null;
+            }, null);
+            if (result != null) {
+                return result;
             }
+        }
 
-        } catch (SQLException e) {
-            Logger.error("Error toggling like: " + e.getMessage());
+        Logger.warn("Post " + postId + " not found for like");
+        return null;
+    }
+
+    /**
+     * Remove a user's like or bookmark row for a post if there is one,
+     * otherwise add it
+     *
+     * @param table likes or bookmarks
+     * @return true if the row now exists
+     */
+    private static boolean toggleRow(Connection conn, String table, int userId, int postId) throws SQLException {
+        if (deleteRow(conn, table, userId, postId)) {
+            return false;
         }
 
-        return false;
+        String insertSql = "INSERT INTO " + table + " (user_id, post_id, created_at) VALUES (?, ?, ?) "
+                + "ON CONFLICT (user_id, post_id) DO NOTHING";
+        try (PreparedStatement stmt = conn.prepareStatement(insertSql)) {
+            stmt.setInt(1, userId);
+            stmt.setInt(2, postId);
+            stmt.setLong(3, System.currentTimeMillis());
+            stmt.executeUpdate();
+        }
+        return true;
+    }
+
+    /**
+     * Remove a user's like or bookmark row for a post
+     *
+     * @return true if there was one
+     */
+    private static boolean deleteRow(Connection conn, String table, int userId, int postId) throws SQLException {
+        String sql = "DELETE FROM " + table + " WHERE user_id = ? AND post_id = ? RETURNING id";
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setInt(1, userId);
+            stmt.setInt(2, postId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next();
+            }
+        }
+    }
+
+    /**
+     * Update a post's denormalized like counter in the same write as the like row
+     *
+     * @param schema main, or the archive
+     * @return The post's new like count, or -1 if the post does not exist there
+     */
+    private int adjustLikeCount(Connection conn, String schema, int postId, int delta) throws SQLException {
+        String sql = "UPDATE " + schema + ".posts SET like_count = like_count + ? WHERE id = ? RETURNING like_count";
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setInt(1, delta);
+            stmt.setInt(2, postId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() ? rs.getInt(1) : -1;
+            }
+        }
+    }
+
+    /**
+     * Update a user's denormalized post counter in the main database. Called
+     * inside the post's write, it joins that write when the post is on the
+     * main database and is queued as its own write otherwise.
+     */
+    private void adjustPostCount(int userId, int delta) {
+        databaseManager.writeAsync(() -> {
+            String sql = "UPDATE users SET post_count = post_count + ? WHERE id = ?";
+            try (Connection conn = databaseManager.getConnection();
+                 PreparedStatement stmt = conn.prepareStatement(sql)) {
+                stmt.setInt(1, delta);
+                stmt.setInt(2, userId);
+                stmt.executeUpdate();
+                return true;
+
+            } catch (SQLException e) {
+                Logger.error("Error updating post count of user " + userId + ": " + e.getMessage());
+            }
+
+            return false;
+        }, false);
     }
 
     /**
@@ -248,9 +500,12 @@ public class PostService {
      * @return The number of likes for the post, or -1 if an error occurs
      */
     public int getLikeCount(int postId) {
-        String sql = "SELECT COUNT(*) as like_count FROM likes WHERE post_id = ?";
+        String sql = archived
+                ? "SELECT like_count FROM main.posts WHERE id = ?1 UNION ALL SELECT like_count FROM archive.posts WHERE id = ?1"
+                : "SELECT like_count FROM posts WHERE id = ?";
 
-        try (Connection conn = databaseManager.getConnection(); PreparedStatement stmt = conn.prepareStatement(sql)) {
+        try (Connection conn = databaseManager.getConnection(router.shardForPost(postId));
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
 
             stmt.setInt(1, postId);
 
@@ -267,112 +522,142 @@ public class PostService {
     }
 
     /**
-     * Toggle bookmark on a post
+     * Toggle bookmark on a post. Bookmarks are kept on the bookmarking user's
+     * shard; removing one may take it out of the archive, adding one always
+     * goes to the live table.
      *
      * @param userId The user ID toggling the bookmark
      * @param postId The post ID to bookmark/unbookmark
-     * @return true if operation successful, false otherwise
+     * @return Whether the post is now bookmarked, or null if the toggle failed
      */
-    public boolean toggleBookmark(int userId, int postId) {
-        try (Connection conn = databaseManager.getConnection()) {
-            // Check if user already bookmarked the post
-            String checkSql = "SELECT COUNT(*) FROM bookmarks WHERE user_id = ? AND post_id = ?";
-
-            try (PreparedStatement checkStmt = conn.prepareStatement(checkSql)) {
-                checkStmt.setInt(1, userId);
-                checkStmt.setInt(2, postId);
-
-                try (ResultSet rs = checkStmt.executeQuery()) {
-                    if (rs.next() && rs.getInt(1) > 0) {
-                        // Remove bookmark
-                        String deleteSql = "DELETE FROM bookmarks WHERE user_id = ? AND post_id = ?";
-
-                        try (PreparedStatement deleteStmt = conn.prepareStatement(deleteSql)) {
-                            deleteStmt.setInt(1, userId);
-                            deleteStmt.setInt(2, postId);
-
-                            int affectedRows = deleteStmt.executeUpdate();
-
-                            if (affectedRows > 0) {
-                                Logger.info("Post " + postId + " unbookmarked by user " + userId);
-                                return true;
-                            }
-                        }
-                    } else {
-                        // Add bookmark
-                        String insertSql = "INSERT INTO bookmarks (user_id, post_id, created_at) VALUES (?, ?, CURRENT_TIMESTAMP)";
-
-                        try (PreparedStatement insertStmt = conn.prepareStatement(insertSql)) {
-                            insertStmt.setInt(1, userId);
-                            insertStmt.setInt(2, postId);
-
-                            int affectedRows = insertStmt.executeUpdate();
-
-                            if (affectedRows > 0) {
-                                Logger.info("Post " + postId + " bookmarked by user " + userId);
-                                return true;
-                            }
-                        }
-                    }
+    public Boolean toggleBookmark(int userId, int postId) {
+        int shard = router.shardForUser(userId);
+        return databaseManager.write(shard, () -> {
+            try (Connection conn = databaseManager.getConnection(shard)) {
+                if (archived && deleteRow(conn, PostArchiver.SCHEMA + ".bookmarks", userId, postId)) {
+                    Logger.info("Post " + postId + " unbookmarked by user " + userId);
+                    return false;
                 }
-            }
+                boolean bookmarked = toggleRow(conn, "main.bookmarks", userId, postId);
+                Logger.info("Post " + postId + (bookmarked ? " bookmarked" : " unbookmarked") + " by user " + userId);
+                return bookmarked;
 
-        } catch (SQLException e) {
-            Logger.error("Error toggling bookmark: " + e.getMessage());
-        }
+            } catch (SQLException e) {
+                Logger.error("Error toggling bookmark: " + e.getMessage());
+            }
 
-        return false;
+            return null;
+        }, null);
     }
 
     /**
-     * Delete a post
+     * Delete a post, live or archived
      *
      * @param userId The user ID requesting deletion
      * @param postId The post ID to delete
      * @return true if post deleted successfully, false otherwise
      */
     public boolean deletePost(int userId, int postId) {
-        try (Connection conn = databaseManager.getConnection()) {
-            // Check if user owns the post
-            String checkSql = "SELECT user_id FROM posts WHERE id = ?";
+        int shard = router.shardForPost(postId);
+        for (String schema : postSchemas) {
+            Boolean deleted = databaseManager.write(shard, () -> {
+                try (Connection conn = databaseManager.getConnection(shard)) {
+                    // Check if user owns the post
+                    Boolean owner = isOwner(conn, schema, userId, postId, "delete");
+                    if (owner == null || !owner) {
+                        return owner;
+                    }
 
-            try (PreparedStatement checkStmt = conn.prepareStatement(checkSql)) {
-                checkStmt.setInt(1, postId);
+                    // The post's likes are on its shard with it; bookmarks are on every shard
+                    String deleteSql = "DELETE FROM " + schema + ".posts WHERE id = ?";
+                    String likesSql = "DELETE FROM " + schema + ".likes WHERE post_id = ?";
 
-                try (ResultSet rs = checkStmt.executeQuery()) {
-                    if (rs.next()) {
-                        int postOwnerId = rs.getInt("user_id");
+                    try (PreparedStatement deleteStmt = conn.prepareStatement(deleteSql);
+                         PreparedStatement likesStmt = conn.prepareStatement(likesSql)) {
+                        deleteStmt.setInt(1, postId);
 
-                        if (postOwnerId != userId) {
-                            Logger.warn("User " + userId + " attempted to delete post " + postId + " owned by user " + postOwnerId);
-                            return false;
+                        int affectedRows = deleteStmt.executeUpdate();
+
+                        if (affectedRows > 0) {
+                            likesStmt.setInt(1, postId);
+                            likesStmt.executeUpdate();
+                            removeBookmarks(postId);
+                            timelineService.removePost(postId);
+                            adjustPostCount(userId, -1);
+                            Logger.info("Post " + postId + " deleted by user " + userId);
+                            return true;
                         }
-                    } else {
-                        Logger.warn("Post " + postId + " not found for deletion");
-                        return false;
                     }
-                }
-            }
 
-            // Delete the post (cascade will handle likes and bookmarks)
-            String deleteSql = "DELETE FROM posts WHERE id = ?";
+                } catch (SQLException e) {
+                    Logger.error("Error deleting post: " + e.getMessage());
+                }
 
-            try (PreparedStatement deleteStmt = conn.prepareStatement(deleteSql)) {
-                deleteStmt.setInt(1, postId);
+                return false;
+            }, false);
+            if (deleted != null) {
+                return deleted;
+            }
+        }
 
-                int affectedRows = deleteStmt.executeUpdate();
+        Logger.warn("Post " + postId + " not found for deletion");
+        return false;
+    }
 
-                if (affectedRows > 0) {
-                    Logger.info("Post " + postId + " deleted by user " + userId);
+    /**
+     * Remove a deleted post from every user's bookmarks. Called inside the
+     * delete's write, the post's own shard is cleaned in that write and the
+     * other shards in writes of their own.
+     */
+    private void removeBookmarks(int postId) {
+        for (int shard : router.allShards()) {
+            databaseManager.writeAsync(shard, () -> {
+                try (Connection conn = databaseManager.getConnection(shard)) {
+                    for (String schema : postSchemas) {
+                        try (PreparedStatement stmt = conn.prepareStatement(
+                                "DELETE FROM " + schema + ".bookmarks WHERE post_id = ?")) {
+                            stmt.setInt(1, postId);
+                            stmt.executeUpdate();
+                        }
+                    }
                     return true;
+
+                } catch (SQLException e) {
+                    Logger.error("Error removing post " + postId + " from bookmarks: " + e.getMessage());
                 }
-            }
 
-        } catch (SQLException e) {
-            Logger.error("Error deleting post: " + e.getMessage());
+                return false;
+            }, false);
         }
+    }
 
-        return false;
+    /**
+     * Check that a user owns a post before changing it
+     *
+     * @param schema main, or the archive
+     * @param action What the user attempted, for the log
+     * @return Whether the user owns the post, or null if the post is not in the schema
+     */
+    private static Boolean isOwner(Connection conn, String schema, int userId, int postId, String action)
+            throws SQLException {
+        String checkSql = "SELECT user_id FROM " + schema + ".posts WHERE id = ?";
+
+        try (PreparedStatement checkStmt = conn.prepareStatement(checkSql)) {
+            checkStmt.setInt(1, postId);
+
+            try (ResultSet rs = checkStmt.executeQuery()) {
+                if (!rs.next()) {
+                    return null;
+                }
+
+                int postOwnerId = rs.getInt("user_id");
+                if (postOwnerId != userId) {
+                    Logger.warn("User " + userId + " attempted to " + action + " post " + postId + " owned by user " + postOwnerId);
+                    return false;
+                }
+                return true;
+            }
+        }
     }
 
     /**
@@ -384,40 +669,10 @@ public class PostService {
      * @return Post object if found, null otherwise
      */
     public Post getPostById(int postId, int requestingUserId) {
-        try (Connection conn = databaseManager.getConnection()) {
-            String sql = """
-                SELECT p.id, p.user_id, u.username, p.content, p.image_url, 
-                       p.created_at, p.updated_at,
-                       (SELECT COUNT(*) FROM likes l WHERE l.post_id = p.id) as like_count,
-                       (SELECT COUNT(*) FROM likes l WHERE l.post_id = p.id AND l.user_id = ?) as user_liked,
-                       (SELECT COUNT(*) FROM bookmarks b WHERE b.post_id = p.id AND b.user_id = ?) as user_bookmarked
-                FROM posts p
-                JOIN users u ON p.user_id = u.id
-                WHERE p.id = ?
-            """;
-
-            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
-                stmt.setInt(1, requestingUserId);
-                stmt.setInt(2, requestingUserId);
-                stmt.setInt(3, postId);
-
-                try (ResultSet rs = stmt.executeQuery()) {
-                    if (rs.next()) {
-                        Post post = new Post();
-                        post.setId(rs.getInt("id"));
-                        post.setUserId(rs.getInt("user_id"));
-                        post.setUsername(rs.getString("username"));
-                        post.setContent(rs.getString("content"));
-                        post.setImageUrl(rs.getString("image_url"));
-                        post.setLikeCount(rs.getInt("like_count"));
-                        post.setLiked(rs.getInt("user_liked") > 0);
-                        post.setBookmarked(rs.getInt("user_bookmarked") > 0);
-                        post.setCreatedAt(rs.getTimestamp("created_at").toLocalDateTime().toString());
-                        post.setUpdatedAt(rs.getTimestamp("updated_at").toLocalDateTime().toString());
-
-                        return post;
-                    }
-                }
+        try {
+            List<Post> posts = findPosts(List.of(postId), requestingUserId);
+            if (!posts.isEmpty()) {
+                return posts.get(0);
             }
 
         } catch (SQLException e) {
@@ -436,44 +691,28 @@ public class PostService {
     public List<Post> getBookmarkedPosts(int userId) {
         List<Post> posts = new ArrayList<>();
 
-        try (Connection conn = databaseManager.getConnection()) {
+        try {
+            List<Integer> postIds = new ArrayList<>();
             String sql = """
-                SELECT p.id, p.user_id, u.username, p.content, p.image_url, 
-                       p.created_at, p.updated_at,
-                       (SELECT COUNT(*) FROM likes l WHERE l.post_id = p.id) as like_count,
-                       (SELECT COUNT(*) FROM likes l WHERE l.post_id = p.id AND l.user_id = ?) as user_liked,
-                       1 as user_bookmarked
-                FROM posts p
-                JOIN users u ON p.user_id = u.id
-                JOIN bookmarks b ON p.id = b.post_id
-                WHERE b.user_id = ?
-                ORDER BY b.created_at DESC
+                SELECT post_id FROM %s
+                WHERE user_id = ?
+                ORDER BY created_at DESC
                 LIMIT 50
-            """;
-
-            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            """.formatted(bookmarks);
+            try (Connection conn = databaseManager.getConnection(router.shardForUser(userId));
+                 PreparedStatement stmt = conn.prepareStatement(sql)) {
                 stmt.setInt(1, userId);
-                stmt.setInt(2, userId);
-
                 try (ResultSet rs = stmt.executeQuery()) {
                     while (rs.next()) {
-                        Post post = new Post();
-                        post.setId(rs.getInt("id"));
-                        post.setUserId(rs.getInt("user_id"));
-                        post.setUsername(rs.getString("username"));
-                        post.setContent(rs.getString("content"));
-                        post.setImageUrl(rs.getString("image_url"));
-                        post.setLikeCount(rs.getInt("like_count"));
-                        post.setLiked(rs.getInt("user_liked") > 0);
-                        post.setBookmarked(true);
-                        post.setCreatedAt(rs.getTimestamp("created_at").toLocalDateTime().toString());
-                        post.setUpdatedAt(rs.getTimestamp("updated_at").toLocalDateTime().toString());
-
-                        posts.add(post);
+                        postIds.add(rs.getInt(1));
                     }
                 }
             }
 
+            // The posts may be on any shard; keep them in bookmark order
+            posts = findPosts(postIds, userId);
+            posts.sort(Comparator.comparingInt(post -> postIds.indexOf(post.getId())));
+
         } catch (SQLException e) {
             Logger.error("Error getting bookmarked posts: " + e.getMessage());
         }
@@ -482,7 +721,7 @@ public class PostService {
     }
 
     /**
-     * Update post content
+     * Update post content, live or archived
      *
      * @param userId The user ID requesting the update
      * @param postId The post ID to update
@@ -494,47 +733,44 @@ public class PostService {
             return false;
         }
 
-        try (Connection conn = databaseManager.getConnection()) {
-            // Check if user owns the post
-            String checkSql = "SELECT user_id FROM posts WHERE id = ?";
+        int shard = router.shardForPost(postId);
+        for (String schema : postSchemas) {
+            Boolean updated = databaseManager.write(shard, () -> {
+                try (Connection conn = databaseManager.getConnection(shard)) {
+                    // Check if user owns the post
+                    Boolean owner = isOwner(conn, schema, userId, postId, "update");
+                    if (owner == null || !owner) {
+                        return owner;
+                    }
+
+                    // Update the post
+                    String updateSql = "UPDATE " + schema + ".posts SET content = ?, updated_at = ? WHERE id = ?";
 
-            try (PreparedStatement checkStmt = conn.prepareStatement(checkSql)) {
-                checkStmt.setInt(1, postId);
+                    try (PreparedStatement updateStmt = conn.prepareStatement(updateSql)) {
+                        updateStmt.setString(1, newContent.trim());
+                        updateStmt.setLong(2, System.currentTimeMillis());
+                        updateStmt.setInt(3, postId);
 
-                try (ResultSet rs = checkStmt.executeQuery()) {
-                    if (rs.next()) {
-                        int postOwnerId = rs.getInt("user_id");
+                        int affectedRows = updateStmt.executeUpdate();
 
-                        if (postOwnerId != userId) {
-                            Logger.warn("User " + userId + " attempted to update post " + postId + " owned by user " + postOwnerId);
-                            return false;
+                        if (affectedRows > 0) {
+                            Logger.info("Post " + postId + " updated by user " + userId);
+                            return true;
                         }
-                    } else {
-                        Logger.warn("Post " + postId + " not found for update");
-                        return false;
                     }
-                }
-            }
-
-            // Update the post
-            String updateSql = "UPDATE posts SET content = ?, updated_at = CURRENT_TIMESTAMP WHERE id = ?";
 
-            try (PreparedStatement updateStmt = conn.prepareStatement(updateSql)) {
-                updateStmt.setString(1, newContent.trim());
-                updateStmt.setInt(2, postId);
-
-                int affectedRows = updateStmt.executeUpdate();
-
-                if (affectedRows > 0) {
-                    Logger.info("Post " + postId + " updated by user " + userId);
-                    return true;
+                } catch (SQLException e) {
+                    Logger.error("Error updating post: " + e.getMessage());
                 }
-            }
 
-        } catch (SQLException e) {
-            Logger.error("Error updating post: " + e.getMessage());
+                return false;
+            }, false);
+            if (updated != null) {
+                return updated;
+            }
         }
 
+        Logger.warn("Post " + postId + " not found for update");
         return false;
     }
 }
@@ -0,0 +1,396 @@
+package com.server.services;
+
+import com.server.DatabaseManager;
+import com.server.db.ShardRouter;
+import com.server.models.FeedCursor;
+import com.server.utils.Logger;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.StringJoiner;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Service for maintaining and reading home timelines.
+ *
+ * Posts are pushed into followers' timelines when written, except for
+ * authors with more followers than the fan-out threshold: copying their
+ * posts would cost one row per follower, so their followers pull them from
+ * the author's recent posts when reading and merge them into the page.
+ *
+ * A user's timeline lives on their own shard, so pushing a post is one
+ * write per shard its followers are on, queued after the post's own write.
+ */
+public class TimelineService {
+    private static final Comparator<Entry> NEWEST_FIRST =
+            Comparator.comparingLong(Entry::createdAt).thenComparingInt(Entry::postId).reversed();
+
+    private final DatabaseManager databaseManager;
+    private final ShardRouter router;
+    private final int fanOutThreshold;
+
+    /**
+     * @param fanOutThreshold Authors with more followers are pulled at read
+     *        time instead of fanned out; 0 always fans out
+     */
+    public TimelineService(DatabaseManager databaseManager, int fanOutThreshold) {
+        this.databaseManager = databaseManager;
+        this.router = databaseManager.getRouter();
+        this.fanOutThreshold = fanOutThreshold;
+    }
+
+    /**
+     * A post's position in a timeline
+     *
+     * @param postId The post ID
+     * @param createdAt created_at of the post in epoch milliseconds
+     */
+    public record Entry(int postId, long createdAt) {
+    }
+
+    /**
+     * Get the newest entries of a user's feed past the cursor, merging the
+     * user's timeline with the recent posts of followed high-follower authors.
+     * The timeline and the pulled authors' shards are read in parallel.
+     *
+     * @param userId The user ID whose feed is read
+     * @param after Cursor of the previous page, or null for the first page
+     * @param limit Maximum number of entries
+     * @return Entries newest first
+     */
+    public List<Entry> page(int userId, FeedCursor after, int limit) throws SQLException {
+        String timelineSql = """
+            SELECT post_id, created_at FROM timeline
+            WHERE user_id = ?
+            %s
+            ORDER BY created_at DESC, post_id DESC
+            LIMIT ?
+        """.formatted(after != null ? "AND (created_at, post_id) < (?, ?)" : "");
+
+        // Each pulled author is one range scan of idx_posts_user_recent
+        String authorSql = """
+            SELECT id, created_at FROM posts
+            WHERE user_id = ?
+            %s
+            ORDER BY created_at DESC, id DESC
+            LIMIT ?
+        """.formatted(after != null ? "AND (created_at, id) < (?, ?)" : "");
+
+        int timelineShard = router.shardForUser(userId);
+        Map<Integer, List<Integer>> pulledByShard = router.groupByShard(pulledAuthors(userId));
+        Set<Integer> shards = new LinkedHashSet<>();
+        shards.add(timelineShard);
+        shards.addAll(pulledByShard.keySet());
+
+        TreeSet<Entry> entries = new TreeSet<>(NEWEST_FIRST);
+        for (List<Entry> found : databaseManager.readShards(shards, (shard, conn) -> {
+            List<Entry> shardEntries = new ArrayList<>();
+            if (shard == timelineShard) {
+                try (PreparedStatement stmt = conn.prepareStatement(timelineSql)) {
+                    readEntries(stmt, userId, after, limit, shardEntries);
+                }
+            }
+            for (int authorId : pulledByShard.getOrDefault(shard, List.of())) {
+                try (PreparedStatement stmt = conn.prepareStatement(authorSql)) {
+                    readEntries(stmt, authorId, after, limit, shardEntries);
+                }
+            }
+            return shardEntries;
+        })) {
+            entries.addAll(found);
+        }
+
+        List<Entry> page = new ArrayList<>(limit);
+        for (Entry entry : entries) {
+            if (page.size() == limit) {
+                break;
+            }
+            page.add(entry);
+        }
+        return page;
+    }
+
+    private static void readEntries(PreparedStatement stmt, int id, FeedCursor after, int limit,
+            List<Entry> entries) throws SQLException {
+        int index = 1;
+        stmt.setInt(index++, id);
+        if (after != null) {
+            stmt.setLong(index++, after.createdAt());
+            stmt.setInt(index++, after.id());
+        }
+        stmt.setInt(index, limit);
+
+        try (ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                entries.add(new Entry(rs.getInt(1), rs.getLong(2)));
+            }
+        }
+    }
+
+    /**
+     * Get the followed authors whose posts are not fanned out
+     */
+    private List<Integer> pulledAuthors(int userId) throws SQLException {
+        List<Integer> authors = new ArrayList<>();
+        if (fanOutThreshold <= 0) {
+            return authors;
+        }
+
+        String sql = """
+            SELECT f.followee_id FROM follows f
+            JOIN users u ON u.id = f.followee_id
+            WHERE f.follower_id = ? AND u.followers_count > ?
+        """;
+        try (Connection conn = databaseManager.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setInt(1, userId);
+            stmt.setInt(2, fanOutThreshold);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    authors.add(rs.getInt(1));
+                }
+            }
+        }
+        return authors;
+    }
+
+    /**
+     * Add a new post to its author's own timeline, inside the post's write.
+     * The author's timeline is on the same shard as the post.
+     */
+    public void addOwnPost(Connection conn, int authorId, int postId, long createdAt) throws SQLException {
+        String sql = "INSERT OR IGNORE INTO timeline (user_id, post_id, created_at) VALUES (?, ?, ?)";
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setInt(1, authorId);
+            stmt.setInt(2, postId);
+            stmt.setLong(3, createdAt);
+            stmt.executeUpdate();
+        }
+    }
+
+    /**
+     * Copy a new post into its author's followers' timelines, unless the
+     * author is above the threshold. The followers are read and the copies
+     * queued in the background, so creating the post does not wait for it.
+     */
+    public void fanOut(int postId, int authorId, long createdAt) {
+        String sql = """
+            SELECT f.follower_id FROM follows f
+            JOIN users a ON a.id = f.followee_id
+            WHERE f.followee_id = ? AND (? <= 0 OR a.followers_count <= ?)
+        """;
+        databaseManager.readAsync(ShardRouter.MAIN, (shard, conn) -> {
+            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                stmt.setInt(1, authorId);
+                stmt.setInt(2, fanOutThreshold);
+                stmt.setInt(3, fanOutThreshold);
+                return readIds(stmt);
+            }
+        }).thenAccept(followers -> {
+            addEntries(followers, List.of(new Entry(postId, createdAt)));
+            Logger.debug("Post " + postId + " fanned out to " + followers.size() + " timelines");
+        }).exceptionally(e -> {
+            Logger.error("Error fanning out post " + postId + ": " + e.getMessage());
+            return null;
+        });
+    }
+
+    /**
+     * Copy all of an author's posts into every follower's timeline, for an
+     * author who dropped to the threshold and is no longer pulled. Queued in
+     * the background.
+     */
+    public void fanOutAuthor(int authorId) {
+        CompletableFuture<List<Integer>> followers = databaseManager.readAsync(ShardRouter.MAIN, (shard, conn) -> {
+            try (PreparedStatement stmt = conn.prepareStatement("SELECT follower_id FROM follows WHERE followee_id = ?")) {
+                stmt.setInt(1, authorId);
+                return readIds(stmt);
+            }
+        });
+        CompletableFuture<List<Entry>> posts = databaseManager.readAsync(router.shardForUser(authorId),
+                (shard, conn) -> authorPosts(conn, authorId));
+
+        followers.thenAcceptBoth(posts, (followerIds, entries) -> {
+            addEntries(followerIds, entries);
+            Logger.info("User " + authorId + " is fanned out again; adding " + entries.size() + " posts to "
+                    + followerIds.size() + " timelines");
+        }).exceptionally(e -> {
+            Logger.error("Error fanning out user " + authorId + ": " + e.getMessage());
+            return null;
+        });
+    }
+
+    /**
+     * Queue the entries for each user's timeline, one write per shard
+     */
+    private void addEntries(List<Integer> userIds, List<Entry> entries) {
+        if (userIds.isEmpty() || entries.isEmpty()) {
+            return;
+        }
+        String sql = """
+            INSERT OR IGNORE INTO timeline (user_id, post_id, created_at)
+            SELECT u.value, json_extract(e.value, '$[0]'), json_extract(e.value, '$[1]')
+            FROM json_each(?) u, json_each(?) e
+        """;
+        String entriesJson = entriesJson(entries);
+
+        router.groupByShard(userIds).forEach((shard, users) -> databaseManager.writeAsync(shard, () -> {
+            try (Connection conn = databaseManager.getConnection(shard);
+                 PreparedStatement stmt = conn.prepareStatement(sql)) {
+                stmt.setString(1, DatabaseManager.jsonArray(users));
+                stmt.setString(2, entriesJson);
+                stmt.executeUpdate();
+                return true;
+
+            } catch (SQLException e) {
+                Logger.error("Error adding timeline entries on shard " + shard + ": " + e.getMessage());
+            }
+
+            return false;
+        }, false));
+    }
+
+    /**
+     * Remove a deleted post from every timeline. Called inside the delete's
+     * write, the post's own shard is cleaned in that write and the other
+     * shards in writes of their own.
+     */
+    public void removePost(int postId) {
+        for (int shard : router.allShards()) {
+            databaseManager.writeAsync(shard, () -> {
+                try (Connection conn = databaseManager.getConnection(shard);
+                     PreparedStatement stmt = conn.prepareStatement("DELETE FROM timeline WHERE post_id = ?")) {
+                    stmt.setInt(1, postId);
+                    stmt.executeUpdate();
+                    return true;
+
+                } catch (SQLException e) {
+                    Logger.error("Error removing post " + postId + " from timelines: " + e.getMessage());
+                }
+
+                return false;
+            }, false);
+        }
+    }
+
+    /**
+     * Add a newly followed user's posts to the follower's timeline. Called
+     * inside the follow's write, it joins that write when the follower's
+     * timeline is on the main database. Posts of authors above the threshold
+     * are pulled instead.
+     *
+     * @param followersAfter The followee's follower count after the follow
+     */
+    public void follow(int followerId, int followeeId, int followersAfter) {
+        if (fanOutThreshold > 0 && followersAfter > fanOutThreshold) {
+            return;
+        }
+
+        int timelineShard = router.shardForUser(followerId);
+        databaseManager.writeAsync(timelineShard, () -> {
+            String sql = """
+                INSERT OR IGNORE INTO timeline (user_id, post_id, created_at)
+                SELECT ?, json_extract(e.value, '$[0]'), json_extract(e.value, '$[1]')
+                FROM json_each(?) e
+            """;
+            try (Connection postsConn = databaseManager.getConnection(router.shardForUser(followeeId))) {
+                List<Entry> entries = authorPosts(postsConn, followeeId);
+                try (Connection conn = databaseManager.getConnection(timelineShard);
+                     PreparedStatement stmt = conn.prepareStatement(sql)) {
+                    stmt.setInt(1, followerId);
+                    stmt.setString(2, entriesJson(entries));
+                    stmt.executeUpdate();
+                }
+                return true;
+
+            } catch (SQLException e) {
+                Logger.error("Error adding user " + followeeId + " to the timeline of user " + followerId + ": "
+                        + e.getMessage());
+            }
+
+            return false;
+        }, false);
+    }
+
+    /**
+     * Remove an unfollowed user's posts from the follower's timeline. Called
+     * inside the unfollow's write, it joins that write when the follower's
+     * timeline is on the main database.
+     *
+     * @param followersAfter The followee's follower count after the unfollow
+     * @return true if the followee just dropped to the threshold, so their
+     *         posts must now be fanned out with {@link #fanOutAuthor}
+     */
+    public boolean unfollow(int followerId, int followeeId, int followersAfter) {
+        int timelineShard = router.shardForUser(followerId);
+        databaseManager.writeAsync(timelineShard, () -> {
+            String sql = """
+                DELETE FROM timeline
+                WHERE user_id = ? AND post_id IN (SELECT json_extract(value, '$[0]') FROM json_each(?))
+            """;
+            try (Connection postsConn = databaseManager.getConnection(router.shardForUser(followeeId))) {
+                List<Entry> entries = authorPosts(postsConn, followeeId);
+                try (Connection conn = databaseManager.getConnection(timelineShard);
+                     PreparedStatement stmt = conn.prepareStatement(sql)) {
+                    stmt.setInt(1, followerId);
+                    stmt.setString(2, entriesJson(entries));
+                    stmt.executeUpdate();
+                }
+                return true;
+
+            } catch (SQLException e) {
+                Logger.error("Error removing user " + followeeId + " from the timeline of user " + followerId + ": "
+                        + e.getMessage());
+            }
+
+            return false;
+        }, false);
+        return fanOutThreshold > 0 && followersAfter == fanOutThreshold;
+    }
+
+    /**
+     * Get every post of an author, from the author's shard
+     */
+    private static List<Entry> authorPosts(Connection conn, int authorId) throws SQLException {
+        List<Entry> entries = new ArrayList<>();
+        try (PreparedStatement stmt = conn.prepareStatement("SELECT id, created_at FROM posts WHERE user_id = ?")) {
+            stmt.setInt(1, authorId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    entries.add(new Entry(rs.getInt(1), rs.getLong(2)));
+                }
+            }
+        }
+        return entries;
+    }
+
+    private static List<Integer> readIds(PreparedStatement stmt) throws SQLException {
+        List<Integer> ids = new ArrayList<>();
+        try (ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                ids.add(rs.getInt(1));
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Bind entries as one parameter, a JSON array of [post_id, created_at]
+     */
+    private static String entriesJson(List<Entry> entries) {
+        StringJoiner json = new StringJoiner(",", "[", "]");
+        for (Entry entry : entries) {
+            json.add("[" + entry.postId() + "," + entry.createdAt() + "]");
+        }
+        return json.toString();
+    }
+}
@@ -1,6 +1,7 @@
 package com.server.services;
 
 import com.server.DatabaseManager;
+import com.server.models.ToggleResult;
 import com.server.models.User;
 import com.server.utils.Logger;
 
@@ -10,6 +11,7 @@ import java.sql.*;
 import java.util.ArrayList;
 import java.util.Base64;
 import java.util.List;
+import java.util.StringJoiner;
 import java.util.UUID;
 
 /**
@@ -17,18 +19,21 @@ import java.util.UUID;
  */
 public class UserService {
     private final DatabaseManager databaseManager;
+    private final TimelineService timelineService;
     private final String uploadDirectory;
 
-    public UserService(DatabaseManager databaseManager) {
+    public UserService(DatabaseManager databaseManager, TimelineService timelineService) {
         this.databaseManager = databaseManager;
+        this.timelineService = timelineService;
         this.uploadDirectory = "uploads/avatars/";
 
         // Create upload directory if it doesn't exist
         createUploadDirectory();
     }
 
-    public UserService(DatabaseManager databaseManager, String uploadDirectory) {
+    public UserService(DatabaseManager databaseManager, TimelineService timelineService, String uploadDirectory) {
         this.databaseManager = databaseManager;
+        this.timelineService = timelineService;
         this.uploadDirectory = uploadDirectory;
         createUploadDirectory();
     }
@@ -55,8 +60,7 @@ public class UserService {
         try (Connection conn = databaseManager.getConnection()) {
             String sql = """
                 SELECT u.id, u.username, u.full_name, u.bio, u.avatar_url, u.created_at, u.updated_at,
-                       (SELECT COUNT(*) FROM follows f WHERE f.follower_id = u.id) as following_count,
-                       (SELECT COUNT(*) FROM follows f WHERE f.followee_id = u.id) as followers_count
+                       u.following_count, u.followers_count
                 FROM users u
                 WHERE u.id = ?
             """;
@@ -74,8 +78,8 @@ public class UserService {
                         user.setAvatarUrl(rs.getString("avatar_url"));
                         user.setFollowingCount(rs.getInt("following_count"));
                         user.setFollowersCount(rs.getInt("followers_count"));
-                        user.setCreatedAt(rs.getTimestamp("created_at").toLocalDateTime().toString());
-                        user.setUpdatedAt(rs.getTimestamp("updated_at").toLocalDateTime().toString());
+                        user.setCreatedAt(rs.getLong("created_at"));
+                        user.setUpdatedAt(rs.getLong("updated_at"));
 
                         return user;
                     }
@@ -103,8 +107,7 @@ public class UserService {
         try (Connection conn = databaseManager.getConnection()) {
             String sql = """
                 SELECT u.id, u.username, u.full_name, u.bio, u.avatar_url, u.created_at, u.updated_at,
-                       (SELECT COUNT(*) FROM follows f WHERE f.follower_id = u.id) as following_count,
-                       (SELECT COUNT(*) FROM follows f WHERE f.followee_id = u.id) as followers_count
+                       u.following_count, u.followers_count
                 FROM users u
                 WHERE u.username = ?
             """;
@@ -122,8 +125,8 @@ public class UserService {
                         user.setAvatarUrl(rs.getString("avatar_url"));
                         user.setFollowingCount(rs.getInt("following_count"));
                         user.setFollowersCount(rs.getInt("followers_count"));
-                        user.setCreatedAt(rs.getTimestamp("created_at").toLocalDateTime().toString());
-                        user.setUpdatedAt(rs.getTimestamp("updated_at").toLocalDateTime().toString());
+                        user.setCreatedAt(rs.getLong("created_at"));
+                        user.setUpdatedAt(rs.getLong("updated_at"));
 
                         return user;
                     }
@@ -147,46 +150,49 @@ public class UserService {
      * @return true if profile updated successfully, false otherwise
      */
     public boolean updateProfile(int userId, String fullName, String bio, String avatarUrl) {
-        try (Connection conn = databaseManager.getConnection()) {
-            StringBuilder sqlBuilder = new StringBuilder("UPDATE users SET updated_at = CURRENT_TIMESTAMP");
-            List<Object> parameters = new ArrayList<>();
-
-            if (fullName != null) {
-                sqlBuilder.append(", full_name = ?");
-                parameters.add(fullName.trim());
-            }
+        return databaseManager.write(() -> {
+            try (Connection conn = databaseManager.getConnection()) {
+                StringBuilder sqlBuilder = new StringBuilder("UPDATE users SET updated_at = ?");
+                List<Object> parameters = new ArrayList<>();
+                parameters.add(System.currentTimeMillis());
+
+                if (fullName != null) {
+                    sqlBuilder.append(", full_name = ?");
+                    parameters.add(fullName.trim());
+                }
 
-            if (bio != null) {
-                sqlBuilder.append(", bio = ?");
-                parameters.add(bio.trim());
-            }
+                if (bio != null) {
+                    sqlBuilder.append(", bio = ?");
+                    parameters.add(bio.trim());
+                }
 
-            if (avatarUrl != null) {
-                sqlBuilder.append(", avatar_url = ?");
-                parameters.add(avatarUrl);
-            }
+                if (avatarUrl != null) {
+                    sqlBuilder.append(", avatar_url = ?");
+                    parameters.add(avatarUrl);
+                }
 
-            sqlBuilder.append(" WHERE id = ?");
-            parameters.add(userId);
+                sqlBuilder.append(" WHERE id = ?");
+                parameters.add(userId);
 
-            try (PreparedStatement stmt = conn.prepareStatement(sqlBuilder.toString())) {
-                for (int i = 0; i < parameters.size(); i++) {
-                    stmt.setObject(i + 1, parameters.get(i));
-                }
+                try (PreparedStatement stmt = conn.prepareStatement(sqlBuilder.toString())) {
+                    for (int i = 0; i < parameters.size(); i++) {
+                        stmt.setObject(i + 1, parameters.get(i));
+                    }
 
-                int affectedRows = stmt.executeUpdate();
+                    int affectedRows = stmt.executeUpdate();
 
-                if (affectedRows > 0) {
-                    Logger.info("Profile updated for user ID: " + userId);
-                    return true;
+                    if (affectedRows > 0) {
+                        Logger.info("Profile updated for user ID: " + userId);
+                        return true;
+                    }
                 }
-            }
 
-        } catch (SQLException e) {
-            Logger.error("Error updating profile: " + e.getMessage());
-        }
+            } catch (SQLException e) {
+                Logger.error("Error updating profile: " + e.getMessage());
+            }
 
-        return false;
+            return false;
+        }, false);
     }
 
     /**
@@ -203,23 +209,26 @@ public class UserService {
             return users;
         }
 
-        String searchTerm = "%" + query.trim().toLowerCase() + "%";
+        String match = toPrefixQuery(query);
+        if (match.isEmpty()) {
+            return users;
+        }
 
         try (Connection conn = databaseManager.getConnection()) {
+            // Best matches first; a hit in the username counts most, then the name, then the bio
             String sql = """
                 SELECT u.id, u.username, u.full_name, u.bio, u.avatar_url, u.created_at, u.updated_at,
-                       (SELECT COUNT(*) FROM follows f WHERE f.follower_id = u.id) as following_count,
-                       (SELECT COUNT(*) FROM follows f WHERE f.followee_id = u.id) as followers_count
-                FROM users u
-                WHERE LOWER(u.username) LIKE ? OR LOWER(u.full_name) LIKE ?
-                ORDER BY u.username
+                       u.following_count, u.followers_count
+                FROM users_fts
+                JOIN users u ON u.id = users_fts.rowid
+                WHERE users_fts MATCH ?
+                ORDER BY bm25(users_fts, 10.0, 5.0, 1.0)
                 LIMIT ?
             """;
 
             try (PreparedStatement stmt = conn.prepareStatement(sql)) {
-                stmt.setString(1, searchTerm);
-                stmt.setString(2, searchTerm);
-                stmt.setInt(3, Math.min(limit, 50)); // Cap at 50 results
+                stmt.setString(1, match);
+                stmt.setInt(2, Math.min(limit, 50)); // Cap at 50 results
 
                 try (ResultSet rs = stmt.executeQuery()) {
                     while (rs.next()) {
@@ -231,8 +240,8 @@ public class UserService {
                         user.setAvatarUrl(rs.getString("avatar_url"));
                         user.setFollowingCount(rs.getInt("following_count"));
                         user.setFollowersCount(rs.getInt("followers_count"));
-                        user.setCreatedAt(rs.getTimestamp("created_at").toLocalDateTime().toString());
-                        user.setUpdatedAt(rs.getTimestamp("updated_at").toLocalDateTime().toString());
+                        user.setCreatedAt(rs.getLong("created_at"));
+                        user.setUpdatedAt(rs.getLong("updated_at"));
 
                         users.add(user);
                     }
@@ -248,65 +257,111 @@ public class UserService {
     }
 
     /**
-     * Toggle follow relationship between users
+     * Turn user input into an FTS5 query matching every word as a prefix.
+     * Each word is quoted, so FTS5 operators in the input are taken literally.
+     *
+     * @param query The search text
+     * @return The MATCH expression, or an empty string if there are no words
+     */
+    private static String toPrefixQuery(String query) {
+        StringJoiner match = new StringJoiner(" ");
+        for (String word : query.trim().split("[^\\p{L}\\p{N}]+")) {
+            if (!word.isEmpty()) {
+                match.add("\"" + word + "\"*");
+            }
+        }
+        return match.toString();
+    }
+
+    /**
+     * Toggle follow relationship between users. The follow row and both
+     * users' counters change in one write on the main database.
      *
      * @param followerId The user ID doing the following
      * @param followeeId The user ID being followed
-     * @return true if operation successful, false otherwise
+     * @return Whether the followee is now followed and their new follower count, or null if the toggle failed
      */
-    public boolean toggleFollow(int followerId, int followeeId) {
+    public ToggleResult toggleFollow(int followerId, int followeeId) {
         if (followerId == followeeId) {
-            return false; // Can't follow yourself
+            return null; // Can't follow yourself
         }
 
-        try (Connection conn = databaseManager.getConnection()) {
-            // Check if already following
-            String checkSql = "SELECT COUNT(*) FROM follows WHERE follower_id = ? AND followee_id = ?";
+        boolean[] refanOut = { false };
+        ToggleResult toggled = databaseManager.write(() -> {
+            try (Connection conn = databaseManager.getConnection()) {
+                boolean following;
+                String deleteSql = "DELETE FROM follows WHERE follower_id = ? AND followee_id = ? RETURNING id";
+                try (PreparedStatement deleteStmt = conn.prepareStatement(deleteSql)) {
+                    deleteStmt.setInt(1, followerId);
+                    deleteStmt.setInt(2, followeeId);
+                    try (ResultSet rs = deleteStmt.executeQuery()) {
+                        following = !rs.next();
+                    }
+                }
 
-            try (PreparedStatement checkStmt = conn.prepareStatement(checkSql)) {
-                checkStmt.setInt(1, followerId);
-                checkStmt.setInt(2, followeeId);
+                if (following) {
+                    String insertSql = """
+                        INSERT INTO follows (follower_id, followee_id, created_at) VALUES (?, ?, ?)
+                        ON CONFLICT (follower_id, followee_id) DO NOTHING
+                    """;
+                    try (PreparedStatement insertStmt = conn.prepareStatement(insertSql)) {
+                        insertStmt.setInt(1, followerId);
+                        insertStmt.setInt(2, followeeId);
+                        insertStmt.setLong(3, System.currentTimeMillis());
+                        insertStmt.executeUpdate();
+                    }
+                }
 
-                try (ResultSet rs = checkStmt.executeQuery()) {
-                    if (rs.next() && rs.getInt(1) > 0) {
-                        // Unfollow
-                        String deleteSql = "DELETE FROM follows WHERE follower_id = ? AND followee_id = ?";
+                int followersCount = adjustFollowCounts(conn, followerId, followeeId, following ? 1 : -1);
+                if (followersCount < 0) {
+                    Logger.warn("User " + followeeId + " not found for follow");
+                    return null;
+                }
 
-                        try (PreparedStatement deleteStmt = conn.prepareStatement(deleteSql)) {
-                            deleteStmt.setInt(1, followerId);
-                            deleteStmt.setInt(2, followeeId);
+                if (following) {
+                    timelineService.follow(followerId, followeeId, followersCount);
+                    Logger.info("User " + followerId + " followed user " + followeeId);
+                } else {
+                    refanOut[0] = timelineService.unfollow(followerId, followeeId, followersCount);
+                    Logger.info("User " + followerId + " unfollowed user " + followeeId);
+                }
+                return new ToggleResult(following, followersCount);
 
-                            int affectedRows = deleteStmt.executeUpdate();
+            } catch (SQLException e) {
+                Logger.error("Error toggling follow: " + e.getMessage());
+            }
 
-                            if (affectedRows > 0) {
-                                Logger.info("User " + followerId + " unfollowed user " + followeeId);
-                                return true;
-                            }
-                        }
-                    } else {
-                        // Follow
-                        String insertSql = "INSERT INTO follows (follower_id, followee_id, created_at) VALUES (?, ?, CURRENT_TIMESTAMP)";
+            return null;
+        }, null);
 
-                        try (PreparedStatement insertStmt = conn.prepareStatement(insertSql)) {
-                            insertStmt.setInt(1, followerId);
-                            insertStmt.setInt(2, followeeId);
+        if (toggled != null && refanOut[0]) {
+            timelineService.fanOutAuthor(followeeId);
+        }
+        return toggled;
+    }
 
-                            int affectedRows = insertStmt.executeUpdate();
+    /**
+     * Update the denormalized follow counters in the same write as the follow row
+     *
+     * @param delta 1 for a follow, -1 for an unfollow
+     * @return The followee's new follower count, or -1 if the followee does not exist
+     */
+    private int adjustFollowCounts(Connection conn, int followerId, int followeeId, int delta) throws SQLException {
+        String followingSql = "UPDATE users SET following_count = following_count + ? WHERE id = ?";
+        try (PreparedStatement stmt = conn.prepareStatement(followingSql)) {
+            stmt.setInt(1, delta);
+            stmt.setInt(2, followerId);
+            stmt.executeUpdate();
+        }
 
-                            if (affectedRows > 0) {
-                                Logger.info("User " + followerId + " followed user " + followeeId);
-                                return true;
-                            }
-                        }
-                    }
-                }
+        String followersSql = "UPDATE users SET followers_count = followers_count + ? WHERE id = ? RETURNING followers_count";
+        try (PreparedStatement stmt = conn.prepareStatement(followersSql)) {
+            stmt.setInt(1, delta);
+            stmt.setInt(2, followeeId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() ? rs.getInt(1) : -1;
             }
-
-        } catch (SQLException e) {
-            Logger.error("Error toggling follow: " + e.getMessage());
         }
-
-        return false;
     }
 
     /**
@@ -351,8 +406,7 @@ public class UserService {
         try (Connection conn = databaseManager.getConnection()) {
             String sql = """
                 SELECT u.id, u.username, u.full_name, u.bio, u.avatar_url, u.created_at, u.updated_at,
-                       (SELECT COUNT(*) FROM follows f WHERE f.follower_id = u.id) as following_count,
-                       (SELECT COUNT(*) FROM follows f WHERE f.followee_id = u.id) as followers_count
+                       u.following_count, u.followers_count
                 FROM users u
                 JOIN follows f ON u.id = f.follower_id
                 WHERE f.followee_id = ?
@@ -374,8 +428,8 @@ public class UserService {
                         user.setAvatarUrl(rs.getString("avatar_url"));
                         user.setFollowingCount(rs.getInt("following_count"));
                         user.setFollowersCount(rs.getInt("followers_count"));
-                        user.setCreatedAt(rs.getTimestamp("created_at").toLocalDateTime().toString());
-                        user.setUpdatedAt(rs.getTimestamp("updated_at").toLocalDateTime().toString());
+                        user.setCreatedAt(rs.getLong("created_at"));
+                        user.setUpdatedAt(rs.getLong("updated_at"));
 
                         followers.add(user);
                     }
@@ -402,8 +456,7 @@ public class UserService {
         try (Connection conn = databaseManager.getConnection()) {
             String sql = """
                 SELECT u.id, u.username, u.full_name, u.bio, u.avatar_url, u.created_at, u.updated_at,
-                       (SELECT COUNT(*) FROM follows f WHERE f.follower_id = u.id) as following_count,
-                       (SELECT COUNT(*) FROM follows f WHERE f.followee_id = u.id) as followers_count
+                       u.following_count, u.followers_count
                 FROM users u
                 JOIN follows f ON u.id = f.followee_id
                 WHERE f.follower_id = ?
@@ -425,8 +478,8 @@ public class UserService {
                         user.setAvatarUrl(rs.getString("avatar_url"));
                         user.setFollowingCount(rs.getInt("following_count"));
                         user.setFollowersCount(rs.getInt("followers_count"));
-                        user.setCreatedAt(rs.getTimestamp("created_at").toLocalDateTime().toString());
-                        user.setUpdatedAt(rs.getTimestamp("updated_at").toLocalDateTime().toString());
+                        user.setCreatedAt(rs.getLong("created_at"));
+                        user.setUpdatedAt(rs.getLong("updated_at"));
 
                         following.add(user);
                     }
@@ -478,8 +531,23 @@ public class UserService {
     public String updateAvatar(int userId, String avatarData, String contentType) {
         try {
             // Decode base64 data
-            byte[] imageBytes = Base64.getDecoder().decode(avatarData);
+            return updateAvatar(userId, Base64.getDecoder().decode(avatarData), contentType);
+        } catch (IllegalArgumentException e) {
+            Logger.error("Error updating avatar: " + e.getMessage());
+            return null;
+        }
+    }
 
+    /**
+     * Update user avatar from raw image bytes
+     *
+     * @param userId The user ID
+     * @param imageBytes The image data
+     * @param contentType The content type of the image
+     * @return The URL of the uploaded avatar, or null if failed
+     */
+    public String updateAvatar(int userId, byte[] imageBytes, String contentType) {
+        try {
             // Validate file size (max 5MB)
             if (imageBytes.length > 5 * 1024 * 1024) {
                 Logger.warn("Avatar file too large for user " + userId + ": " + imageBytes.length + " bytes");
@@ -582,35 +650,14 @@ public class UserService {
         int[] stats = new int[3]; // [posts, followers, following]
 
         try (Connection conn = databaseManager.getConnection()) {
-            // Get post count
-            String postSql = "SELECT COUNT(*) FROM posts WHERE user_id = ?";
-            try (PreparedStatement stmt = conn.prepareStatement(postSql)) {
-                stmt.setInt(1, userId);
-                try (ResultSet rs = stmt.executeQuery()) {
-                    if (rs.next()) {
-                        stats[0] = rs.getInt(1);
-                    }
-                }
-            }
-
-            // Get followers count
-            String followersSql = "SELECT COUNT(*) FROM follows WHERE followee_id = ?";
-            try (PreparedStatement stmt = conn.prepareStatement(followersSql)) {
-                stmt.setInt(1, userId);
-                try (ResultSet rs = stmt.executeQuery()) {
-                    if (rs.next()) {
-                        stats[1] = rs.getInt(1);
-                    }
-                }
-            }
-
-            // Get following count
-            String followingSql = "SELECT COUNT(*) FROM follows WHERE follower_id = ?";
-            try (PreparedStatement stmt = conn.prepareStatement(followingSql)) {
+            String sql = "SELECT post_count, followers_count, following_count FROM users WHERE id = ?";
+            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
                 stmt.setInt(1, userId);
                 try (ResultSet rs = stmt.executeQuery()) {
                     if (rs.next()) {
-                        stats[2] = rs.getInt(1);
+                        stats[0] = rs.getInt("post_count");
+                        stats[1] = rs.getInt("followers_count");
+                        stats[2] = rs.getInt("following_count");
                     }
                 }
             }